@@ -17,8 +17,9 @@
 # Usage $0 $ip <get|put>
 
 REMOTE_STATE_FILE=${REMOTE_STATE_FILE:-~/long-running-test.state}
-IN_STATE_FILE=${IN_STATE_FILE:-long-running-test/long-running-test-in.state}
-OUT_STATE_FILE=${OUT_STATE_FILE:-long-running-test/long-running-test-out.state}
+# the tests append to the state journal in place when the input and output state files are the same
+IN_STATE_FILE=${IN_STATE_FILE:-long-running-test/long-running-test.state}
+OUT_STATE_FILE=${OUT_STATE_FILE:-${IN_STATE_FILE}}
 
 REMOTE_HOST=${REMOTE_HOST:-${1}}
 __action=${2:-get}
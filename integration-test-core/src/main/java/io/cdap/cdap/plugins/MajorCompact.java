@@ -16,28 +16,58 @@
 
 package io.cdap.cdap.plugins;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.cdap.chaosmonkey.Disruption;
 import io.cdap.chaosmonkey.RemoteProcess;
 import io.cdap.chaosmonkey.ShellOutput;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
 
 /**
  * A disruption that performs a major compaction on hbase
  *
+ * The tables to compact can be restricted with the following arguments:
+ *  - namespace: only compact the tables of the given CDAP namespace
+ *  - root.prefix: the CDAP root prefix of the table names, defaults to "cdap"
+ *  - tables.include: only compact the tables whose name matches the given regex
+ *  - tables.exclude: don't compact the tables whose name matches the given regex
+ *
+ * Tables are flushed and compacted one hbase shell session per table, spread across all processes in a round-robin
+ * fashion, with at most "concurrency" (defaults to 4) tables compacting at the same time. Since major_compact only
+ * queues the compaction, a table is only done once its compaction state, polled every "poll.interval.seconds"
+ * (defaults to 5), is back to NONE, or after "table.timeout.seconds" (defaults to 3600). The outcome and duration of
+ * every table are logged once all tables are done, and the disruption fails if any table failed or timed out, so that
+ * it doesn't pass without compacting.
+ *
  * Example:
+ * ActionArguments actionArguments = DisruptorFactory.createActionArguments(ImmutableMap.of("namespace", "default"));
  * clusterDisruptor.disruptAndWait("hbase-master", "major-compact", actionArguments, timeoutSeconds, TimeUnit.Seconds);
  */
 public class MajorCompact implements Disruption {
   private static final Logger LOG = LoggerFactory.getLogger(MajorCompact.class);
+  private static final int DEFAULT_CONCURRENCY = 4;
+  private static final long DEFAULT_POLL_INTERVAL_SECONDS = 5;
+  private static final long DEFAULT_TABLE_TIMEOUT_SECONDS = 3600;
+  // how long a compaction state of NONE right after queuing is taken as the compaction not having started yet
+  private static final long COMPACTION_START_SECONDS = 30;
+  private static final Pattern COMPACTION_STATE = Pattern.compile("\\b(NONE|MINOR|MAJOR|MAJOR_AND_MINOR)\\b");
 
   @Override
   public void disrupt(Collection<RemoteProcess> processes, Map<String, String> serviceArguments) throws Exception {
     LOG.info("Major compaction invoked...");
-    RemoteProcess remoteProcess = processes.iterator().next();
+    List<RemoteProcess> remoteProcesses = new ArrayList<>(processes);
 
     String user = serviceArguments.get("user");
     if (user == null) {
@@ -54,41 +84,201 @@ public class MajorCompact implements Disruption {
     if (authEnabled != null && authEnabled.equals("false")) {
       authString = "";
     }
+
+    List<String> tableNames = listTables(remoteProcesses.get(0), authString, user);
+    List<String> filteredTableNames = filterTables(tableNames, serviceArguments);
+    LOG.info("Compacting {} out of {} tables: {}", filteredTableNames.size(), tableNames.size(), filteredTableNames);
+
+    String concurrencyArg = serviceArguments.get("concurrency");
+    int concurrency = concurrencyArg == null ? DEFAULT_CONCURRENCY : Integer.parseInt(concurrencyArg);
+    String pollIntervalArg = serviceArguments.get("poll.interval.seconds");
+    long pollIntervalMs = TimeUnit.SECONDS.toMillis(
+      pollIntervalArg == null ? DEFAULT_POLL_INTERVAL_SECONDS : Long.parseLong(pollIntervalArg));
+    String tableTimeoutArg = serviceArguments.get("table.timeout.seconds");
+    long tableTimeoutMs = TimeUnit.SECONDS.toMillis(
+      tableTimeoutArg == null ? DEFAULT_TABLE_TIMEOUT_SECONDS : Long.parseLong(tableTimeoutArg));
+    ExecutorService executor = Executors.newFixedThreadPool(
+      Math.max(1, Math.min(concurrency, filteredTableNames.size())),
+      new ThreadFactoryBuilder().setDaemon(true).setNameFormat("major-compact-%d").build());
+    try {
+      List<Future<TableCompaction>> futures = new ArrayList<>();
+      for (int i = 0; i < filteredTableNames.size(); i++) {
+        String tableName = filteredTableNames.get(i);
+        RemoteProcess remoteProcess = remoteProcesses.get(i % remoteProcesses.size());
+        String compactUser = user;
+        String compactAuthString = authString;
+        futures.add(executor.submit(() -> compact(remoteProcess, compactAuthString, compactUser, tableName,
+                                                  pollIntervalMs, tableTimeoutMs)));
+      }
+
+      StringBuilder durations = new StringBuilder();
+      long totalMs = 0;
+      List<String> notCompacted = new ArrayList<>();
+      for (int i = 0; i < futures.size(); i++) {
+        TableCompaction compaction = futures.get(i).get();
+        totalMs += compaction.durationMs;
+        durations.append(String.format("%n  %8d ms  %-9s  %s", compaction.durationMs, compaction.outcome,
+                                       filteredTableNames.get(i)));
+        if (compaction.outcome != Outcome.OK) {
+          notCompacted.add(filteredTableNames.get(i) + " " + compaction.outcome);
+        }
+      }
+      LOG.info("Compaction outcome and duration per table, {} ms in total:{}", totalMs, durations);
+      if (!notCompacted.isEmpty()) {
+        throw new IllegalStateException(String.format("Failed to compact %d out of %d tables: %s",
+                                                      notCompacted.size(), futures.size(), notCompacted));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    LOG.info("Major compaction done.");
+  }
+
+  /**
+   * Returns the names of all tables in hbase.
+   */
+  private List<String> listTables(RemoteProcess remoteProcess, String authString, String user) throws Exception {
     String command = String.format("%s echo \"list\" | sudo -u %s hbase " +
-                                    "shell | fgrep '['", authString, user);
-    LOG.info("Running Command = " + command);
-    ShellOutput output = remoteProcess.execAndGetOutput(command);
-    LOG.info("Return code = " + output.returnCode);
-    LOG.info("Standard Output = " + output.standardOutput);
-    LOG.info("Error Output = " + output.errorOutput);
+                                     "shell | fgrep '['", authString, user);
+    ShellOutput output = exec(remoteProcess, command);
 
-    // stdout is in the format of ["tableName1" "tableName2" "tableName3"....] and needs to be changed to
-    // flush '\''tableName1'\''\n major_compact '\''table1'\''\n ...
+    // stdout is in the format of ["tableName1", "tableName2", "tableName3"....]
     String outputString = output.standardOutput.replace("\"", "").replace("[", "").replace("]", "")
       .replaceAll("\\s+", "");
-    String[] outputArray = outputString.split(",");
-    StringBuilder stringBuilder = new StringBuilder();
-    for (String tableName : outputArray) {
-      // '\\'' will result in a single quote when passed into hbase shell, echo will exclude the outer quotes and
-      // include the escaped single quote
-      stringBuilder.append("flush '\\''" + tableName + "'\\''\n");
-      stringBuilder.append("major_compact '\\''" + tableName + "'\\''\n");
+    List<String> tableNames = new ArrayList<>();
+    for (String tableName : outputString.split(",")) {
+      if (!tableName.isEmpty()) {
+        tableNames.add(tableName);
+      }
     }
-    String commandsString = stringBuilder.toString();
+    return tableNames;
+  }
 
-    String commandToExec = String.format("%s echo \"%s\" | sudo -u %s hbase shell",
-                                         authString, commandsString, user);
-    LOG.info("Running Command = " + commandToExec);
-    ShellOutput shellOutput = remoteProcess.execAndGetOutput(commandToExec);
-    LOG.info("Return code = " + shellOutput.returnCode);
-    LOG.info("Standard Output = " + shellOutput.standardOutput);
-    LOG.info("Error Output = " + shellOutput.errorOutput);
+  /**
+   * Returns the table names that match the namespace, include and exclude arguments.
+   */
+  private List<String> filterTables(List<String> tableNames, Map<String, String> serviceArguments) {
+    String namespace = serviceArguments.get("namespace");
+    String rootPrefix = serviceArguments.get("root.prefix");
+    String namespacePrefix = namespace == null ? null
+      : String.format("%s_%s:", rootPrefix == null ? "cdap" : rootPrefix, namespace);
+    Pattern include = compile(serviceArguments.get("tables.include"));
+    Pattern exclude = compile(serviceArguments.get("tables.exclude"));
 
-    LOG.info("Major compaction done.");
+    List<String> filtered = new ArrayList<>();
+    for (String tableName : tableNames) {
+      if (namespacePrefix != null && !tableName.startsWith(namespacePrefix)) {
+        continue;
+      }
+      if (include != null && !include.matcher(tableName).matches()) {
+        continue;
+      }
+      if (exclude != null && exclude.matcher(tableName).matches()) {
+        continue;
+      }
+      filtered.add(tableName);
+    }
+    return filtered;
+  }
+
+  /**
+   * Flushes and major compacts a table, waits for the compaction to finish and returns its outcome.
+   */
+  private TableCompaction compact(RemoteProcess remoteProcess, String authString, String user, String tableName,
+                       long pollIntervalMs, long tableTimeoutMs) throws Exception {
+    String commands = "flush " + quote(tableName) + "\n" + "major_compact " + quote(tableName) + "\n";
+    String command = String.format("%s echo \"%s\" | sudo -u %s hbase shell", authString, commands, user);
+    long startTime = System.nanoTime();
+    ShellOutput output = exec(remoteProcess, command);
+    if (output.returnCode != 0) {
+      LOG.warn("Failed to compact table {} on {}, return code = {}", tableName, remoteProcess, output.returnCode);
+      return new TableCompaction(Outcome.FAILED, startTime);
+    }
+
+    String stateCommand = String.format("%s echo \"compaction_state %s\" | sudo -u %s hbase shell",
+                                        authString, quote(tableName), user);
+    boolean started = false;
+    while (true) {
+      long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+      if (elapsedMs > tableTimeoutMs) {
+        LOG.warn("Compaction of table {} did not finish within {} seconds", tableName,
+                 TimeUnit.MILLISECONDS.toSeconds(tableTimeoutMs));
+        return new TableCompaction(Outcome.TIMED_OUT, startTime);
+      }
+      String state = getCompactionState(remoteProcess, stateCommand);
+      if (state == null) {
+        LOG.warn("Failed to get the compaction state of table {} on {}", tableName, remoteProcess);
+        return new TableCompaction(Outcome.FAILED, startTime);
+      }
+      if (!"NONE".equals(state)) {
+        started = true;
+      } else if (started || elapsedMs > TimeUnit.SECONDS.toMillis(COMPACTION_START_SECONDS)) {
+        // done, or the compaction finished or had nothing to do before it was seen running
+        return new TableCompaction(Outcome.OK, startTime);
+      }
+      TimeUnit.MILLISECONDS.sleep(pollIntervalMs);
+    }
+  }
+
+  /**
+   * Returns the compaction state printed by the given hbase shell command, or {@code null} if it failed.
+   */
+  @Nullable
+  private String getCompactionState(RemoteProcess remoteProcess, String command) throws Exception {
+    ShellOutput output = remoteProcess.execAndGetOutput(command);
+    LOG.debug("Compaction state output of '{}' = {}", command, output.standardOutput);
+    if (output.returnCode != 0) {
+      return null;
+    }
+    Matcher matcher = COMPACTION_STATE.matcher(output.standardOutput);
+    return matcher.find() ? matcher.group(1) : null;
+  }
+
+  private String quote(String tableName) {
+    // '\\'' will result in a single quote when passed into hbase shell, echo will exclude the outer quotes and
+    // include the escaped single quote
+    return "'\\''" + tableName + "'\\''";
+  }
+
+  private ShellOutput exec(RemoteProcess remoteProcess, String command) throws Exception {
+    LOG.info("Running Command = " + command);
+    ShellOutput output = remoteProcess.execAndGetOutput(command);
+    LOG.info("Return code = " + output.returnCode);
+    LOG.info("Standard Output = " + output.standardOutput);
+    LOG.info("Error Output = " + output.errorOutput);
+    return output;
+  }
+
+  @Nullable
+  private Pattern compile(@Nullable String regex) {
+    return regex == null || regex.isEmpty() ? null : Pattern.compile(regex);
   }
 
   @Override
   public String getName() {
     return "major-compact";
   }
+
+  /**
+   * The outcome of the compaction of one table.
+   */
+  private enum Outcome {
+    OK,
+    FAILED,
+    TIMED_OUT
+  }
+
+  /**
+   * The outcome of the compaction of one table and how long it took in milliseconds.
+   */
+  private static final class TableCompaction {
+    private final Outcome outcome;
+    private final long durationMs;
+
+    TableCompaction(Outcome outcome, long startNanos) {
+      this.outcome = outcome;
+      this.durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+  }
 }
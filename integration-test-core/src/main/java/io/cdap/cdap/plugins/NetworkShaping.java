@@ -0,0 +1,92 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.plugins;
+
+import io.cdap.cdap.test.ShapingProxy;
+import io.cdap.chaosmonkey.Disruption;
+import io.cdap.chaosmonkey.RemoteProcess;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * A disruption that shapes the traffic going through a local {@link ShapingProxy}, to simulate a slow or unreliable
+ * network between the test client and the CDAP router. The processes passed to it are ignored.
+ *
+ * The shaping is configured with the following arguments, all of which default to no shaping:
+ *  - latency.ms: time to delay all data by, in each direction
+ *  - jitter.ms: maximum time to randomly add to the latency
+ *  - bandwidth.bytes.per.second: maximum bandwidth of each direction of a connection
+ *  - reset.probability: probability to reset the connection instead of forwarding a chunk of data
+ *  - reset.connections: if "true", resets all open connections once the shaping is applied
+ *  - duration.seconds: if set, the shaping is removed again after the given duration. Otherwise it stays in place
+ *    until the disruption is invoked again, e.g. without arguments to remove it.
+ *
+ * Example:
+ * getNetworkShaping().disrupt(Collections.emptyList(), ImmutableMap.of("latency.ms", "200", "jitter.ms", "50",
+ *                                                                       "duration.seconds", "60"));
+ */
+public class NetworkShaping implements Disruption {
+  private static final Logger LOG = LoggerFactory.getLogger(NetworkShaping.class);
+
+  private final ShapingProxy proxy;
+
+  public NetworkShaping(ShapingProxy proxy) {
+    this.proxy = proxy;
+  }
+
+  @Override
+  public void disrupt(Collection<RemoteProcess> processes, @Nullable Map<String, String> serviceArguments)
+    throws Exception {
+    Map<String, String> arguments = serviceArguments == null ? Collections.emptyMap() : serviceArguments;
+    long latencyMs = getLong(arguments, "latency.ms");
+    long jitterMs = getLong(arguments, "jitter.ms");
+    long bytesPerSecond = getLong(arguments, "bandwidth.bytes.per.second");
+    String resetProbability = arguments.get("reset.probability");
+
+    proxy.setShaping(latencyMs, jitterMs, TimeUnit.MILLISECONDS, bytesPerSecond,
+                     resetProbability == null ? 0.0d : Double.parseDouble(resetProbability));
+    if (Boolean.parseBoolean(arguments.get("reset.connections"))) {
+      proxy.resetConnections();
+    }
+
+    long durationSeconds = getLong(arguments, "duration.seconds");
+    if (durationSeconds > 0) {
+      try {
+        TimeUnit.SECONDS.sleep(durationSeconds);
+      } finally {
+        proxy.clearShaping();
+      }
+      LOG.info("Network shaping removed after {} seconds.", durationSeconds);
+    }
+  }
+
+  private long getLong(Map<String, String> arguments, String key) {
+    String value = arguments.get(key);
+    return value == null ? 0L : Long.parseLong(value);
+  }
+
+  @Override
+  public String getName() {
+    return "network-shaping";
+  }
+}
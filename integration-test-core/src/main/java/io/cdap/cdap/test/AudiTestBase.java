@@ -17,7 +17,6 @@
 package io.cdap.cdap.test;
 
 import com.google.common.base.Preconditions;
-import com.google.common.io.CharStreams;
 import io.cdap.cdap.api.app.Application;
 import io.cdap.cdap.api.dataset.Dataset;
 import io.cdap.cdap.api.dataset.DatasetAdmin;
@@ -28,8 +27,8 @@ import io.cdap.cdap.api.dataset.table.Table;
 import io.cdap.cdap.client.DatasetClient;
 import io.cdap.cdap.client.ProgramClient;
 import io.cdap.cdap.client.config.ClientConfig;
+import io.cdap.cdap.client.config.ConnectionConfig;
 import io.cdap.cdap.client.util.RESTClient;
-import io.cdap.cdap.common.utils.Tasks;
 import io.cdap.cdap.proto.DatasetInstanceConfiguration;
 import io.cdap.cdap.proto.MetricQueryResult;
 import io.cdap.cdap.proto.ProgramRunStatus;
@@ -44,6 +43,7 @@ import io.cdap.cdap.remote.dataset.kvtable.KVTableDatasetApp;
 import io.cdap.cdap.remote.dataset.kvtable.RemoteKeyValueTable;
 import io.cdap.cdap.remote.dataset.table.RemoteTable;
 import io.cdap.cdap.remote.dataset.table.TableDatasetApp;
+import io.cdap.chaosmonkey.Disruption;
 import io.cdap.chaosmonkey.proto.ClusterDisruptor;
 import io.cdap.common.ContentProvider;
 import io.cdap.common.http.HttpRequest;
@@ -56,12 +56,15 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -110,16 +113,22 @@ public class AudiTestBase extends IntegrationTestBase {
       @Override
       public void onRequest(HttpRequest httpRequest, int i) {
         try {
-          ContentProvider<? extends InputStream> inputSupplier = httpRequest.getBody();
-          String body = null;
-          if (inputSupplier != null) {
-            try (InputStream is = inputSupplier.getInput()) {
-              body = CharStreams.toString(new InputStreamReader(is, StandardCharsets.UTF_8));
-            }
-          }
-
           if (logBodyLimit > 0) {
-            if (body != null && body.length() >= logBodyLimit) {
+            // only read as much of the body as is logged, since it may be large or generated while it is sent
+            ContentProvider<? extends InputStream> inputSupplier = httpRequest.getBody();
+            String body = null;
+            if (inputSupplier != null) {
+              try (Reader reader = new InputStreamReader(inputSupplier.getInput(), StandardCharsets.UTF_8)) {
+                char[] chars = new char[logBodyLimit + 1];
+                int length = 0;
+                int read;
+                while (length < chars.length && (read = reader.read(chars, length, chars.length - length)) >= 0) {
+                  length += read;
+                }
+                body = new String(chars, 0, length);
+              }
+            }
+            if (body != null && body.length() > logBodyLimit) {
               body = body.substring(0, logBodyLimit) + " ... [TRIMMED]";
             }
             LOG.info("Making request: {} {} - body: {}", httpRequest.getMethod(), httpRequest.getURL(), body);
@@ -147,6 +156,40 @@ public class AudiTestBase extends IntegrationTestBase {
     return disruptor.getClusterDisruptor();
   }
 
+  /**
+   * Returns a {@link ClientConfig} that connects to the CDAP router through a local {@link ShapingProxy}, whose
+   * traffic can be shaped with {@link #getNetworkShaping()}.
+   */
+  protected ClientConfig getShapedClientConfig() throws IOException {
+    ConnectionConfig connectionConfig = getClientConfig().getConnectionConfig();
+    ShapingProxy proxy = disruptor.startShapingProxy(connectionConfig.getHostname(), connectionConfig.getPort());
+    return new ClientConfig.Builder(getClientConfig())
+      .setConnectionConfig(ConnectionConfig.builder(connectionConfig)
+                             .setHostname(proxy.getHost())
+                             .setPort(proxy.getPort())
+                             .build())
+      .build();
+  }
+
+  /**
+   * Returns the disruption that shapes the traffic of the clients created with {@link #getShapedClientConfig()}.
+   */
+  protected Disruption getNetworkShaping() {
+    return disruptor.getNetworkShaping();
+  }
+
+  /**
+   * Waits for the program to reach the given run status. Prefer this over calling
+   * {@link ProgramManager#waitForRun} directly, since it records the time spent in {@link WaitStats}.
+   */
+  protected void waitForRun(ProgramManager<?> programManager, ProgramRunStatus status,
+                            long timeout, TimeUnit timeoutUnit) throws Exception {
+    WaitStats.time("waitForRun", timeout, timeoutUnit, () -> {
+      programManager.waitForRun(status, timeout, timeoutUnit);
+      return null;
+    });
+  }
+
   protected void checkMetricAtLeast(final Map<String, String> tags, final String metric,
                                     long expectedCount, int timeOutSeconds) throws Exception {
     Tasks.waitFor(true, () -> getMetricValue(tags, metric) >= expectedCount,
@@ -190,9 +233,22 @@ public class AudiTestBase extends IntegrationTestBase {
 
   protected void assertRuns(int count, ProgramClient programClient,
                             ProgramRunStatus expectedStatus, ProgramId... programIds) throws Exception {
+    // wait for the run records of all programs concurrently, rather than one program after another
+    Map<ProgramId, List<RunRecord>> runRecordsPerProgram = new ConcurrentHashMap<>();
+    Map<String, Callable<Boolean>> conditions = new LinkedHashMap<>();
+    for (ProgramId programId : programIds) {
+      conditions.put(programId.toString(), () -> {
+        List<RunRecord> runRecords =
+          programClient.getProgramRuns(programId, expectedStatus.name(), 0, Long.MAX_VALUE, Integer.MAX_VALUE);
+        runRecordsPerProgram.put(programId, runRecords);
+        return runRecords.size() == count;
+      });
+    }
+    // Tasks.waitForAll can be removed when CDAP-3656 is fixed
+    Tasks.waitForAll(conditions, 30, TimeUnit.SECONDS);
+
     for (ProgramId programId : programIds) {
-      List<RunRecord> runRecords =
-        getRunRecords(count, programClient, programId, expectedStatus.name(), 0, Long.MAX_VALUE);
+      List<RunRecord> runRecords = runRecordsPerProgram.get(programId);
       Assert.assertEquals(String.format("Number of runs for program %s is not equal to the expected", programId),
                           count, runRecords.size());
       for (RunRecord runRecord : runRecords) {
@@ -269,7 +325,7 @@ public class AudiTestBase extends IntegrationTestBase {
     if (!serviceManager.isRunning()) {
       serviceManager.start();
     }
-    serviceManager.waitForRun(ProgramRunStatus.RUNNING, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    waitForRun(serviceManager, ProgramRunStatus.RUNNING, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
     return serviceManager.getServiceURL(PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
   }
 
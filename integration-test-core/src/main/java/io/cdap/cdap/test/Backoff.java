@@ -0,0 +1,114 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.test;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Determines how long {@link Tasks} sleeps between two consecutive calls of the condition it waits for.
+ *
+ * The delay starts at an initial value and grows by a multiplier after each unsuccessful call, until it reaches a
+ * maximum. A random jitter is applied to every delay so that many concurrent waits don't poll in lock step.
+ *
+ * Like {@link Tasks}, which is used from within programs as well, it only depends on the JDK.
+ */
+public final class Backoff {
+
+  private final long initialDelayMs;
+  private final long maxDelayMs;
+  private final double multiplier;
+  private final double jitter;
+
+  /**
+   * Returns a {@link Backoff} that always waits the same amount of time between calls.
+   */
+  public static Backoff fixed(long delay, TimeUnit unit) {
+    long delayMs = unit.toMillis(delay);
+    return new Backoff(delayMs, delayMs, 1.0d, 0.0d);
+  }
+
+  /**
+   * Returns a {@link Backoff} that doubles the delay after every call, starting from the initial delay up to the
+   * max delay, with a jitter of 20%.
+   */
+  public static Backoff exponential(long initialDelay, long maxDelay, TimeUnit unit) {
+    return exponential(initialDelay, maxDelay, unit, 2.0d, 0.2d);
+  }
+
+  /**
+   * Returns a {@link Backoff} that grows the delay by the given multiplier after every call.
+   *
+   * @param initialDelay delay before the second call
+   * @param maxDelay upper bound of the delay
+   * @param unit unit of time for initialDelay and maxDelay
+   * @param multiplier factor to grow the delay by, must be at least 1
+   * @param jitter fraction of the delay to randomly add or subtract, between 0 and 1
+   */
+  public static Backoff exponential(long initialDelay, long maxDelay, TimeUnit unit,
+                                    double multiplier, double jitter) {
+    return new Backoff(unit.toMillis(initialDelay), unit.toMillis(maxDelay), multiplier, jitter);
+  }
+
+  /**
+   * Returns the default {@link Backoff} for waiting up to the given timeout. Polling starts at 10 milliseconds so that
+   * conditions which are met quickly return quickly, and grows up to 1/20 of the timeout, bounded between
+   * 50 milliseconds and 5 seconds, so that long waits don't keep hammering the condition.
+   */
+  public static Backoff forTimeout(long timeout, TimeUnit unit) {
+    long maxDelayMs = Math.min(5000L, Math.max(50L, unit.toMillis(timeout) / 20));
+    return exponential(Math.min(10L, maxDelayMs), maxDelayMs, TimeUnit.MILLISECONDS);
+  }
+
+  private Backoff(long initialDelayMs, long maxDelayMs, double multiplier, double jitter) {
+    if (initialDelayMs < 0 || maxDelayMs < initialDelayMs) {
+      throw new IllegalArgumentException(String.format("Invalid delays: initial %d ms, max %d ms",
+                                                       initialDelayMs, maxDelayMs));
+    }
+    if (multiplier < 1.0d || jitter < 0.0d || jitter > 1.0d) {
+      throw new IllegalArgumentException(String.format("Invalid multiplier %f or jitter %f", multiplier, jitter));
+    }
+    this.initialDelayMs = initialDelayMs;
+    this.maxDelayMs = maxDelayMs;
+    this.multiplier = multiplier;
+    this.jitter = jitter;
+  }
+
+  /**
+   * Returns the delay in milliseconds to wait after the given number of unsuccessful calls.
+   *
+   * @param attempt number of calls made so far, starting from 1
+   */
+  long getDelayMs(int attempt) {
+    double delay = initialDelayMs * Math.pow(multiplier, Math.max(0, attempt - 1));
+    delay = Math.min(delay, maxDelayMs);
+    if (jitter > 0.0d) {
+      delay += delay * jitter * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+    }
+    return Math.max(0L, Math.min(Math.round(delay), maxDelayMs));
+  }
+
+  @Override
+  public String toString() {
+    return "Backoff{" +
+      "initialDelayMs=" + initialDelayMs +
+      ", maxDelayMs=" + maxDelayMs +
+      ", multiplier=" + multiplier +
+      ", jitter=" + jitter +
+      '}';
+  }
+}
@@ -16,13 +16,22 @@
 
 package io.cdap.cdap.test;
 
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import io.cdap.cdap.plugins.NetworkShaping;
 import io.cdap.chaosmonkey.ChaosMonkeyService;
 import io.cdap.chaosmonkey.Clusters;
+import io.cdap.chaosmonkey.Disruption;
 import io.cdap.chaosmonkey.common.Constants;
 import io.cdap.chaosmonkey.common.conf.Configuration;
+import io.cdap.chaosmonkey.proto.ActionArguments;
 import io.cdap.chaosmonkey.proto.ClusterDisruptor;
 import io.cdap.chaosmonkey.proto.ClusterInfoCollector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.util.Map;
 import javax.annotation.Nullable;
 
 /**
@@ -30,9 +39,12 @@ import javax.annotation.Nullable;
 
  */
 public class DisruptorFactory {
+  private static final Logger LOG = LoggerFactory.getLogger(DisruptorFactory.class);
+  private static final Gson GSON = new Gson();
 
   private static ChaosMonkeyService clusterDisruptor;
   private Configuration conf;
+  private ShapingProxy shapingProxy;
 
   public DisruptorFactory() {
     conf = Configuration.create();
@@ -78,6 +90,45 @@ public class DisruptorFactory {
     if (clusterDisruptor != null) {
       clusterDisruptor.stopAsync().awaitTerminated();
     }
+    if (shapingProxy != null) {
+      try {
+        shapingProxy.close();
+      } catch (IOException e) {
+        LOG.warn("Failed to close shaping proxy", e);
+      }
+      shapingProxy = null;
+    }
+  }
+
+  /**
+   * Starts a local {@link ShapingProxy} to the given address, unless it is already started.
+   */
+  public ShapingProxy startShapingProxy(String targetHost, int targetPort) throws IOException {
+    if (shapingProxy == null) {
+      shapingProxy = new ShapingProxy(targetHost, targetPort).start();
+    }
+    return shapingProxy;
+  }
+
+  /**
+   * Returns the {@link NetworkShaping} disruption of the proxy started by {@link #startShapingProxy(String, int)}.
+   */
+  public Disruption getNetworkShaping() {
+    if (shapingProxy == null) {
+      throw new IllegalStateException("Shaping proxy is not started");
+    }
+    return new NetworkShaping(shapingProxy);
+  }
+
+  /**
+   * Returns the {@link ActionArguments} that pass the given service arguments to a disruption, such as the ones of
+   * {@link io.cdap.cdap.plugins.MajorCompact}. They are read like the body of a request to the chaos monkey service,
+   * whose only field is the service arguments.
+   */
+  public static ActionArguments createActionArguments(Map<String, String> serviceArguments) {
+    JsonObject json = new JsonObject();
+    json.add("serviceArguments", GSON.toJsonTree(serviceArguments));
+    return GSON.fromJson(json, ActionArguments.class);
   }
 
   @Nullable
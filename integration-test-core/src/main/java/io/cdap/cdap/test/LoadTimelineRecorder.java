@@ -0,0 +1,551 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.test;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.dataset.lib.KeyValueTable;
+import io.cdap.cdap.api.dataset.table.Get;
+import io.cdap.cdap.api.dataset.table.Put;
+import io.cdap.cdap.api.dataset.table.Table;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives a workload at a constant rate while a disruption, such as the ones of {@link DisruptorFactory}, is active,
+ * and records the throughput and latency of every second into a {@link Timeline}.
+ *
+ * Latencies are corrected for coordinated omission: every operation has an intended start time on the constant rate
+ * schedule, and its latency is measured from that time rather than from the time it actually started. Operations
+ * that are delayed because the previous ones were slow therefore count the time spent waiting.
+ *
+ * Example:
+ * <pre>
+ *   LoadTimelineRecorder recorder =
+ *     new LoadTimelineRecorder(LoadTimelineRecorder.keyValueWorkload(kvTable, 1000), 200, 16);
+ *   LoadTimelineRecorder.Timeline timeline = recorder.record(() -> {
+ *     getClusterDisruptor().disruptAndWait("hbase-master", "major-compact", actionArguments, 10, TimeUnit.MINUTES);
+ *     return null;
+ *   }, 30, 30, TimeUnit.SECONDS);
+ * </pre>
+ */
+public final class LoadTimelineRecorder {
+
+  private static final Logger LOG = LoggerFactory.getLogger(LoadTimelineRecorder.class);
+  public static final String DISRUPTION_START = "disruption start";
+  public static final String DISRUPTION_END = "disruption end";
+
+  private final Callable<?> operation;
+  private final long intervalNanos;
+  private final int numThreads;
+
+  /**
+   * Creates a recorder.
+   *
+   * @param operation a single operation of the workload, called concurrently from multiple threads
+   * @param operationsPerSecond the constant rate at which operations are started
+   * @param numThreads number of threads to call operations from. It must be large enough to sustain the rate.
+   */
+  public LoadTimelineRecorder(Callable<?> operation, int operationsPerSecond, int numThreads) {
+    if (operationsPerSecond <= 0 || numThreads <= 0) {
+      throw new IllegalArgumentException("Rate and number of threads must be positive");
+    }
+    this.operation = operation;
+    this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / operationsPerSecond;
+    this.numThreads = numThreads;
+  }
+
+  /**
+   * Returns a workload that writes or reads (with equal probability) a random key out of the given number of keys.
+   */
+  public static Callable<?> keyValueWorkload(KeyValueTable table, int numKeys) {
+    return () -> {
+      ThreadLocalRandom random = ThreadLocalRandom.current();
+      byte[] key = Bytes.toBytes("key" + random.nextInt(numKeys));
+      if (random.nextBoolean()) {
+        table.write(key, Bytes.toBytes(random.nextLong()));
+      } else {
+        table.read(key);
+      }
+      return null;
+    };
+  }
+
+  /**
+   * Returns a workload that puts or gets (with equal probability) a column of a random row out of the given number
+   * of rows.
+   */
+  public static Callable<?> tableWorkload(Table table, int numRows) {
+    byte[] column = Bytes.toBytes("c");
+    return () -> {
+      ThreadLocalRandom random = ThreadLocalRandom.current();
+      byte[] row = Bytes.toBytes("row" + random.nextInt(numRows));
+      if (random.nextBoolean()) {
+        table.put(new Put(row, column, random.nextLong()));
+      } else {
+        table.get(new Get(row, column));
+      }
+      return null;
+    };
+  }
+
+  /**
+   * Drives the workload for the warm up period, then while the disruption runs, and then for the cool down period.
+   *
+   * @param disruption performs the disruption and returns when it is done
+   * @param warmUp time to drive the workload before starting the disruption
+   * @param coolDown time to drive the workload after the disruption completed
+   * @param unit unit of time for warmUp and coolDown
+   * @return the timeline of the workload, with the start and end of the disruption marked
+   * @throws Exception if the disruption failed. The timeline recorded until then is logged.
+   */
+  public Timeline record(Callable<?> disruption, long warmUp, long coolDown, TimeUnit unit) throws Exception {
+    Run run = new Run();
+    ExecutorService executor = Executors.newFixedThreadPool(
+      numThreads, new ThreadFactoryBuilder().setDaemon(true).setNameFormat("load-timeline-%d").build());
+    for (int i = 0; i < numThreads; i++) {
+      executor.execute(run::drive);
+    }
+
+    Timeline timeline;
+    try {
+      unit.sleep(warmUp);
+      run.mark(DISRUPTION_START);
+      try {
+        disruption.call();
+      } finally {
+        run.mark(DISRUPTION_END);
+      }
+      unit.sleep(coolDown);
+    } finally {
+      run.stop();
+      executor.shutdown();
+      if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+        LOG.warn("Workload operations did not complete within one minute after the end of the recording");
+        executor.shutdownNow();
+      }
+      timeline = run.getTimeline();
+      LOG.info("Load timeline:\n{}", timeline);
+    }
+    return timeline;
+  }
+
+  /**
+   * The state of one recording.
+   */
+  private final class Run {
+    private final long startNanos = System.nanoTime();
+    private final AtomicLong nextSlot = new AtomicLong();
+    private final ConcurrentMap<Integer, Second> seconds = new ConcurrentHashMap<>();
+    private final Map<Integer, List<String>> events = Collections.synchronizedMap(new TreeMap<>());
+    private volatile long stopNanos = Long.MAX_VALUE;
+
+    void drive() {
+      while (true) {
+        long intended = startNanos + nextSlot.getAndIncrement() * intervalNanos;
+        if (intended - stopNanos >= 0) {
+          return;
+        }
+        long now;
+        while ((now = System.nanoTime()) < intended) {
+          LockSupport.parkNanos(intended - now);
+        }
+        boolean failed = false;
+        try {
+          operation.call();
+        } catch (Exception e) {
+          failed = true;
+          LOG.debug("Workload operation failed", e);
+        }
+        long end = System.nanoTime();
+        // latency is attributed to the second the operation should have started in, throughput to the second the
+        // operation completed in
+        getSecond(intended).recordLatency(TimeUnit.NANOSECONDS.toMicros(end - intended), failed);
+        getSecond(end).recordCompletion();
+      }
+    }
+
+    void mark(String event) {
+      int second = toSecond(System.nanoTime());
+      synchronized (events) {
+        events.computeIfAbsent(second, s -> new ArrayList<>()).add(event);
+      }
+      LOG.info("Marked '{}' at second {} of the load timeline", event, second);
+    }
+
+    void stop() {
+      stopNanos = System.nanoTime();
+    }
+
+    Timeline getTimeline() {
+      int lastSecond = toSecond(stopNanos);
+      List<Second> secondList = new ArrayList<>();
+      for (int i = 0; i <= lastSecond; i++) {
+        Second second = seconds.get(i);
+        secondList.add(second == null ? new Second() : second);
+      }
+      synchronized (events) {
+        return new Timeline(secondList, new TreeMap<>(events));
+      }
+    }
+
+    private Second getSecond(long nanos) {
+      return seconds.computeIfAbsent(toSecond(nanos), s -> new Second());
+    }
+
+    private int toSecond(long nanos) {
+      return (int) TimeUnit.NANOSECONDS.toSeconds(nanos - startNanos);
+    }
+  }
+
+  /**
+   * The statistics of one second of a recording.
+   */
+  private static final class Second {
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private long completed;
+    private long errors;
+
+    synchronized void recordLatency(long micros, boolean failed) {
+      if (failed) {
+        errors++;
+      } else {
+        latencies.record(micros);
+      }
+    }
+
+    synchronized void recordCompletion() {
+      completed++;
+    }
+  }
+
+  /**
+   * The throughput and latency of a workload for every second of a recording, along with the events that happened
+   * in each second.
+   */
+  public static final class Timeline {
+    private final List<Second> seconds;
+    private final Map<Integer, List<String>> events;
+
+    private Timeline(List<Second> seconds, Map<Integer, List<String>> events) {
+      this.seconds = seconds;
+      this.events = events;
+    }
+
+    /**
+     * Returns the number of seconds in the timeline.
+     */
+    public int getNumSeconds() {
+      return seconds.size();
+    }
+
+    /**
+     * Returns the number of operations completed in the given second.
+     */
+    public long getThroughput(int second) {
+      Second stats = seconds.get(second);
+      synchronized (stats) {
+        return stats.completed;
+      }
+    }
+
+    /**
+     * Returns the number of operations intended to start in the given second that failed.
+     */
+    public long getErrors(int second) {
+      Second stats = seconds.get(second);
+      synchronized (stats) {
+        return stats.errors;
+      }
+    }
+
+    /**
+     * Returns the given latency percentile in microseconds of the successful operations intended to start in the
+     * given second.
+     */
+    public long getLatencyPercentileMicros(int second, double percentile) {
+      Second stats = seconds.get(second);
+      synchronized (stats) {
+        return stats.latencies.getPercentile(percentile);
+      }
+    }
+
+    /**
+     * Returns the second in which the given event happened, or -1 if it didn't happen.
+     */
+    public int getEventSecond(String event) {
+      for (Map.Entry<Integer, List<String>> entry : events.entrySet()) {
+        if (entry.getValue().contains(event)) {
+          return entry.getKey();
+        }
+      }
+      return -1;
+    }
+
+    @Override
+    public String toString() {
+      StringWriter timeline = new StringWriter();
+      PrintWriter writer = new PrintWriter(timeline);
+      writer.printf("%6s %8s %6s %10s %10s %10s %10s  %s%n",
+                    "second", "ops", "errors", "p50(ms)", "p99(ms)", "p99.9(ms)", "max(ms)", "events");
+      for (int i = 0; i < seconds.size(); i++) {
+        Second second = seconds.get(i);
+        synchronized (second) {
+          List<String> secondEvents = events.get(i);
+          writer.printf("%6d %8d %6d %10.2f %10.2f %10.2f %10.2f  %s%n",
+                        i, second.completed, second.errors,
+                        second.latencies.getPercentile(50) / 1000.0d, second.latencies.getPercentile(99) / 1000.0d,
+                        second.latencies.getPercentile(99.9) / 1000.0d, second.latencies.getMax() / 1000.0d,
+                        secondEvents == null ? "" : String.join(", ", secondEvents));
+        }
+      }
+
+      // summarize the phases before, during and after the disruption
+      if (hasDisruption()) {
+        writer.println();
+        for (Phase phase : Arrays.asList(getBeforeDisruption(), getDuringDisruption(), getAfterDisruption())) {
+          if (phase.getNumSeconds() > 0) {
+            writer.println(phase);
+          }
+        }
+      }
+      writer.flush();
+      return timeline.toString();
+    }
+
+    /**
+     * Returns the phase before the disruption, up to the second in which it started.
+     *
+     * @throws IllegalStateException if the start and end of the disruption are not marked
+     */
+    public Phase getBeforeDisruption() {
+      checkDisruption();
+      return getPhase("before disruption", 0, getEventSecond(DISRUPTION_START));
+    }
+
+    /**
+     * Returns the phase during the disruption, from the second in which it started to the one in which it ended.
+     *
+     * @throws IllegalStateException if the start and end of the disruption are not marked
+     */
+    public Phase getDuringDisruption() {
+      checkDisruption();
+      return getPhase("during disruption", getEventSecond(DISRUPTION_START), getEventSecond(DISRUPTION_END) + 1);
+    }
+
+    /**
+     * Returns the phase after the disruption, from the second after the one in which it ended.
+     *
+     * @throws IllegalStateException if the start and end of the disruption are not marked
+     */
+    public Phase getAfterDisruption() {
+      checkDisruption();
+      return getPhase("after disruption", getEventSecond(DISRUPTION_END) + 1, seconds.size());
+    }
+
+    /**
+     * Returns the summary of the given seconds of the timeline.
+     *
+     * @param name name of the phase
+     * @param fromSecond first second of the phase, inclusive
+     * @param toSecond last second of the phase, exclusive
+     */
+    public Phase getPhase(String name, int fromSecond, int toSecond) {
+      LatencyHistogram latencies = new LatencyHistogram();
+      long completed = 0;
+      long errors = 0;
+      for (int i = fromSecond; i < toSecond; i++) {
+        Second second = seconds.get(i);
+        synchronized (second) {
+          latencies.add(second.latencies);
+          completed += second.completed;
+          errors += second.errors;
+        }
+      }
+      return new Phase(name, Math.max(0, toSecond - fromSecond), completed, errors, latencies);
+    }
+
+    private boolean hasDisruption() {
+      int start = getEventSecond(DISRUPTION_START);
+      return start >= 0 && getEventSecond(DISRUPTION_END) >= start;
+    }
+
+    private void checkDisruption() {
+      if (!hasDisruption()) {
+        throw new IllegalStateException("The start and end of the disruption are not marked in the timeline");
+      }
+    }
+  }
+
+  /**
+   * The throughput, errors and latency of a workload over a phase of a {@link Timeline}, such as the time before,
+   * during or after a disruption.
+   */
+  public static final class Phase {
+    private final String name;
+    private final int numSeconds;
+    private final long operations;
+    private final long errors;
+    private final LatencyHistogram latencies;
+
+    private Phase(String name, int numSeconds, long operations, long errors, LatencyHistogram latencies) {
+      this.name = name;
+      this.numSeconds = numSeconds;
+      this.operations = operations;
+      this.errors = errors;
+      this.latencies = latencies;
+    }
+
+    /**
+     * Returns the number of seconds of the phase.
+     */
+    public int getNumSeconds() {
+      return numSeconds;
+    }
+
+    /**
+     * Returns the number of operations completed in the phase, including the failed ones.
+     */
+    public long getOperations() {
+      return operations;
+    }
+
+    /**
+     * Returns the number of operations completed per second in the phase.
+     */
+    public double getOperationsPerSecond() {
+      return numSeconds == 0 ? 0.0d : operations / (double) numSeconds;
+    }
+
+    /**
+     * Returns the number of operations intended to start in the phase that failed.
+     */
+    public long getErrors() {
+      return errors;
+    }
+
+    /**
+     * Returns the fraction of the operations of the phase that failed.
+     */
+    public double getErrorRate() {
+      return operations == 0 ? 0.0d : errors / (double) operations;
+    }
+
+    /**
+     * Returns the given latency percentile in microseconds of the successful operations of the phase.
+     */
+    public long getLatencyPercentileMicros(double percentile) {
+      return latencies.getPercentile(percentile);
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%-18s %8.1f ops/s, %d errors, p50 %.2f ms, p99 %.2f ms, p99.9 %.2f ms, max %.2f ms",
+                           name, getOperationsPerSecond(), errors,
+                           latencies.getPercentile(50) / 1000.0d, latencies.getPercentile(99) / 1000.0d,
+                           latencies.getPercentile(99.9) / 1000.0d, latencies.getMax() / 1000.0d);
+    }
+  }
+
+  /**
+   * A histogram of latencies with a relative precision of 1/8, using logarithmic buckets that are each divided into
+   * eight linear sub-buckets.
+   */
+  static final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // values below this are counted exactly
+    private static final int LINEAR_LIMIT = 2 * SUB_BUCKETS;
+    private static final int NUM_BUCKETS = LINEAR_LIMIT + (64 - SUB_BUCKET_BITS - 1) * SUB_BUCKETS;
+
+    private final long[] counts = new long[NUM_BUCKETS];
+    private long count;
+    private long max;
+
+    void record(long value) {
+      counts[getIndex(Math.max(0L, value))]++;
+      count++;
+      max = Math.max(max, value);
+    }
+
+    void add(LatencyHistogram other) {
+      for (int i = 0; i < NUM_BUCKETS; i++) {
+        counts[i] += other.counts[i];
+      }
+      count += other.count;
+      max = Math.max(max, other.max);
+    }
+
+    long getMax() {
+      return max;
+    }
+
+    /**
+     * Returns an upper bound of the given percentile, which is never larger than the max value.
+     */
+    long getPercentile(double percentile) {
+      if (count == 0) {
+        return 0;
+      }
+      long threshold = Math.max(1L, (long) Math.ceil(count * percentile / 100.0d));
+      long seen = 0;
+      for (int i = 0; i < NUM_BUCKETS; i++) {
+        seen += counts[i];
+        if (seen >= threshold) {
+          return Math.min(getUpperBound(i), max);
+        }
+      }
+      return max;
+    }
+
+    static int getIndex(long value) {
+      if (value < LINEAR_LIMIT) {
+        return (int) value;
+      }
+      int exponent = 63 - Long.numberOfLeadingZeros(value);
+      int subBucket = (int) ((value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+      return LINEAR_LIMIT + (exponent - SUB_BUCKET_BITS - 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long getUpperBound(int index) {
+      if (index < LINEAR_LIMIT) {
+        return index;
+      }
+      int exponent = (index - LINEAR_LIMIT) / SUB_BUCKETS + SUB_BUCKET_BITS + 1;
+      int subBucket = (index - LINEAR_LIMIT) % SUB_BUCKETS;
+      return ((long) (SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+  }
+}
@@ -0,0 +1,326 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.test;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A TCP proxy running in the test JVM, which forwards connections from a local port to a target address, such as the
+ * CDAP router, and shapes the traffic to simulate a slow or unreliable network. It can add latency and jitter to the
+ * data sent in either direction, cap the bandwidth of each direction of a connection, and reset connections.
+ *
+ * The shaping can be changed at any time and applies to all connections, including the ones already open. Data is
+ * never reordered, even with jitter. Each direction of a connection holds at most a fixed number of bytes in flight,
+ * so that a bandwidth cap slows down the sender instead of buffering everything it sends. When one side shuts down
+ * its output, only that direction is closed, so that a client can half-close a connection and still read the
+ * response.
+ */
+public final class ShapingProxy implements Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ShapingProxy.class);
+  private static final int BUFFER_SIZE = 16 * 1024;
+  // maximum number of bytes read from one side of a connection but not yet written to the other side
+  private static final int MAX_BYTES_IN_FLIGHT = 16 * BUFFER_SIZE;
+  private static final int CONNECT_TIMEOUT_MS = 10000;
+
+  private final InetSocketAddress target;
+  private final ServerSocket serverSocket;
+  private final ExecutorService executor;
+  private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+
+  private volatile long latencyNanos;
+  private volatile long jitterNanos;
+  private volatile long bytesPerSecond;
+  private volatile double resetProbability;
+  private volatile boolean closed;
+
+  /**
+   * Creates a proxy to the given target, listening on a random port of the loopback address.
+   * Call {@link #start()} to start accepting connections.
+   */
+  public ShapingProxy(String targetHost, int targetPort) throws IOException {
+    this.target = new InetSocketAddress(targetHost, targetPort);
+    this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+    this.executor = Executors.newCachedThreadPool(
+      new ThreadFactoryBuilder().setDaemon(true).setNameFormat("shaping-proxy-%d").build());
+  }
+
+  /**
+   * Starts accepting connections.
+   */
+  public ShapingProxy start() {
+    executor.execute(this::accept);
+    LOG.info("Started proxy from port {} to {}", getPort(), target);
+    return this;
+  }
+
+  /**
+   * Returns the local port that the proxy listens on.
+   */
+  public int getPort() {
+    return serverSocket.getLocalPort();
+  }
+
+  /**
+   * Returns the host name that the proxy listens on.
+   */
+  public String getHost() {
+    return serverSocket.getInetAddress().getHostAddress();
+  }
+
+  /**
+   * Sets the shaping of the traffic.
+   *
+   * @param latency time to delay all data by, in each direction
+   * @param jitter maximum time to randomly add to the latency
+   * @param unit unit of time for latency and jitter
+   * @param bytesPerSecond maximum bandwidth of each direction of a connection, or 0 for no limit
+   * @param resetProbability probability to reset the connection instead of forwarding a chunk of data
+   */
+  public void setShaping(long latency, long jitter, TimeUnit unit, long bytesPerSecond, double resetProbability) {
+    if (latency < 0 || jitter < 0 || bytesPerSecond < 0 || resetProbability < 0.0d || resetProbability > 1.0d) {
+      throw new IllegalArgumentException("Invalid shaping settings");
+    }
+    this.latencyNanos = unit.toNanos(latency);
+    this.jitterNanos = unit.toNanos(jitter);
+    this.bytesPerSecond = bytesPerSecond;
+    this.resetProbability = resetProbability;
+    LOG.info("Shaping proxy traffic: latency {} {}, jitter {} {}, {} bytes per second, reset probability {}",
+             latency, unit, jitter, unit, bytesPerSecond, resetProbability);
+  }
+
+  /**
+   * Removes all shaping of the traffic.
+   */
+  public void clearShaping() {
+    setShaping(0, 0, TimeUnit.MILLISECONDS, 0, 0.0d);
+  }
+
+  /**
+   * Resets all currently open connections.
+   */
+  public void resetConnections() {
+    for (Socket socket : sockets) {
+      reset(socket);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    serverSocket.close();
+    resetConnections();
+    executor.shutdownNow();
+  }
+
+  private void accept() {
+    while (!closed) {
+      Socket client;
+      try {
+        client = serverSocket.accept();
+      } catch (IOException e) {
+        if (!closed) {
+          LOG.warn("Failed to accept connection on port {}", getPort(), e);
+        }
+        return;
+      }
+      sockets.add(client);
+      // connects in another thread, so that a slow or unreachable target doesn't hold up the other clients
+      executor.execute(() -> connect(client));
+    }
+  }
+
+  /**
+   * Connects to the target for the given client, and forwards the data in both directions.
+   */
+  private void connect(Socket client) {
+    Socket upstream = new Socket();
+    sockets.add(upstream);
+    try {
+      upstream.connect(target, CONNECT_TIMEOUT_MS);
+    } catch (IOException e) {
+      LOG.warn("Failed to connect to {}", target, e);
+      reset(client);
+      reset(upstream);
+      return;
+    }
+    if (closed) {
+      // the proxy was closed while connecting, after it reset the open connections
+      reset(client);
+      reset(upstream);
+      return;
+    }
+    AtomicInteger openDirections = new AtomicInteger(2);
+    forward(client, upstream, openDirections);
+    forward(upstream, client, openDirections);
+  }
+
+  /**
+   * Forwards data from one socket to another. One thread reads the data into a queue that releases each chunk when
+   * its latency has passed, and another thread writes the released chunks within the bandwidth limit. The reader
+   * stops reading while {@link #MAX_BYTES_IN_FLIGHT} bytes are queued. At the end of the input, only the output of
+   * the other socket is shut down, and both sockets are closed once both directions of the connection ended.
+   */
+  private void forward(Socket from, Socket to, AtomicInteger openDirections) {
+    DelayQueue<Chunk> queue = new DelayQueue<>();
+    Semaphore bytesInFlight = new Semaphore(MAX_BYTES_IN_FLIGHT);
+    executor.execute(() -> {
+      // System.nanoTime() has an arbitrary origin, which may be negative
+      long lastRelease = System.nanoTime();
+      long sequence = 0;
+      byte[] buffer = new byte[BUFFER_SIZE];
+      try {
+        InputStream input = from.getInputStream();
+        int len;
+        do {
+          len = input.read(buffer);
+          if (len > 0) {
+            bytesInFlight.acquire(len);
+          }
+          long jitter = jitterNanos;
+          long release = System.nanoTime() + latencyNanos
+            + (jitter > 0 ? ThreadLocalRandom.current().nextLong(jitter + 1) : 0);
+          // never release a chunk before the previous one, so that jitter doesn't reorder the data
+          lastRelease = Math.max(release, lastRelease);
+          queue.put(new Chunk(len < 0 ? null : Arrays.copyOf(buffer, len), lastRelease, sequence++));
+        } while (len >= 0);
+        from.shutdownInput();
+      } catch (IOException | InterruptedException e) {
+        queue.put(new Chunk(null, lastRelease, sequence));
+        closeQuietly(from, to);
+      }
+    });
+
+    executor.execute(() -> {
+      long nextSendNanos = System.nanoTime();
+      boolean ended = false;
+      try {
+        OutputStream output = to.getOutputStream();
+        while (true) {
+          Chunk chunk = queue.take();
+          if (chunk.data == null) {
+            to.shutdownOutput();
+            ended = true;
+            return;
+          }
+          if (ThreadLocalRandom.current().nextDouble() < resetProbability) {
+            LOG.debug("Resetting connection between {} and {}", from, to);
+            reset(from);
+            reset(to);
+            return;
+          }
+          long rate = bytesPerSecond;
+          if (rate > 0) {
+            long now = System.nanoTime();
+            nextSendNanos = Math.max(nextSendNanos, now);
+            if (nextSendNanos > now) {
+              TimeUnit.NANOSECONDS.sleep(nextSendNanos - now);
+            }
+            nextSendNanos += TimeUnit.SECONDS.toNanos(chunk.data.length) / rate;
+          }
+          output.write(chunk.data);
+          output.flush();
+          bytesInFlight.release(chunk.data.length);
+        }
+      } catch (IOException | InterruptedException e) {
+        closeQuietly(from, to);
+      } finally {
+        if (!ended) {
+          // unblock the reader, which then fails on the closed socket
+          bytesInFlight.release(MAX_BYTES_IN_FLIGHT);
+        }
+        if (!ended || openDirections.decrementAndGet() == 0) {
+          closeQuietly(from, to);
+          sockets.remove(from);
+          sockets.remove(to);
+        }
+      }
+    });
+  }
+
+  private void reset(Socket socket) {
+    try {
+      // closing with a linger time of zero sends a TCP RST
+      socket.setSoLinger(true, 0);
+    } catch (SocketException e) {
+      // ignore, the socket is closed below anyway
+    }
+    closeQuietly(socket);
+    sockets.remove(socket);
+  }
+
+  private void closeQuietly(Socket... sockets) {
+    for (Socket socket : sockets) {
+      try {
+        socket.close();
+      } catch (IOException e) {
+        LOG.trace("Failed to close {}", socket, e);
+      }
+    }
+  }
+
+  /**
+   * A chunk of data that becomes available once its latency has passed. A {@code null} data marks the end of the
+   * stream. Chunks released at the same time are ordered by their sequence number.
+   */
+  private static final class Chunk implements Delayed {
+    private final byte[] data;
+    private final long releaseNanos;
+    private final long sequence;
+
+    Chunk(byte[] data, long releaseNanos, long sequence) {
+      this.data = data;
+      this.releaseNanos = releaseNanos;
+      this.sequence = sequence;
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+      return unit.convert(releaseNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed other) {
+      Chunk chunk = (Chunk) other;
+      int result = Long.compare(releaseNanos, chunk.releaseNanos);
+      return result != 0 ? result : Long.compare(sequence, chunk.sequence);
+    }
+  }
+}
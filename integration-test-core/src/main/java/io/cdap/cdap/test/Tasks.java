@@ -16,19 +16,34 @@
 
 package io.cdap.cdap.test;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.annotation.Nullable;
 
 /**
  * General task utils. Copied from {@link io.cdap.cdap.common.utils.Tasks} for isolation.
  * Depending on {@link io.cdap.cdap.common.utils.Tasks} packages cdap-common jar including other dependencies which
- * causes class loading issue
+ * causes class loading issue.
+ *
+ * Waits that don't specify a sleep delay poll with a {@link Backoff} derived from the timeout: the condition is
+ * checked again quickly at first and less frequently the longer it takes. Regardless of the {@link Backoff},
+ * the condition is always checked one last time when the timeout is reached.
  */
 public final class Tasks {
 
+  private static final String SCHEDULER_THREADS = "tasks.scheduler.threads";
+
   private Tasks() { }
 
   /**
@@ -51,25 +66,63 @@ public final class Tasks {
                                  long sleepDelay, TimeUnit sleepDelayUnit, @Nullable String message)
     throws TimeoutException, InterruptedException, ExecutionException {
 
-    long sleepDelayMs = sleepDelayUnit.toMillis(sleepDelay);
-    long startTime = System.currentTimeMillis();
-    long timeoutMs = timeoutUnit.toMillis(timeout);
-    T actualValue = null;
-    while (System.currentTimeMillis() - startTime < timeoutMs) {
-      try {
-        actualValue = callable.call();
+    waitFor(desiredValue, callable, timeout, timeoutUnit, Backoff.fixed(sleepDelay, sleepDelayUnit), message);
+  }
+
+  /**
+   * Calls callable, waiting as determined by the given {@link Backoff} between each call,
+   * until it returns the desiredValue or the timeout has passed.
+   *
+   * @param desiredValue the desired value to get from callable
+   * @param callable the callable to check
+   * @param timeout time until we timeout
+   * @param timeoutUnit unit of time for timeout
+   * @param backoff determines the time to wait between calls to callable
+   * @param message an optional message for the {@link TimeoutException}
+   * @param <T> type of desiredValue
+   * @throws TimeoutException if timeout has passed, but didn't get the desiredValue
+   * @throws InterruptedException if something interrupted this waiting operation
+   * @throws ExecutionException if there was an exception in calling the callable
+   */
+  public static <T> void waitFor(T desiredValue, Callable<T> callable, long timeout, TimeUnit timeoutUnit,
+                                 Backoff backoff, @Nullable String message)
+    throws TimeoutException, InterruptedException, ExecutionException {
+
+    String statsKey = WaitStats.getKey("Tasks.waitFor");
+    long startTime = System.nanoTime();
+    long deadline = startTime + timeoutUnit.toNanos(timeout);
+    WaitStats.Outcome outcome = WaitStats.Outcome.FAILED;
+    T actualValue;
+    int attempt = 0;
+    try {
+      while (true) {
+        try {
+          actualValue = callable.call();
+        } catch (Exception e) {
+          throw new ExecutionException(e);
+        }
+        attempt++;
         if (desiredValue.equals(actualValue)) {
+          outcome = WaitStats.Outcome.SATISFIED;
           return;
         }
-      } catch (Exception e) {
-        throw new ExecutionException(e);
+        // never sleep past the deadline, so that the last call happens right when the timeout is reached
+        long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        if (remainingMs <= 0) {
+          break;
+        }
+        try {
+          TimeUnit.MILLISECONDS.sleep(Math.min(backoff.getDelayMs(attempt), remainingMs));
+        } catch (InterruptedException e) {
+          outcome = WaitStats.Outcome.INTERRUPTED;
+          throw e;
+        }
       }
-      Thread.sleep(sleepDelayMs);
-    }
-    if (message == null) {
-      message = String.format("Timeout occurred. Expected %s but found %s.", desiredValue, actualValue);
+      outcome = WaitStats.Outcome.TIMED_OUT;
+      throw new TimeoutException(getTimeoutMessage(desiredValue, actualValue, message));
+    } finally {
+      WaitStats.record(statsKey, outcome, System.nanoTime() - startTime, attempt, timeoutUnit.toMillis(timeout));
     }
-    throw new TimeoutException(message);
   }
 
   /**
@@ -95,7 +148,7 @@ public final class Tasks {
 
 
   /**
-   * Calls callable, waiting 50 milliseconds between each call,
+   * Calls callable, waiting as determined by {@link Backoff#forTimeout(long, TimeUnit)} between each call,
    * until it returns the desiredValue or the timeout has passed.
    *
    * @param desiredValue the desired value to get from callable
@@ -111,11 +164,11 @@ public final class Tasks {
   public static <T> void waitFor(T desiredValue, Callable<T> callable, long timeout, TimeUnit timeoutUnit,
                                  @Nullable String message)
     throws TimeoutException, InterruptedException, ExecutionException {
-    waitFor(desiredValue, callable, timeout, timeoutUnit, 50, TimeUnit.MILLISECONDS, message);
+    waitFor(desiredValue, callable, timeout, timeoutUnit, Backoff.forTimeout(timeout, timeoutUnit), message);
   }
 
   /**
-   * Calls callable, waiting 50 milliseconds between each call,
+   * Calls callable, waiting as determined by {@link Backoff#forTimeout(long, TimeUnit)} between each call,
    * until it returns the desiredValue or the timeout has passed.
    *
    * @param desiredValue the desired value to get from callable
@@ -129,7 +182,268 @@ public final class Tasks {
    */
   public static <T> void waitFor(T desiredValue, Callable<T> callable, long timeout, TimeUnit timeoutUnit)
     throws TimeoutException, InterruptedException, ExecutionException {
-    waitFor(desiredValue, callable, timeout, timeoutUnit, 50, TimeUnit.MILLISECONDS);
+    waitFor(desiredValue, callable, timeout, timeoutUnit, Backoff.forTimeout(timeout, timeoutUnit), null);
+  }
+
+  /**
+   * Same as {@link #waitFor(Object, Callable, long, TimeUnit, Backoff, String)}, except that it doesn't block the
+   * calling thread. The callable is called from a scheduler shared by all asynchronous waits, which only occupies a
+   * thread while the callable is running, not while waiting for the next call.
+   *
+   * @param desiredValue the desired value to get from callable
+   * @param callable the callable to check
+   * @param timeout time until we timeout
+   * @param timeoutUnit unit of time for timeout
+   * @param backoff determines the time to wait between calls to callable
+   * @param message an optional message for the {@link TimeoutException}
+   * @param <T> type of desiredValue
+   * @return a {@link CompletableFuture} that completes with the desiredValue, or fails with a
+   *         {@link TimeoutException} or the exception thrown by the callable. Cancelling it stops further calls.
+   */
+  public static <T> CompletableFuture<T> waitForAsync(T desiredValue, Callable<T> callable,
+                                                      long timeout, TimeUnit timeoutUnit,
+                                                      Backoff backoff, @Nullable String message) {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    String statsKey = WaitStats.getKey("Tasks.waitForAsync");
+    long deadline = System.nanoTime() + timeoutUnit.toNanos(timeout);
+    SchedulerHolder.SCHEDULER.execute(new AsyncWait<>(desiredValue, callable, deadline, backoff, message, future,
+                                                      statsKey, timeoutUnit.toMillis(timeout)));
+    return future;
+  }
+
+  /**
+   * Calls callable asynchronously, waiting as determined by {@link Backoff#forTimeout(long, TimeUnit)} between
+   * each call, until it returns the desiredValue or the timeout has passed.
+   *
+   * @see #waitForAsync(Object, Callable, long, TimeUnit, Backoff, String)
+   */
+  public static <T> CompletableFuture<T> waitForAsync(T desiredValue, Callable<T> callable,
+                                                      long timeout, TimeUnit timeoutUnit) {
+    return waitForAsync(desiredValue, callable, timeout, timeoutUnit, Backoff.forTimeout(timeout, timeoutUnit), null);
+  }
+
+  /**
+   * Calls all the given conditions concurrently, each one until it returns {@code true}, all of them under the same
+   * timeout. The conditions are called from the scheduler shared by all asynchronous waits, whose size can be set
+   * with the {@code tasks.scheduler.threads} system property.
+   *
+   * @param conditions map from a description of each condition to the condition, used for reporting
+   * @param timeout time until we timeout
+   * @param timeoutUnit unit of time for timeout
+   * @throws TimeoutException if timeout has passed, but some conditions are still not met. The message lists them.
+   * @throws InterruptedException if something interrupted this waiting operation
+   * @throws ExecutionException if there was an exception in calling any of the conditions
+   */
+  public static void waitForAll(Map<String, ? extends Callable<Boolean>> conditions,
+                                long timeout, TimeUnit timeoutUnit)
+    throws TimeoutException, InterruptedException, ExecutionException {
+    String statsKey = WaitStats.getKey("Tasks.waitForAll");
+    long startTime = System.nanoTime();
+    WaitStats.Outcome outcome = WaitStats.Outcome.FAILED;
+    Map<String, CompletableFuture<Boolean>> futures = waitForEachAsync(conditions, timeout, timeoutUnit);
+    CompletableFuture<Void> all = new CompletableFuture<>();
+    AtomicInteger pending = new AtomicInteger(futures.size());
+    if (futures.isEmpty()) {
+      all.complete(null);
+    }
+    for (CompletableFuture<Boolean> future : futures.values()) {
+      future.whenComplete((value, failure) -> {
+        if (failure != null && !(failure instanceof TimeoutException)) {
+          // fail fast, there is no point in waiting for the other conditions
+          all.completeExceptionally(failure);
+        } else if (pending.decrementAndGet() == 0) {
+          all.complete(null);
+        }
+      });
+    }
+
+    try {
+      all.get();
+      List<String> unmet = new ArrayList<>();
+      for (Map.Entry<String, CompletableFuture<Boolean>> entry : futures.entrySet()) {
+        if (entry.getValue().isCompletedExceptionally()) {
+          unmet.add(entry.getKey());
+        }
+      }
+      if (!unmet.isEmpty()) {
+        outcome = WaitStats.Outcome.TIMED_OUT;
+        throw new TimeoutException(String.format("Timeout occurred. %d out of %d conditions were not met: %s",
+                                                 unmet.size(), futures.size(), unmet));
+      }
+      outcome = WaitStats.Outcome.SATISFIED;
+    } catch (InterruptedException e) {
+      outcome = WaitStats.Outcome.INTERRUPTED;
+      throw e;
+    } finally {
+      cancelAll(futures);
+      WaitStats.record(statsKey, outcome, System.nanoTime() - startTime, 0, timeoutUnit.toMillis(timeout));
+    }
   }
-}
 
+  /**
+   * Calls all the given conditions concurrently until one of them returns {@code true}, or the timeout has passed.
+   * The conditions are called from the scheduler shared by all asynchronous waits.
+   *
+   * @param conditions map from a description of each condition to the condition, used for reporting
+   * @param timeout time until we timeout
+   * @param timeoutUnit unit of time for timeout
+   * @return the description of the first condition that was met
+   * @throws TimeoutException if timeout has passed, but none of the conditions is met
+   * @throws InterruptedException if something interrupted this waiting operation
+   * @throws ExecutionException if there was an exception in calling any of the conditions
+   */
+  public static String waitForAny(Map<String, ? extends Callable<Boolean>> conditions,
+                                  long timeout, TimeUnit timeoutUnit)
+    throws TimeoutException, InterruptedException, ExecutionException {
+    String statsKey = WaitStats.getKey("Tasks.waitForAny");
+    long startTime = System.nanoTime();
+    WaitStats.Outcome outcome = WaitStats.Outcome.FAILED;
+    Map<String, CompletableFuture<Boolean>> futures = waitForEachAsync(conditions, timeout, timeoutUnit);
+    CompletableFuture<String> any = new CompletableFuture<>();
+    AtomicInteger pending = new AtomicInteger(futures.size());
+    if (futures.isEmpty()) {
+      any.completeExceptionally(new IllegalArgumentException("No condition to wait for."));
+    }
+    for (Map.Entry<String, CompletableFuture<Boolean>> entry : futures.entrySet()) {
+      entry.getValue().whenComplete((value, failure) -> {
+        if (failure == null) {
+          any.complete(entry.getKey());
+        } else if (!(failure instanceof TimeoutException)) {
+          any.completeExceptionally(failure);
+        } else if (pending.decrementAndGet() == 0) {
+          any.completeExceptionally(new TimeoutException(
+            String.format("Timeout occurred. None of the conditions were met: %s", futures.keySet())));
+        }
+      });
+    }
+
+    try {
+      String satisfied = any.get();
+      outcome = WaitStats.Outcome.SATISFIED;
+      return satisfied;
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof TimeoutException) {
+        outcome = WaitStats.Outcome.TIMED_OUT;
+        throw (TimeoutException) e.getCause();
+      }
+      throw e;
+    } catch (InterruptedException e) {
+      outcome = WaitStats.Outcome.INTERRUPTED;
+      throw e;
+    } finally {
+      cancelAll(futures);
+      WaitStats.record(statsKey, outcome, System.nanoTime() - startTime, 0, timeoutUnit.toMillis(timeout));
+    }
+  }
+
+  private static Map<String, CompletableFuture<Boolean>> waitForEachAsync(
+    Map<String, ? extends Callable<Boolean>> conditions, long timeout, TimeUnit timeoutUnit) {
+    // all waits share the same deadline
+    long deadline = System.nanoTime() + timeoutUnit.toNanos(timeout);
+    Backoff backoff = Backoff.forTimeout(timeout, timeoutUnit);
+    Map<String, CompletableFuture<Boolean>> futures = new LinkedHashMap<>();
+    for (Map.Entry<String, ? extends Callable<Boolean>> entry : conditions.entrySet()) {
+      CompletableFuture<Boolean> future = new CompletableFuture<>();
+      // the individual conditions are not recorded in WaitStats, only the wait for all of them
+      SchedulerHolder.SCHEDULER.execute(new AsyncWait<>(true, entry.getValue(), deadline, backoff, null, future,
+                                                        null, timeoutUnit.toMillis(timeout)));
+      futures.put(entry.getKey(), future);
+    }
+    return futures;
+  }
+
+  private static void cancelAll(Map<String, CompletableFuture<Boolean>> futures) {
+    for (CompletableFuture<Boolean> future : futures.values()) {
+      future.cancel(false);
+    }
+  }
+
+  private static String getTimeoutMessage(Object desiredValue, @Nullable Object actualValue,
+                                          @Nullable String message) {
+    if (message != null) {
+      return message;
+    }
+    return String.format("Timeout occurred. Expected %s but found %s.", desiredValue, actualValue);
+  }
+
+  /**
+   * One step of an asynchronous wait. Calls the callable once and either completes the future,
+   * or schedules itself again.
+   */
+  private static final class AsyncWait<T> implements Runnable {
+    private final T desiredValue;
+    private final Callable<T> callable;
+    private final long deadline;
+    private final Backoff backoff;
+    private final String message;
+    private final CompletableFuture<T> future;
+    private final String statsKey;
+    private final long timeoutMs;
+    private final long startTime;
+    private int attempt;
+
+    AsyncWait(T desiredValue, Callable<T> callable, long deadline, Backoff backoff, @Nullable String message,
+              CompletableFuture<T> future, @Nullable String statsKey, long timeoutMs) {
+      this.desiredValue = desiredValue;
+      this.callable = callable;
+      this.deadline = deadline;
+      this.backoff = backoff;
+      this.message = message;
+      this.future = future;
+      this.statsKey = statsKey;
+      this.timeoutMs = timeoutMs;
+      this.startTime = System.nanoTime();
+    }
+
+    @Override
+    public void run() {
+      if (future.isDone()) {
+        return;
+      }
+      T actualValue;
+      try {
+        actualValue = callable.call();
+      } catch (Throwable t) {
+        future.completeExceptionally(t);
+        record(WaitStats.Outcome.FAILED);
+        return;
+      }
+      attempt++;
+      if (desiredValue.equals(actualValue)) {
+        future.complete(actualValue);
+        record(WaitStats.Outcome.SATISFIED);
+        return;
+      }
+      long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+      if (remainingMs <= 0) {
+        future.completeExceptionally(new TimeoutException(getTimeoutMessage(desiredValue, actualValue, message)));
+        record(WaitStats.Outcome.TIMED_OUT);
+        return;
+      }
+      SchedulerHolder.SCHEDULER.schedule(this, Math.min(backoff.getDelayMs(attempt), remainingMs),
+                                         TimeUnit.MILLISECONDS);
+    }
+
+    private void record(WaitStats.Outcome outcome) {
+      WaitStats.record(statsKey, outcome, System.nanoTime() - startTime, attempt, timeoutMs);
+    }
+  }
+
+  /**
+   * Holder of the scheduler shared by all asynchronous waits, so that it is only created when needed.
+   */
+  private static final class SchedulerHolder {
+    private static final ScheduledExecutorService SCHEDULER = Executors.newScheduledThreadPool(
+      Integer.getInteger(SCHEDULER_THREADS, Math.max(4, Runtime.getRuntime().availableProcessors())),
+      new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "tasks-wait-" + count.getAndIncrement());
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+  }
+}
@@ -0,0 +1,310 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.test;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Collects statistics about every wait performed by the tests, such as {@link Tasks#waitFor}, and reports at the end
+ * of the run which waits contribute most to the wall-clock time, and which waits have a timeout that is much larger
+ * than the time they actually need.
+ *
+ * Waits are grouped by operation and call site, where the call site is the first stack frame outside of the test
+ * framework classes. The report is logged when the JVM exits, and is also written to the file given by the
+ * {@code wait.stats.report.file} system property, if set. Collection can be disabled by setting the
+ * {@code wait.stats.enabled} system property to {@code false}.
+ */
+public final class WaitStats {
+
+  private static final Logger LOG = LoggerFactory.getLogger(WaitStats.class);
+
+  private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("wait.stats.enabled", "true"));
+  private static final String REPORT_FILE = System.getProperty("wait.stats.report.file");
+  private static final int TOP_N = Integer.getInteger("wait.stats.top", 20);
+  // a timeout is considered oversized if it is at least this many times the slowest successful wait
+  private static final int OVERSIZED_FACTOR = Integer.getInteger("wait.stats.oversized.factor", 10);
+  // minimum number of successful waits of a call site before its timeout is considered oversized
+  private static final int OVERSIZED_MIN_COUNT = 3;
+
+  // classes whose frames are skipped when determining the call site of a wait. Classes are referred to by name,
+  // since this class is also used from within programs, where the test base classes must not be loaded.
+  private static final Set<String> FRAMEWORK_CLASSES = new HashSet<>(Arrays.asList(
+    "io.cdap.cdap.test.Tasks", "io.cdap.cdap.test.WaitStats", "io.cdap.cdap.test.AudiTestBase"));
+
+  private static final ConcurrentMap<String, Site> SITES = new ConcurrentHashMap<>();
+  private static final AtomicBoolean HOOK_ADDED = new AtomicBoolean();
+
+  /**
+   * Outcome of a wait.
+   */
+  public enum Outcome {
+    SATISFIED,
+    TIMED_OUT,
+    FAILED,
+    INTERRUPTED
+  }
+
+  private WaitStats() { }
+
+  /**
+   * Returns the key to record a wait of the given operation under, or {@code null} if collection is disabled.
+   * Must be called from the thread that starts the wait, because the key contains the call site.
+   *
+   * @param operation name of the operation, used if the wait is not called through a framework method
+   */
+  static String getKey(String operation) {
+    if (!ENABLED) {
+      return null;
+    }
+    StackTraceElement[] stack = new Throwable().getStackTrace();
+    String frameworkMethod = null;
+    for (StackTraceElement element : stack) {
+      String className = element.getClassName();
+      int idx = className.indexOf('$');
+      String outerClassName = idx < 0 ? className : className.substring(0, idx);
+      if (FRAMEWORK_CLASSES.contains(outerClassName)) {
+        // use the outermost framework method, e.g. AudiTestBase.checkMetric rather than Tasks.waitFor
+        if (outerClassName.equals("io.cdap.cdap.test.AudiTestBase") && idx < 0) {
+          frameworkMethod = getSimpleName(outerClassName) + "." + element.getMethodName();
+        }
+        continue;
+      }
+      return String.format("%s @ %s.%s:%d", frameworkMethod == null ? operation : frameworkMethod,
+                           getSimpleName(className), element.getMethodName(), element.getLineNumber());
+    }
+    return operation;
+  }
+
+  /**
+   * Records one wait.
+   *
+   * @param key the key as returned by {@link #getKey(String)}. Nothing is recorded if it is {@code null}
+   * @param outcome outcome of the wait
+   * @param durationNanos how long the wait took
+   * @param polls number of times the condition was called, or 0 if unknown
+   * @param timeoutMs the timeout of the wait
+   */
+  static void record(String key, Outcome outcome, long durationNanos, int polls, long timeoutMs) {
+    if (key == null) {
+      return;
+    }
+    if (HOOK_ADDED.compareAndSet(false, true)) {
+      Runtime.getRuntime().addShutdownHook(new Thread(WaitStats::report, "wait-stats-report"));
+    }
+    Site site = SITES.get(key);
+    if (site == null) {
+      Site newSite = new Site(key);
+      site = SITES.putIfAbsent(key, newSite);
+      if (site == null) {
+        site = newSite;
+      }
+    }
+    site.add(outcome, TimeUnit.NANOSECONDS.toMillis(durationNanos), polls, timeoutMs);
+  }
+
+  /**
+   * Calls the given callable, which is expected to wait for something with the given timeout, and records how long
+   * it took. This is for waits that don't go through {@link Tasks}, such as {@code ProgramManager#waitForRun}.
+   * A {@link TimeoutException} thrown by the callable is recorded as a timeout.
+   *
+   * @param operation name of the operation
+   * @param timeout the timeout of the wait
+   * @param timeoutUnit unit of time for timeout
+   * @param callable the wait to perform
+   * @return the result of the callable
+   */
+  public static <T> T time(String operation, long timeout, TimeUnit timeoutUnit, Callable<T> callable)
+    throws Exception {
+    String key = getKey(operation);
+    long start = System.nanoTime();
+    Outcome outcome = Outcome.FAILED;
+    try {
+      T result = callable.call();
+      outcome = Outcome.SATISFIED;
+      return result;
+    } catch (TimeoutException e) {
+      outcome = Outcome.TIMED_OUT;
+      throw e;
+    } catch (InterruptedException e) {
+      outcome = Outcome.INTERRUPTED;
+      throw e;
+    } finally {
+      record(key, outcome, System.nanoTime() - start, 0, timeoutUnit.toMillis(timeout));
+    }
+  }
+
+  /**
+   * Returns the report of all waits recorded so far.
+   */
+  public static String getReport() {
+    List<Site> sites = new ArrayList<>();
+    for (Site site : SITES.values()) {
+      sites.add(site.copy());
+    }
+    long totalMs = 0;
+    int totalCount = 0;
+    for (Site site : sites) {
+      totalMs += site.totalMs;
+      totalCount += site.count;
+    }
+
+    StringWriter report = new StringWriter();
+    PrintWriter writer = new PrintWriter(report);
+    writer.printf("Wait time report: %d waits at %d call sites, %.1f seconds in total%n",
+                  totalCount, sites.size(), totalMs / 1000.0d);
+
+    sites.sort(Comparator.comparingLong((Site site) -> site.totalMs).reversed());
+    writer.printf("%nTop %d waits by total time:%n", Math.min(TOP_N, sites.size()));
+    writer.printf("%10s %6s %6s %8s %8s %8s %8s %10s  %s%n",
+                  "total(s)", "count", "t/o", "polls", "p50(ms)", "p90(ms)", "max(ms)", "timeout(s)", "call site");
+    for (Site site : sites.subList(0, Math.min(TOP_N, sites.size()))) {
+      writer.printf("%10.1f %6d %6d %8d %8d %8d %8d %10d  %s%n",
+                    site.totalMs / 1000.0d, site.count, site.timeouts, site.polls,
+                    site.getPercentileMs(50), site.getPercentileMs(90), site.maxSatisfiedMs,
+                    TimeUnit.MILLISECONDS.toSeconds(site.maxTimeoutMs), site.key);
+    }
+
+    writer.printf("%nWaits with a timeout of at least %d times their slowest successful wait:%n", OVERSIZED_FACTOR);
+    writer.printf("%10s %6s %8s  %s%n", "timeout(s)", "count", "max(ms)", "call site");
+    for (Site site : sites) {
+      if (site.isTimeoutOversized()) {
+        writer.printf("%10d %6d %8d  %s%n", TimeUnit.MILLISECONDS.toSeconds(site.maxTimeoutMs), site.count,
+                      site.maxSatisfiedMs, site.key);
+      }
+    }
+    writer.flush();
+    return report.toString();
+  }
+
+  private static void report() {
+    if (SITES.isEmpty()) {
+      return;
+    }
+    String report = getReport();
+    LOG.info("{}", report);
+    if (REPORT_FILE != null) {
+      try (Writer writer = Files.newBufferedWriter(Paths.get(REPORT_FILE), StandardCharsets.UTF_8)) {
+        writer.write(report);
+      } catch (IOException e) {
+        LOG.warn("Failed to write wait time report to {}", REPORT_FILE, e);
+      }
+    }
+  }
+
+  private static String getSimpleName(String className) {
+    return className.substring(className.lastIndexOf('.') + 1);
+  }
+
+  /**
+   * Statistics of the waits at one call site.
+   */
+  private static final class Site {
+    // bucket i counts successful waits that took less than 2^i milliseconds
+    private static final int NUM_BUCKETS = 32;
+
+    private final String key;
+    private final long[] satisfiedHistogram;
+    private int count;
+    private int timeouts;
+    private int failures;
+    private long polls;
+    private long totalMs;
+    private long maxSatisfiedMs;
+    private long maxTimeoutMs;
+
+    Site(String key) {
+      this.key = key;
+      this.satisfiedHistogram = new long[NUM_BUCKETS];
+    }
+
+    synchronized void add(Outcome outcome, long durationMs, int polls, long timeoutMs) {
+      count++;
+      this.polls += polls;
+      totalMs += durationMs;
+      maxTimeoutMs = Math.max(maxTimeoutMs, timeoutMs);
+      switch (outcome) {
+        case SATISFIED:
+          satisfiedHistogram[Math.min(NUM_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(durationMs))]++;
+          maxSatisfiedMs = Math.max(maxSatisfiedMs, durationMs);
+          break;
+        case TIMED_OUT:
+          timeouts++;
+          break;
+        default:
+          failures++;
+      }
+    }
+
+    synchronized Site copy() {
+      Site copy = new Site(key);
+      System.arraycopy(satisfiedHistogram, 0, copy.satisfiedHistogram, 0, NUM_BUCKETS);
+      copy.count = count;
+      copy.timeouts = timeouts;
+      copy.failures = failures;
+      copy.polls = polls;
+      copy.totalMs = totalMs;
+      copy.maxSatisfiedMs = maxSatisfiedMs;
+      copy.maxTimeoutMs = maxTimeoutMs;
+      return copy;
+    }
+
+    /**
+     * Returns the upper bound of the bucket containing the given percentile of successful waits.
+     */
+    long getPercentileMs(int percentile) {
+      long satisfied = count - timeouts - failures;
+      if (satisfied == 0) {
+        return 0;
+      }
+      long threshold = (satisfied * percentile + 99) / 100;
+      long seen = 0;
+      for (int i = 0; i < NUM_BUCKETS; i++) {
+        seen += satisfiedHistogram[i];
+        if (seen >= threshold) {
+          return Math.min(1L << i, maxSatisfiedMs);
+        }
+      }
+      return maxSatisfiedMs;
+    }
+
+    boolean isTimeoutOversized() {
+      return timeouts == 0 && failures == 0 && count >= OVERSIZED_MIN_COUNT
+        && maxTimeoutMs >= OVERSIZED_FACTOR * Math.max(1L, maxSatisfiedMs);
+    }
+  }
+}
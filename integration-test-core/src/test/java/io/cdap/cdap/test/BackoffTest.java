@@ -0,0 +1,97 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.cdap.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests the delays of {@link Backoff}.
+ */
+public class BackoffTest {
+
+  // enough samples for the jitter to come close to both of its bounds
+  private static final int SAMPLES = 1000;
+
+  @Test
+  public void testFixed() {
+    Backoff backoff = Backoff.fixed(2, TimeUnit.SECONDS);
+    for (int attempt = 1; attempt <= 10; attempt++) {
+      Assert.assertEquals(2000L, backoff.getDelayMs(attempt));
+    }
+  }
+
+  @Test
+  public void testForTimeoutClamping() {
+    // 1/20 of the timeout
+    assertDelays(Backoff.forTimeout(10, TimeUnit.SECONDS), 10L, 500L);
+    // raised to 50 milliseconds for short timeouts
+    assertDelays(Backoff.forTimeout(1, TimeUnit.SECONDS), 10L, 50L);
+    assertDelays(Backoff.forTimeout(0, TimeUnit.SECONDS), 10L, 50L);
+    // lowered to 5 seconds for long timeouts
+    assertDelays(Backoff.forTimeout(1, TimeUnit.HOURS), 10L, 5000L);
+  }
+
+  @Test
+  public void testJitterBounds() {
+    double jitter = 0.5d;
+    Backoff backoff = Backoff.exponential(100, 3000, TimeUnit.MILLISECONDS, 2.0d, jitter);
+    for (int attempt = 1; attempt <= 8; attempt++) {
+      long delayMs = Math.min(3000L, 100L << (attempt - 1));
+      long lower = Math.round(delayMs * (1 - jitter));
+      long upper = Math.min(3000L, Math.round(delayMs * (1 + jitter)));
+      long min = Long.MAX_VALUE;
+      long max = Long.MIN_VALUE;
+      for (int i = 0; i < SAMPLES; i++) {
+        long sample = backoff.getDelayMs(attempt);
+        min = Math.min(min, sample);
+        max = Math.max(max, sample);
+      }
+      String msg = String.format("Attempt %d: delays between %d and %d ms", attempt, min, max);
+      Assert.assertTrue(msg, min >= lower && max <= upper);
+      // the jitter goes both ways, but never above the max delay
+      Assert.assertTrue(msg, min < delayMs);
+      Assert.assertTrue(msg, delayMs == 3000L ? max == 3000L : max > delayMs);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidDelays() {
+    Backoff.exponential(2, 1, TimeUnit.SECONDS);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidJitter() {
+    Backoff.exponential(1, 2, TimeUnit.SECONDS, 2.0d, 1.5d);
+  }
+
+  /**
+   * Asserts the delay of the first attempt, and that the delay ends up at the given max delay.
+   */
+  private static void assertDelays(Backoff backoff, long initialDelayMs, long maxDelayMs) {
+    for (int i = 0; i < SAMPLES; i++) {
+      long first = backoff.getDelayMs(1);
+      Assert.assertTrue(backoff + " first delay " + first,
+                        first >= initialDelayMs * 0.8d && first <= initialDelayMs * 1.2d);
+      long last = backoff.getDelayMs(Integer.MAX_VALUE);
+      Assert.assertTrue(backoff + " last delay " + last, last >= maxDelayMs * 0.8d && last <= maxDelayMs);
+    }
+  }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.test;
+
+import com.google.common.io.ByteStreams;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tests the {@link ShapingProxy} against a server on the loopback address, which reads everything a client sends
+ * until the client shuts down its output, and then replies with the number of bytes it received.
+ */
+public class ShapingProxyTest {
+
+  private ServerSocket serverSocket;
+  private ExecutorService executor;
+  private ShapingProxy proxy;
+
+  @Before
+  public void setUp() throws IOException {
+    serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+    executor = Executors.newCachedThreadPool();
+    executor.execute(this::serve);
+    proxy = new ShapingProxy(serverSocket.getInetAddress().getHostAddress(), serverSocket.getLocalPort()).start();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    proxy.close();
+    serverSocket.close();
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testHalfClose() throws Exception {
+    try (Socket socket = connect()) {
+      Assert.assertEquals(5, send(socket, new byte[5]));
+    }
+  }
+
+  @Test
+  public void testLatency() throws Exception {
+    proxy.setShaping(200, 0, TimeUnit.MILLISECONDS, 0, 0.0d);
+    try (Socket socket = connect()) {
+      long startTime = System.nanoTime();
+      Assert.assertEquals(1, send(socket, new byte[1]));
+      // the request and the response are both delayed
+      Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) >= 400);
+    }
+  }
+
+  @Test
+  public void testBandwidth() throws Exception {
+    proxy.setShaping(0, 0, TimeUnit.MILLISECONDS, 100 * 1024, 0.0d);
+    try (Socket socket = connect()) {
+      long startTime = System.nanoTime();
+      Assert.assertEquals(300 * 1024, send(socket, new byte[300 * 1024]));
+      // the first chunk is sent right away, the rest at 100 KB per second
+      Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) >= 2000);
+    }
+  }
+
+  @Test
+  public void testBackpressure() throws Exception {
+    proxy.setShaping(0, 0, TimeUnit.MILLISECONDS, 10 * 1024, 0.0d);
+    AtomicLong written = new AtomicLong();
+    try (Socket socket = connect()) {
+      Future<?> writer = executor.submit(() -> {
+        byte[] buffer = new byte[64 * 1024];
+        try (OutputStream output = socket.getOutputStream()) {
+          while (true) {
+            output.write(buffer);
+            written.addAndGet(buffer.length);
+          }
+        }
+      });
+      TimeUnit.SECONDS.sleep(1);
+      writer.cancel(true);
+    }
+    // without backpressure, the proxy would accept anything the client writes; with it, the client can only fill the
+    // socket buffers and the bytes in flight of the proxy
+    Assert.assertTrue("Wrote " + written.get() + " bytes", written.get() < 32 * 1024 * 1024);
+  }
+
+  @Test
+  public void testConnectFailure() throws Exception {
+    int closedPort;
+    try (ServerSocket closedSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+      closedPort = closedSocket.getLocalPort();
+    }
+    String host = InetAddress.getLoopbackAddress().getHostAddress();
+    try (ShapingProxy failingProxy = new ShapingProxy(host, closedPort).start();
+         Socket socket = new Socket(failingProxy.getHost(), failingProxy.getPort())) {
+      socket.setSoTimeout(5000);
+      // the client is reset once the proxy fails to connect to the target
+      try {
+        Assert.assertEquals(-1, socket.getInputStream().read());
+      } catch (SocketException e) {
+        // connection reset
+      }
+    }
+  }
+
+  private Socket connect() throws IOException {
+    return new Socket(proxy.getHost(), proxy.getPort());
+  }
+
+  /**
+   * Sends the given data, shuts down the output of the socket and returns the number of bytes the server received.
+   */
+  private long send(Socket socket, byte[] data) throws IOException {
+    OutputStream output = socket.getOutputStream();
+    output.write(data);
+    output.flush();
+    socket.shutdownOutput();
+    String response = new String(ByteStreams.toByteArray(socket.getInputStream()), StandardCharsets.UTF_8);
+    return Long.parseLong(response);
+  }
+
+  private void serve() {
+    while (!serverSocket.isClosed()) {
+      Socket socket;
+      try {
+        socket = serverSocket.accept();
+      } catch (IOException e) {
+        return;
+      }
+      executor.execute(() -> {
+        try (Socket s = socket) {
+          InputStream input = s.getInputStream();
+          long received = 0;
+          byte[] buffer = new byte[8192];
+          int len;
+          while ((len = input.read(buffer)) >= 0) {
+            received += len;
+          }
+          s.getOutputStream().write(Long.toString(received).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+          // the client went away
+        }
+      });
+    }
+  }
+}
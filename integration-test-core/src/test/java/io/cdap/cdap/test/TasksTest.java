@@ -0,0 +1,87 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.cdap.test;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests the outcome of {@link Tasks#waitForAll(java.util.Map, long, TimeUnit)} and
+ * {@link Tasks#waitForAny(java.util.Map, long, TimeUnit)}, and how they report the conditions that were not met.
+ */
+public class TasksTest {
+
+  private static final Callable<Boolean> MET = () -> true;
+  private static final Callable<Boolean> NEVER = () -> false;
+
+  @Test
+  public void testWaitForAll() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    Tasks.waitForAll(ImmutableMap.of("met", MET, "third call", () -> calls.incrementAndGet() >= 3),
+                     10, TimeUnit.SECONDS);
+    Assert.assertEquals(3, calls.get());
+    Tasks.waitForAll(ImmutableMap.<String, Callable<Boolean>>of(), 10, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void testWaitForAllTimeout() throws Exception {
+    try {
+      Tasks.waitForAll(ImmutableMap.of("met", MET, "never 1", NEVER, "never 2", NEVER), 200, TimeUnit.MILLISECONDS);
+      Assert.fail("Expected a TimeoutException");
+    } catch (TimeoutException e) {
+      Assert.assertEquals("Timeout occurred. 2 out of 3 conditions were not met: [never 1, never 2]", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testWaitForAllFailure() throws Exception {
+    long start = System.nanoTime();
+    try {
+      Tasks.waitForAll(ImmutableMap.of("never", NEVER, "failing", () -> {
+        throw new IllegalStateException("failed");
+      }), 10, TimeUnit.SECONDS);
+      Assert.fail("Expected an ExecutionException");
+    } catch (ExecutionException e) {
+      Assert.assertTrue(e.toString(), e.getCause() instanceof IllegalStateException);
+    }
+    // a failure doesn't wait for the other conditions to time out
+    Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+  }
+
+  @Test
+  public void testWaitForAny() throws Exception {
+    Assert.assertEquals("met", Tasks.waitForAny(ImmutableMap.of("never", NEVER, "met", MET), 10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testWaitForAnyTimeout() throws Exception {
+    try {
+      Tasks.waitForAny(ImmutableMap.of("never 1", NEVER, "never 2", NEVER), 200, TimeUnit.MILLISECONDS);
+      Assert.fail("Expected a TimeoutException");
+    } catch (TimeoutException e) {
+      Assert.assertEquals("Timeout occurred. None of the conditions were met: [never 1, never 2]", e.getMessage());
+    }
+  }
+}
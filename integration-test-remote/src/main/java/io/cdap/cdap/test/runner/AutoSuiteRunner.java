@@ -18,7 +18,6 @@ package io.cdap.cdap.test.runner;
 
 import com.google.common.base.CharMatcher;
 import com.google.common.base.Preconditions;
-import com.google.common.base.Throwables;
 import org.junit.runner.Description;
 import org.junit.runner.Runner;
 import org.junit.runner.notification.RunNotifier;
@@ -49,12 +48,16 @@ import java.util.regex.Pattern;
 
 /**
  * Use this test {@link Runner} to automatically discover test classes to run.
+ *
+ * The test classes can run concurrently and be split across several JVMs, see {@link SuiteExecutor}.
  */
 public class AutoSuiteRunner extends ParentRunner<Runner> {
 
   private final List<Runner> children;
   private static final String TESTS_TO_RUN = "long.test";
 
+  private final SuiteExecutor executor;
+
   /**
    * The <code>SuitePackages</code> annotation specifies the packages to discover test classes to run.
    */
@@ -73,6 +76,73 @@ public class AutoSuiteRunner extends ParentRunner<Runner> {
     String pattern() default ".*Test$";
   }
 
+  /**
+   * The <code>RunAlone</code> annotation marks test classes that must not run concurrently with any other test class
+   * of the suite, e.g. because they restart system services or rely on global state.
+   */
+  @Retention(RetentionPolicy.RUNTIME)
+  @Target(ElementType.TYPE)
+  @Inherited
+  public @interface RunAlone {
+  }
+
+  /**
+   * The <code>Concurrent</code> annotation lets a suite run all of its test classes concurrently, as long as their
+   * resources don't conflict, if the given boolean system property is true and {@code suite.threads} is not set.
+   */
+  @Retention(RetentionPolicy.RUNTIME)
+  @Target(ElementType.TYPE)
+  @Inherited
+  public @interface Concurrent {
+    /**
+     * returns the name of the system property that enables concurrent runs
+     */
+    String property();
+  }
+
+  /**
+   * The <code>Resources</code> annotation declares the shared resources that a test class uses, so that test classes
+   * which conflict don't run concurrently. Resources are identified by name, e.g. "namespace:system" or
+   * "dataset:purchases".
+   */
+  @Retention(RetentionPolicy.RUNTIME)
+  @Target(ElementType.TYPE)
+  @Inherited
+  public @interface Resources {
+    /**
+     * returns the resources that no other test class may use at the same time
+     */
+    String[] exclusive() default {};
+
+    /**
+     * returns the resources that other test classes may use at the same time, unless they use them exclusively
+     */
+    String[] shared() default {};
+
+    /**
+     * returns the amounts taken from limited budgets, e.g. Spark executors
+     */
+    Budget[] budgets() default {};
+  }
+
+  /**
+   * The <code>Budget</code> annotation declares an amount taken from a limited budget, whose capacity is given by the
+   * <code>suite.budget.&lt;name&gt;</code> system property.
+   */
+  @Retention(RetentionPolicy.RUNTIME)
+  @Target({})
+  public @interface Budget {
+    /**
+     * returns the name of the budget
+     */
+    String name();
+
+    /**
+     * returns the amount taken from the budget
+     */
+    int amount();
+  }
+
   public AutoSuiteRunner(Class<?> testClass, final RunnerBuilder runnerBuilder) throws Throwable {
     super(testClass);
 
@@ -88,6 +158,7 @@ public class AutoSuiteRunner extends ParentRunner<Runner> {
       patternStr = createRegex(testsToRun);
     }
     Pattern pattern = Pattern.compile(patternStr);
+    ClassIndex classIndex = ClassIndex.create();
 
     // Find all packages as specified
     for (String pkg : matches.packages()) {
@@ -96,16 +167,21 @@ public class AutoSuiteRunner extends ParentRunner<Runner> {
         URL url = resources.nextElement();
         switch (url.getProtocol()) {
           case "file":
-            addRunnerFromPath(pkg, Paths.get(url.toURI()), pattern, runnerBuilder, runners);
+            // directories are not indexed, since a stamp of a directory tree costs as much as scanning it
+            addRunners(findClassesInPath(pkg, Paths.get(url.toURI()), pattern), runnerBuilder, runners);
           break;
           case "jar":
-            addRunnerFromJar(pkg, getJarPath(url), pattern, runnerBuilder, runners);
+            Path jarPath = getJarPath(url);
+            addRunners(classIndex.getClassNames(jarPath, getJarStamp(jarPath), pkg, pattern,
+                                                () -> findClassesInJar(pkg, jarPath, pattern)),
+                       runnerBuilder, runners);
           break;
         }
       }
     }
 
-    this.children = runners;
+    this.executor = SuiteExecutor.create(this);
+    this.children = executor.select(runners);
   }
 
   private String createRegex(String testsToRun) {
@@ -130,17 +206,36 @@ public class AutoSuiteRunner extends ParentRunner<Runner> {
     return child.getDescription();
   }
 
+  @Override
+  public void run(RunNotifier notifier) {
+    try {
+      super.run(notifier);
+    } finally {
+      executor.finished();
+    }
+  }
+
   @Override
   protected void runChild(Runner child, RunNotifier notifier) {
-    child.run(notifier);
+    executor.runChild(child, notifier);
   }
 
   /**
-   * Find test classes from the given path recursively and create test runner for them.
+   * Creates test runners for the given classes.
    */
-  private void addRunnerFromPath(String pkg, Path path, final Pattern pattern,
-                                 final RunnerBuilder runnerBuilder, final List<Runner> runners) throws IOException {
-    final ClassLoader classLoader = getClass().getClassLoader();
+  private void addRunners(List<String> classNames, RunnerBuilder runnerBuilder,
+                          List<Runner> runners) throws Throwable {
+    ClassLoader classLoader = getClass().getClassLoader();
+    for (String className : classNames) {
+      runners.add(runnerBuilder.runnerForClass(classLoader.loadClass(className)));
+    }
+  }
+
+  /**
+   * Find test classes from the given path recursively.
+   */
+  private List<String> findClassesInPath(String pkg, Path path, final Pattern pattern) throws IOException {
+    final List<String> classNames = new ArrayList<>();
 
     // Find the file path that representing the root of where the given package path starts.
     // E.g. pkg == "io.cdap.cdap", path == "/root/io/cdap/cdap", then pkgBase will be "/root"
@@ -156,19 +251,13 @@ public class AutoSuiteRunner extends ParentRunner<Runner> {
 
       @Override
       public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-        // Figure out the class name and create a runner for it
+        // Figure out the class name
         Path relative = pkgBase.relativize(file);
         String className = relative.toString().replace(File.separatorChar, '.');
         className = className.substring(0, className.length() - ".class".length());
 
-        if (!pattern.matcher(className).matches()) {
-          return FileVisitResult.CONTINUE;
-        }
-
-        try {
-          runners.add(runnerBuilder.runnerForClass(classLoader.loadClass(className)));
-        } catch (Throwable e) {
-          throw Throwables.propagate(e);
+        if (pattern.matcher(className).matches()) {
+          classNames.add(className);
         }
         return FileVisitResult.CONTINUE;
       }
@@ -183,31 +272,38 @@ public class AutoSuiteRunner extends ParentRunner<Runner> {
         return FileVisitResult.CONTINUE;
       }
     });
+    return classNames;
   }
 
   /**
-   * Find test classes from the given path recursively and create test runner for them.
+   * Find test classes from the given JAR.
    */
-  private void addRunnerFromJar(String pkg, Path jarPath, final Pattern pattern,
-                                RunnerBuilder runnerBuilder, List<Runner> runners) throws Throwable {
-    ClassLoader classLoader = getClass().getClassLoader();
+  private List<String> findClassesInJar(String pkg, Path jarPath, final Pattern pattern) throws IOException {
+    List<String> classNames = new ArrayList<>();
     // Visit every entries in the JAR and look for class files that matches the given package and pattern
     try (JarFile jarFile = new JarFile(jarPath.toFile())) {
       Enumeration<JarEntry> entries = jarFile.entries();
       String pkgPath = pkg.replace('.', '/') + '/';
       while (entries.hasMoreElements()) {
         JarEntry jarEntry = entries.nextElement();
-        if (!jarEntry.getName().startsWith(pkgPath)) {
+        if (!jarEntry.getName().startsWith(pkgPath) || !jarEntry.getName().endsWith(".class")) {
           continue;
         }
         String className = jarEntry.getName().replace('/', '.');
         className = className.substring(0, className.length() - ".class".length());
-        if (!pattern.matcher(className).matches()) {
-          continue;
+        if (pattern.matcher(className).matches()) {
+          classNames.add(className);
         }
-        runners.add(runnerBuilder.runnerForClass(classLoader.loadClass(className)));
       }
     }
+    return classNames;
+  }
+
+  /**
+   * Returns a stamp that changes whenever the given JAR changes.
+   */
+  private long getJarStamp(Path jarPath) throws IOException {
+    return Files.getLastModifiedTime(jarPath).toMillis() * 31 + Files.size(jarPath);
   }
 
   /**
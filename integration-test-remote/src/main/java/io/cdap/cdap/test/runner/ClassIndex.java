@@ -0,0 +1,116 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.test.runner;
+
+import com.google.common.hash.Hashing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
+
+/**
+ * A persistent index of the test classes that {@link AutoSuiteRunner} finds in a JAR, so that the JAR doesn't need to
+ * be scanned again on the next run if it didn't change. Directories are not indexed, since finding out whether anything
+ * changed in a directory tree costs about as much as scanning it.
+ *
+ * There is one small index file per location, package and pattern, which holds the stamp of the location at the time
+ * it was scanned, followed by the class names found. The index files are kept in the directory given by the
+ * {@code suite.index.dir} system property, which defaults to a directory in {@code java.io.tmpdir}. The index can be
+ * disabled by setting the {@code suite.index.enabled} system property to {@code false}.
+ */
+final class ClassIndex {
+  private static final Logger LOG = LoggerFactory.getLogger(ClassIndex.class);
+  private static final String INDEX_ENABLED = "suite.index.enabled";
+  private static final String INDEX_DIR = "suite.index.dir";
+
+  @Nullable
+  private final Path indexDir;
+
+  static ClassIndex create() {
+    if (!Boolean.parseBoolean(System.getProperty(INDEX_ENABLED, "true"))) {
+      return new ClassIndex(null);
+    }
+    String defaultDir = Paths.get(System.getProperty("java.io.tmpdir"), "cdap-suite-index").toString();
+    return new ClassIndex(Paths.get(System.getProperty(INDEX_DIR, defaultDir)));
+  }
+
+  private ClassIndex(@Nullable Path indexDir) {
+    this.indexDir = indexDir;
+  }
+
+  /**
+   * Returns the names of the test classes in the given location. They are read from the index if it has an entry with
+   * the same stamp, otherwise they are found with the given scanner and the index is updated.
+   *
+   * @param location the JAR that contains the classes
+   * @param stamp a value that changes whenever the classes in the location change
+   * @param pkg the package of the classes
+   * @param pattern the pattern that the class names match
+   * @param scanner finds the class names in the location
+   */
+  List<String> getClassNames(Path location, long stamp, String pkg, Pattern pattern,
+                             Callable<List<String>> scanner) throws Exception {
+    if (indexDir == null) {
+      return scanner.call();
+    }
+
+    // the header identifies the entry, in case of a hash collision, and the stamp tells whether it is stale
+    List<String> header = Arrays.asList(location.toAbsolutePath().toString(), pkg, pattern.pattern(),
+                                        Long.toString(stamp));
+    String fileName = Hashing.sha256().hashString(String.join("\n", header.subList(0, 3)), StandardCharsets.UTF_8)
+      + ".idx";
+    Path indexFile = indexDir.resolve(fileName);
+
+    try {
+      List<String> lines = Files.readAllLines(indexFile, StandardCharsets.UTF_8);
+      if (lines.size() >= header.size() && lines.subList(0, header.size()).equals(header)) {
+        LOG.debug("Using class index {} for {}", indexFile, location);
+        return new ArrayList<>(lines.subList(header.size(), lines.size()));
+      }
+    } catch (NoSuchFileException e) {
+      // not indexed yet
+    } catch (IOException e) {
+      LOG.debug("Failed to read class index {}", indexFile, e);
+    }
+
+    List<String> classNames = scanner.call();
+    List<String> lines = new ArrayList<>(header);
+    lines.addAll(classNames);
+    try {
+      Files.createDirectories(indexDir);
+      // write to a temporary file and rename it, so that concurrent runs never see a partial index
+      Path tmpFile = Files.createTempFile(indexDir, fileName, ".tmp");
+      Files.write(tmpFile, lines, StandardCharsets.UTF_8);
+      Files.move(tmpFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      LOG.debug("Failed to write class index {}", indexFile, e);
+    }
+    return classNames;
+  }
+}
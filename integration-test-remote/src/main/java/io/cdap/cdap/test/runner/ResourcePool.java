@@ -0,0 +1,215 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.test.runner;
+
+import io.cdap.cdap.test.IntegrationTestBase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * Keeps track of the shared resources used by the test classes that run concurrently, as declared with
+ * {@link AutoSuiteRunner.RunAlone} and {@link AutoSuiteRunner.Resources}. A test class only starts once it can acquire
+ * all of its resources at the same time, so that classes that don't conflict run concurrently while the conflicting
+ * ones run one after the other, and there is no deadlock. Once a class that must run alone waits, no other class
+ * starts until it ran, so that it isn't starved by a steady stream of classes that overlap each other.
+ *
+ * Besides the declared resources, every test class takes one of a fixed number of slots, and the test classes that use
+ * the setUp or tearDown of {@link IntegrationTestBase} use the test namespace exclusively, since these expect the
+ * namespace to be empty and delete everything in it. The capacity of a budget is
+ * given by the {@code suite.budget.<name>} system property, budgets without a capacity are unlimited.
+ */
+final class ResourcePool {
+  private static final Logger LOG = LoggerFactory.getLogger(ResourcePool.class);
+  private static final String BUDGET_PREFIX = "suite.budget.";
+  // every test class uses this resource, shared, unless it must run alone, then it uses it exclusively
+  private static final String SUITE = "suite";
+  // the namespace that all test classes of the integration tests use, see IntegrationTestBase.getConfiguredNamespace
+  private static final String TEST_NAMESPACE = "namespace:test";
+
+  private final int slots;
+  private final Map<String, Integer> capacities = new HashMap<>();
+  private final Map<String, Integer> sharedCounts = new HashMap<>();
+  private final Set<String> exclusive = new HashSet<>();
+  private final Map<String, Integer> budgetsUsed = new HashMap<>();
+  private int slotsUsed;
+  private int runAloneWaiting;
+
+  ResourcePool(int slots) {
+    this.slots = slots;
+  }
+
+  /**
+   * Returns the resources used by the given test class.
+   */
+  static Claim getClaim(@Nullable Class<?> testClass) {
+    Claim claim = new Claim();
+    if (testClass != null && testClass.isAnnotationPresent(AutoSuiteRunner.RunAlone.class)) {
+      claim.exclusive.add(SUITE);
+    } else {
+      claim.shared.add(SUITE);
+    }
+    if (testClass != null && resetsTestNamespace(testClass)) {
+      claim.exclusive.add(TEST_NAMESPACE);
+    }
+    AutoSuiteRunner.Resources resources = testClass == null
+      ? null : testClass.getAnnotation(AutoSuiteRunner.Resources.class);
+    if (resources != null) {
+      Collections.addAll(claim.exclusive, resources.exclusive());
+      for (String name : resources.shared()) {
+        if (!claim.exclusive.contains(name)) {
+          claim.shared.add(name);
+        }
+      }
+      for (AutoSuiteRunner.Budget budget : resources.budgets()) {
+        claim.budgets.merge(budget.name(), budget.amount(), Integer::sum);
+      }
+    }
+    return claim;
+  }
+
+  /**
+   * Returns whether the given test class uses the setUp or tearDown of {@link IntegrationTestBase}, which assert that
+   * the test namespace is empty and clear it.
+   */
+  private static boolean resetsTestNamespace(Class<?> testClass) {
+    if (!IntegrationTestBase.class.isAssignableFrom(testClass)) {
+      return false;
+    }
+    try {
+      return testClass.getMethod("setUp").getDeclaringClass() == IntegrationTestBase.class
+        || testClass.getMethod("tearDown").getDeclaringClass() == IntegrationTestBase.class;
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Waits until all resources of the given claim are available and acquires them.
+   */
+  synchronized void acquire(String testName, Claim claim) throws InterruptedException {
+    boolean runAlone = claim.exclusive.contains(SUITE);
+    if (runAlone) {
+      runAloneWaiting++;
+    }
+    try {
+      boolean logged = false;
+      while (!isAvailable(claim) || (!runAlone && runAloneWaiting > 0)) {
+        if (!logged) {
+          LOG.info("Test class {} waits for its resources {}", testName, claim);
+          logged = true;
+        }
+        wait();
+      }
+    } finally {
+      if (runAlone) {
+        runAloneWaiting--;
+        // lets the other classes start once no class waits to run alone, also if this one was interrupted
+        notifyAll();
+      }
+    }
+    slotsUsed++;
+    exclusive.addAll(claim.exclusive);
+    for (String name : claim.shared) {
+      sharedCounts.merge(name, 1, Integer::sum);
+    }
+    for (Map.Entry<String, Integer> budget : claim.budgets.entrySet()) {
+      budgetsUsed.merge(budget.getKey(), getAmount(budget.getKey(), budget.getValue()), Integer::sum);
+    }
+  }
+
+  /**
+   * Releases the resources of the given claim, which must have been acquired before.
+   */
+  synchronized void release(Claim claim) {
+    slotsUsed--;
+    exclusive.removeAll(claim.exclusive);
+    for (String name : claim.shared) {
+      sharedCounts.computeIfPresent(name, (key, count) -> count == 1 ? null : count - 1);
+    }
+    for (Map.Entry<String, Integer> budget : claim.budgets.entrySet()) {
+      int amount = getAmount(budget.getKey(), budget.getValue());
+      budgetsUsed.computeIfPresent(budget.getKey(), (key, used) -> used == amount ? null : used - amount);
+    }
+    notifyAll();
+  }
+
+  private boolean isAvailable(Claim claim) {
+    if (slotsUsed >= slots) {
+      return false;
+    }
+    for (String name : claim.exclusive) {
+      if (exclusive.contains(name) || sharedCounts.containsKey(name)) {
+        return false;
+      }
+    }
+    for (String name : claim.shared) {
+      if (exclusive.contains(name)) {
+        return false;
+      }
+    }
+    for (Map.Entry<String, Integer> budget : claim.budgets.entrySet()) {
+      Integer capacity = getCapacity(budget.getKey());
+      if (capacity != null
+        && budgetsUsed.getOrDefault(budget.getKey(), 0) + getAmount(budget.getKey(), budget.getValue()) > capacity) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the amount to take from a budget, which is at most its capacity, so that a class asking for more than the
+   * capacity still runs, alone on that budget.
+   */
+  private int getAmount(String name, int amount) {
+    Integer capacity = getCapacity(name);
+    return capacity == null ? amount : Math.min(amount, capacity);
+  }
+
+  @Nullable
+  private Integer getCapacity(String name) {
+    if (!capacities.containsKey(name)) {
+      capacities.put(name, Integer.getInteger(BUDGET_PREFIX + name));
+    }
+    return capacities.get(name);
+  }
+
+  /**
+   * The resources used by one test class.
+   */
+  static final class Claim {
+    private final Set<String> exclusive = new HashSet<>();
+    private final Set<String> shared = new HashSet<>();
+    private final Map<String, Integer> budgets = new HashMap<>();
+
+    @Override
+    public String toString() {
+      return "Claim{" +
+        "exclusive=" + exclusive +
+        ", shared=" + shared +
+        ", budgets=" + budgets +
+        '}';
+    }
+  }
+}
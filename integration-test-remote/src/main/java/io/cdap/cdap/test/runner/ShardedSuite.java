@@ -0,0 +1,60 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.test.runner;
+
+import org.junit.runner.Runner;
+import org.junit.runner.notification.RunNotifier;
+import org.junit.runners.Suite;
+import org.junit.runners.model.InitializationError;
+import org.junit.runners.model.RunnerBuilder;
+
+import java.util.List;
+
+/**
+ * A {@link Suite} whose classes can run concurrently and be split across several JVMs, in the same way as the ones of
+ * {@link AutoSuiteRunner}. See {@link SuiteExecutor} for the configuration.
+ */
+public class ShardedSuite extends Suite {
+
+  private final SuiteExecutor executor;
+  private final List<Runner> children;
+
+  public ShardedSuite(Class<?> testClass, RunnerBuilder runnerBuilder) throws InitializationError {
+    super(testClass, runnerBuilder);
+    this.executor = SuiteExecutor.create(this);
+    this.children = executor.select(super.getChildren());
+  }
+
+  @Override
+  protected List<Runner> getChildren() {
+    return children;
+  }
+
+  @Override
+  protected void runChild(Runner child, RunNotifier notifier) {
+    executor.runChild(child, notifier);
+  }
+
+  @Override
+  public void run(RunNotifier notifier) {
+    try {
+      super.run(notifier);
+    } finally {
+      executor.finished();
+    }
+  }
+}
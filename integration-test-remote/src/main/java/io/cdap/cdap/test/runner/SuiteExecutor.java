@@ -0,0 +1,158 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.test.runner;
+
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.junit.runner.Description;
+import org.junit.runner.Runner;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunNotifier;
+import org.junit.runners.ParentRunner;
+import org.junit.runners.model.RunnerScheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the test classes of a suite, as used by {@link AutoSuiteRunner} and {@link ShardedSuite}.
+ *
+ * By default the test classes run one after the other. If the {@code suite.threads} system property is set to more
+ * than one, up to that many test classes run concurrently, as long as the resources they declare don't conflict,
+ * see {@link ResourcePool}. A suite annotated with {@link AutoSuiteRunner.Concurrent} can also run all of its test
+ * classes concurrently. The duration of every test class is recorded for sharding, see {@link TestShards}.
+ */
+final class SuiteExecutor {
+  private static final Logger LOG = LoggerFactory.getLogger(SuiteExecutor.class);
+  private static final String SUITE_THREADS = "suite.threads";
+
+  private final int threads;
+  private final ResourcePool resourcePool;
+  private final TestShards shards;
+
+  /**
+   * Creates a {@link SuiteExecutor} for the given suite, and sets the suite's scheduler if tests run concurrently.
+   */
+  static SuiteExecutor create(ParentRunner<?> suite) {
+    int threads = Math.max(1, Integer.getInteger(SUITE_THREADS, 1));
+    AutoSuiteRunner.Concurrent concurrent = suite.getTestClass().getAnnotation(AutoSuiteRunner.Concurrent.class);
+    if (concurrent != null && Boolean.getBoolean(concurrent.property()) && System.getProperty(SUITE_THREADS) == null) {
+      threads = Integer.MAX_VALUE;
+    }
+    if (threads > 1) {
+      LOG.info("Running up to {} test classes of {} concurrently",
+               threads == Integer.MAX_VALUE ? "all" : threads, suite.getTestClass().getName());
+      suite.setScheduler(new ParallelScheduler());
+    }
+    return new SuiteExecutor(threads);
+  }
+
+  private SuiteExecutor(int threads) {
+    this.threads = threads;
+    this.resourcePool = new ResourcePool(threads);
+    this.shards = TestShards.create();
+  }
+
+  /**
+   * Returns the children of the current shard.
+   */
+  List<Runner> select(List<Runner> children) {
+    return shards.select(children);
+  }
+
+  /**
+   * Runs one child of the suite, once its resources are available.
+   */
+  void runChild(Runner child, RunNotifier notifier) {
+    if (threads <= 1) {
+      runTimed(child, notifier);
+      return;
+    }
+    Description description = child.getDescription();
+    ResourcePool.Claim claim = ResourcePool.getClaim(description.getTestClass());
+    try {
+      resourcePool.acquire(description.getDisplayName(), claim);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      notifier.fireTestFailure(new Failure(description, e));
+      return;
+    }
+    try {
+      runTimed(child, new SynchronizedRunNotifier(notifier));
+    } finally {
+      resourcePool.release(claim);
+    }
+  }
+
+  /**
+   * Must be called once all children ran.
+   */
+  void finished() {
+    shards.save();
+  }
+
+  /**
+   * Runs the given child and records its duration for sharding.
+   */
+  private void runTimed(Runner child, RunNotifier notifier) {
+    long startTime = System.nanoTime();
+    try {
+      child.run(notifier);
+    } finally {
+      shards.record(child, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+    }
+  }
+
+  /**
+   * A {@link RunnerScheduler} that starts all children at once and waits for all of them to finish. How many of them
+   * actually run at the same time is limited by the {@link ResourcePool}, so that a child waiting for its resources
+   * doesn't prevent other children from running.
+   */
+  private static final class ParallelScheduler implements RunnerScheduler {
+    private final ExecutorService executor = Executors.newCachedThreadPool(
+      new ThreadFactoryBuilder().setDaemon(true).setNameFormat("suite-runner-%d").build());
+    private final List<Future<?>> futures = new ArrayList<>();
+
+    @Override
+    public void schedule(Runnable childStatement) {
+      futures.add(executor.submit(childStatement));
+    }
+
+    @Override
+    public void finished() {
+      try {
+        for (Future<?> future : futures) {
+          future.get();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw Throwables.propagate(e);
+      } catch (ExecutionException e) {
+        throw Throwables.propagate(e.getCause());
+      } finally {
+        executor.shutdownNow();
+      }
+    }
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.test.runner;
+
+import org.junit.runner.Description;
+import org.junit.runner.Result;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+import org.junit.runner.notification.RunNotifier;
+import org.junit.runner.notification.StoppedByUserException;
+
+/**
+ * A {@link RunNotifier} that forwards all events to another {@link RunNotifier} while holding its monitor, so that
+ * test classes running concurrently don't call the listeners, such as the surefire reporter, at the same time.
+ */
+final class SynchronizedRunNotifier extends RunNotifier {
+
+  private final RunNotifier delegate;
+
+  SynchronizedRunNotifier(RunNotifier delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public void addListener(RunListener listener) {
+    synchronized (delegate) {
+      delegate.addListener(listener);
+    }
+  }
+
+  @Override
+  public void removeListener(RunListener listener) {
+    synchronized (delegate) {
+      delegate.removeListener(listener);
+    }
+  }
+
+  @Override
+  public void addFirstListener(RunListener listener) {
+    synchronized (delegate) {
+      delegate.addFirstListener(listener);
+    }
+  }
+
+  @Override
+  public void fireTestRunStarted(Description description) {
+    synchronized (delegate) {
+      delegate.fireTestRunStarted(description);
+    }
+  }
+
+  @Override
+  public void fireTestRunFinished(Result result) {
+    synchronized (delegate) {
+      delegate.fireTestRunFinished(result);
+    }
+  }
+
+  @Override
+  public void fireTestStarted(Description description) throws StoppedByUserException {
+    synchronized (delegate) {
+      delegate.fireTestStarted(description);
+    }
+  }
+
+  @Override
+  public void fireTestFailure(Failure failure) {
+    synchronized (delegate) {
+      delegate.fireTestFailure(failure);
+    }
+  }
+
+  @Override
+  public void fireTestAssumptionFailed(Failure failure) {
+    synchronized (delegate) {
+      delegate.fireTestAssumptionFailed(failure);
+    }
+  }
+
+  @Override
+  public void fireTestIgnored(Description description) {
+    synchronized (delegate) {
+      delegate.fireTestIgnored(description);
+    }
+  }
+
+  @Override
+  public void fireTestFinished(Description description) {
+    synchronized (delegate) {
+      delegate.fireTestFinished(description);
+    }
+  }
+
+  @Override
+  public void pleaseStop() {
+    delegate.pleaseStop();
+  }
+}
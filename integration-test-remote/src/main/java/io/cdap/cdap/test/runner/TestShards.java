@@ -0,0 +1,276 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.test.runner;
+
+import org.junit.runner.Runner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Splits the test classes of a suite into shards of about the same total duration, so that a suite can be spread
+ * across several machines that finish at roughly the same time.
+ *
+ * If the {@code shard.count} and {@code shard.index} system properties are set, only the classes of the shard with
+ * the given (zero based) index are run. Every machine computes the assignment of all classes on its own, so they must
+ * all compute it from the same input, otherwise some classes would run on no shard and others on several:
+ * <ul>
+ *   <li>If the {@code suite.durations.file} system property is set, it must be an existing file shared by all
+ *   machines, for example one checked in with the tests. Classes are assigned with the longest processing time first
+ *   algorithm: from the longest to the shortest, every class goes to the shard with the lowest total duration so far.
+ *   Classes without a recorded duration are assumed to take the average duration.</li>
+ *   <li>Otherwise classes are assigned by a hash of their name, which needs no history.</li>
+ * </ul>
+ * Every machine logs a fingerprint of its input, which must be the same on all of them.
+ *
+ * The duration of every test class that runs is recorded. Without shards, it is merged into the durations file, which
+ * defaults to a file in {@code java.io.tmpdir}. With shards, the durations file is only read, and the durations of
+ * every shard are written to a file of its own, the durations file suffixed with {@code .shard<index>}, so that the
+ * input of shards that start later doesn't change. These files can be merged into the next version of the shared
+ * durations file.
+ */
+final class TestShards {
+  private static final Logger LOG = LoggerFactory.getLogger(TestShards.class);
+  private static final String SHARD_INDEX = "shard.index";
+  private static final String SHARD_COUNT = "shard.count";
+  private static final String DURATIONS_FILE = "suite.durations.file";
+
+  private final Path outputFile;
+  private final boolean useDurations;
+  private final int shardIndex;
+  private final int shardCount;
+  private final Map<String, Long> durations;
+  private final Map<String, Long> recorded = new ConcurrentHashMap<>();
+
+  static TestShards create() {
+    String defaultFile = Paths.get(System.getProperty("java.io.tmpdir"), "cdap-suite-durations.properties").toString();
+    String configuredFile = System.getProperty(DURATIONS_FILE);
+    Path durationsFile = Paths.get(configuredFile == null ? defaultFile : configuredFile);
+    int shardCount = Integer.getInteger(SHARD_COUNT, 1);
+    int shardIndex = Integer.getInteger(SHARD_INDEX, 0);
+    if (shardCount < 1 || shardIndex < 0 || shardIndex >= shardCount) {
+      throw new IllegalArgumentException(String.format("Invalid %s %d for %s %d",
+                                                       SHARD_INDEX, shardIndex, SHARD_COUNT, shardCount));
+    }
+    if (shardCount == 1) {
+      return new TestShards(durationsFile, durationsFile, shardIndex, shardCount, true);
+    }
+    Path outputFile = Paths.get(durationsFile + ".shard" + shardIndex);
+    if (configuredFile == null) {
+      LOG.info("No {} given, assigning test classes to shards by a hash of their name", DURATIONS_FILE);
+      return new TestShards(durationsFile, outputFile, shardIndex, shardCount, false);
+    }
+    if (!Files.isRegularFile(durationsFile)) {
+      // a missing file on some of the machines would make them compute a different assignment
+      throw new IllegalArgumentException(String.format("The %s %s must be an existing file shared by all shards",
+                                                       DURATIONS_FILE, durationsFile));
+    }
+    return new TestShards(durationsFile, outputFile, shardIndex, shardCount, true);
+  }
+
+  private TestShards(Path durationsFile, Path outputFile, int shardIndex, int shardCount, boolean useDurations) {
+    this.outputFile = outputFile;
+    this.shardIndex = shardIndex;
+    this.shardCount = shardCount;
+    this.useDurations = useDurations;
+    this.durations = useDurations ? readDurations(durationsFile) : new HashMap<>();
+  }
+
+  /**
+   * Returns the runners of the current shard, in their original order.
+   */
+  List<Runner> select(List<Runner> runners) {
+    if (shardCount == 1) {
+      return runners;
+    }
+
+    Map<Runner, Integer> assignment = useDurations ? assignByDuration(runners) : assignByName(runners);
+    // every class must be in exactly one shard, otherwise the shards together would not run the whole suite
+    int[] shardSizes = new int[shardCount];
+    for (Runner runner : runners) {
+      Integer shard = assignment.get(runner);
+      if (shard == null || shard < 0 || shard >= shardCount) {
+        throw new IllegalStateException(String.format("Test class %s is not assigned to any of the %d shards",
+                                                      getName(runner), shardCount));
+      }
+      shardSizes[shard]++;
+    }
+
+    List<Runner> selected = new ArrayList<>();
+    for (Runner runner : runners) {
+      if (assignment.get(runner) == shardIndex) {
+        selected.add(runner);
+      }
+    }
+    LOG.info("Running shard {} of {} with {} out of {} test classes, classes of all shards: {}, input fingerprint {}",
+             shardIndex, shardCount, selected.size(), runners.size(), Arrays.toString(shardSizes),
+             getFingerprint(runners));
+    return selected;
+  }
+
+  /**
+   * Assigns every class to a shard by a hash of its name.
+   */
+  private Map<Runner, Integer> assignByName(List<Runner> runners) {
+    Map<Runner, Integer> assignment = new HashMap<>();
+    for (Runner runner : runners) {
+      assignment.put(runner, Math.floorMod(getName(runner).hashCode(), shardCount));
+    }
+    return assignment;
+  }
+
+  /**
+   * Assigns every class to a shard with the longest processing time first algorithm.
+   */
+  private Map<Runner, Integer> assignByDuration(List<Runner> runners) {
+    long knownTotal = 0;
+    int knownCount = 0;
+    for (Runner runner : runners) {
+      Long duration = durations.get(getName(runner));
+      if (duration != null) {
+        knownTotal += duration;
+        knownCount++;
+      }
+    }
+    long defaultDuration = knownCount == 0 ? 1L : Math.max(1L, knownTotal / knownCount);
+    Map<Runner, Long> estimates = new HashMap<>();
+    for (Runner runner : runners) {
+      estimates.put(runner, durations.getOrDefault(getName(runner), defaultDuration));
+    }
+
+    // sort by name first so that all shards agree on the order of classes with the same duration
+    List<Runner> sorted = new ArrayList<>(runners);
+    sorted.sort(Comparator.comparing(TestShards::getName));
+    sorted.sort(Comparator.comparing(estimates::get, Comparator.reverseOrder()));
+
+    long[] shardTotals = new long[shardCount];
+    Map<Runner, Integer> assignment = new HashMap<>();
+    for (Runner runner : sorted) {
+      int shard = 0;
+      for (int i = 1; i < shardCount; i++) {
+        if (shardTotals[i] < shardTotals[shard]) {
+          shard = i;
+        }
+      }
+      shardTotals[shard] += estimates.get(runner);
+      assignment.put(runner, shard);
+    }
+    LOG.info("Estimated durations of all shards in ms: {}", Arrays.toString(shardTotals));
+    return assignment;
+  }
+
+  /**
+   * Returns a hash of the classes of the suite and of their durations, which is the same on all shards if they
+   * compute the same assignment.
+   */
+  private String getFingerprint(List<Runner> runners) {
+    List<String> names = new ArrayList<>();
+    for (Runner runner : runners) {
+      names.add(getName(runner));
+    }
+    Collections.sort(names);
+    int hash = shardCount;
+    for (String name : names) {
+      hash = 31 * hash + name.hashCode();
+      hash = 31 * hash + Long.hashCode(durations.getOrDefault(name, -1L));
+    }
+    return String.format("%08x", hash);
+  }
+
+  /**
+   * Records how long the given test class took to run.
+   */
+  void record(Runner runner, long durationMs) {
+    recorded.put(getName(runner), durationMs);
+  }
+
+  /**
+   * Merges the durations recorded so far into the output file. The new duration of a class is the average of its
+   * previous and its latest duration, to smooth out outliers.
+   */
+  void save() {
+    if (recorded.isEmpty()) {
+      return;
+    }
+    synchronized (TestShards.class) {
+      Map<String, Long> merged = readDurations(outputFile);
+      for (Map.Entry<String, Long> entry : recorded.entrySet()) {
+        Long previous = merged.get(entry.getKey());
+        merged.put(entry.getKey(), previous == null ? entry.getValue() : (previous + entry.getValue()) / 2);
+      }
+      Properties properties = new Properties();
+      for (Map.Entry<String, Long> entry : merged.entrySet()) {
+        properties.setProperty(entry.getKey(), Long.toString(entry.getValue()));
+      }
+      try {
+        Path parent = outputFile.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path tmpFile = Files.createTempFile(parent, outputFile.getFileName().toString(), ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tmpFile, StandardCharsets.UTF_8)) {
+          properties.store(writer, "Test class durations in milliseconds");
+        }
+        Files.move(tmpFile, outputFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        recorded.clear();
+      } catch (IOException e) {
+        LOG.warn("Failed to write test durations to {}", outputFile, e);
+      }
+    }
+  }
+
+  private static Map<String, Long> readDurations(Path durationsFile) {
+    Map<String, Long> durations = new HashMap<>();
+    Properties properties = new Properties();
+    try (Reader reader = Files.newBufferedReader(durationsFile, StandardCharsets.UTF_8)) {
+      properties.load(reader);
+    } catch (NoSuchFileException e) {
+      return durations;
+    } catch (IOException e) {
+      LOG.warn("Failed to read test durations from {}", durationsFile, e);
+      return durations;
+    }
+    for (String name : properties.stringPropertyNames()) {
+      try {
+        durations.put(name, Long.parseLong(properties.getProperty(name)));
+      } catch (NumberFormatException e) {
+        LOG.warn("Ignoring invalid duration of {} in {}", name, durationsFile);
+      }
+    }
+    return durations;
+  }
+
+  private static String getName(Runner runner) {
+    return runner.getDescription().getDisplayName();
+  }
+}
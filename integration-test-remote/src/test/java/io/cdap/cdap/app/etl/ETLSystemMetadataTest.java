@@ -25,6 +25,7 @@ import io.cdap.cdap.client.MetadataClient;
 import io.cdap.cdap.proto.id.ArtifactId;
 import io.cdap.cdap.proto.id.NamespaceId;
 import io.cdap.cdap.proto.metadata.MetadataSearchResultRecord;
+import io.cdap.cdap.test.runner.AutoSuiteRunner;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -36,6 +37,8 @@ import javax.annotation.Nullable;
 /**
  * Tests system metadata for ETL apps.
  */
+// searches the metadata of the system namespace, which other test classes deploy apps to
+@AutoSuiteRunner.Resources(shared = "namespace:system")
 public class ETLSystemMetadataTest extends ETLTestBase {
 
   @Test
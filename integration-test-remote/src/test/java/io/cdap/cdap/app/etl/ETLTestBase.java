@@ -35,7 +35,6 @@ import io.cdap.cdap.common.ArtifactNotFoundException;
 import io.cdap.cdap.common.ArtifactRangeNotFoundException;
 import io.cdap.cdap.common.BadRequestException;
 import io.cdap.cdap.common.UnauthenticatedException;
-import io.cdap.cdap.common.utils.Tasks;
 import io.cdap.cdap.etl.api.batch.BatchAggregator;
 import io.cdap.cdap.etl.api.batch.BatchSink;
 import io.cdap.cdap.etl.proto.v2.DataStreamsConfig;
@@ -47,6 +46,7 @@ import io.cdap.cdap.proto.artifact.PluginSummary;
 import io.cdap.cdap.proto.id.ArtifactId;
 import io.cdap.cdap.test.AudiTestBase;
 import io.cdap.cdap.test.DataSetManager;
+import io.cdap.cdap.test.Tasks;
 import io.cdap.common.http.HttpRequest;
 import io.cdap.common.http.HttpResponse;
 import org.junit.Assert;
@@ -54,9 +54,11 @@ import org.junit.Before;
 
 import java.io.IOException;
 import java.net.URL;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -92,31 +94,25 @@ public abstract class ETLTestBase extends AudiTestBase {
     final ArtifactId datastreamsId = TEST_NAMESPACE.artifact("cdap-data-streams", version);
 
     // wait until we see extensions for cdap-data-pipeline and cdap-data-streams
-    Tasks.waitFor(true, () -> {
-      try {
-        // cdap-data-pipeline and cdap-data-streams are parent artifacts
-        List<PluginSummary> plugins =
-          artifactClient.getPluginSummaries(datapipelineId, BatchAggregator.PLUGIN_TYPE, ArtifactScope.SYSTEM);
-        if (plugins.stream().noneMatch(pluginSummary -> "GroupByAggregate".equals(pluginSummary.getName()))) {
-          return false;
-        }
-
-        plugins = artifactClient.getPluginSummaries(datapipelineId, BatchSink.PLUGIN_TYPE, ArtifactScope.SYSTEM);
-        if (plugins.stream().noneMatch(pluginSummary -> "File".equals(pluginSummary.getName()))) {
-          return false;
-        }
-
-        plugins = artifactClient.getPluginSummaries(datastreamsId, BatchAggregator.PLUGIN_TYPE, ArtifactScope.SYSTEM);
-        if (plugins.stream().noneMatch(pluginSummary -> "GroupByAggregate".equals(pluginSummary.getName()))) {
-          return false;
-        }
+    // cdap-data-pipeline and cdap-data-streams are parent artifacts
+    Map<String, Callable<Boolean>> conditions = new LinkedHashMap<>();
+    conditions.put("GroupByAggregate plugin in cdap-data-pipeline",
+                   () -> hasPlugin(datapipelineId, BatchAggregator.PLUGIN_TYPE, "GroupByAggregate"));
+    conditions.put("File plugin in cdap-data-pipeline",
+                   () -> hasPlugin(datapipelineId, BatchSink.PLUGIN_TYPE, "File"));
+    conditions.put("GroupByAggregate plugin in cdap-data-streams",
+                   () -> hasPlugin(datastreamsId, BatchAggregator.PLUGIN_TYPE, "GroupByAggregate"));
+    Tasks.waitForAll(conditions, 5, TimeUnit.MINUTES);
+  }
 
-        return true;
-      } catch (ArtifactNotFoundException e) {
-        // happens if cdap-data-pipeline or cdap-data-streams were not added yet
-        return false;
-      }
-    }, 5, TimeUnit.MINUTES, 3, TimeUnit.SECONDS);
+  private boolean hasPlugin(ArtifactId parentId, String pluginType, String pluginName) throws Exception {
+    try {
+      List<PluginSummary> plugins = artifactClient.getPluginSummaries(parentId, pluginType, ArtifactScope.SYSTEM);
+      return plugins.stream().anyMatch(pluginSummary -> pluginName.equals(pluginSummary.getName()));
+    } catch (ArtifactNotFoundException e) {
+      // happens if cdap-data-pipeline or cdap-data-streams were not added yet
+      return false;
+    }
   }
 
   protected AppRequest<DataStreamsConfig> getStreamingAppRequest(DataStreamsConfig config) {
@@ -80,7 +80,7 @@ public class KVTableWithProjectionTest extends ETLTestBase {
 
     WorkflowManager workflowManager = appManager.getWorkflowManager(SmartWorkflow.NAME);
     workflowManager.start();
-    workflowManager.waitForRun(ProgramRunStatus.COMPLETED, 10, TimeUnit.MINUTES);
+    waitForRun(workflowManager, ProgramRunStatus.COMPLETED, 10, TimeUnit.MINUTES);
 
     byte[] result = getKVTableDataset(KVTABLE_NAME).get().read("AAPL");
     Assert.assertNotNull(result);
@@ -65,7 +65,7 @@ public class TPFSAvroSinkSourceTest extends ETLTestBase {
     ApplicationManager applicationManager = deployApplication(DatasetAccessApp.class);
     ServiceManager serviceManager = applicationManager.getServiceManager(TPFSService.class.getSimpleName());
     serviceManager.start();
-    serviceManager.waitForRun(ProgramRunStatus.RUNNING, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    waitForRun(serviceManager, ProgramRunStatus.RUNNING, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
 
     // 2. Ingest data
     ingestData();
@@ -79,7 +79,7 @@ public class TPFSAvroSinkSourceTest extends ETLTestBase {
 
     long timeInMillis = System.currentTimeMillis();
     workflowManager.start(ImmutableMap.of("logical.start.time", String.valueOf(timeInMillis)));
-    workflowManager.waitForRun(ProgramRunStatus.COMPLETED, 10, TimeUnit.MINUTES);
+    waitForRun(workflowManager, ProgramRunStatus.COMPLETED, 10, TimeUnit.MINUTES);
 
     // 4. Run TPFS to TPFS pipeline where the source is the sink from the above pipeline
     ApplicationId tpfsToTPFSAppId = TEST_NAMESPACE.app("TPFSToTPFSWithProjection");
@@ -91,7 +91,7 @@ public class TPFSAvroSinkSourceTest extends ETLTestBase {
     // add 10 minutes to the end time to make sure the newly added partition is included in the run.
     long endRange = timeInMillis + 600 * 1000;
     workflowManager.start(ImmutableMap.of("logical.start.time", String.valueOf(endRange)));
-    workflowManager.waitForRun(ProgramRunStatus.COMPLETED, 10, TimeUnit.MINUTES);
+    waitForRun(workflowManager, ProgramRunStatus.COMPLETED, 10, TimeUnit.MINUTES);
 
     // 5. Verify data in TPFS, add 10 minutes to the start of when the second pipeline runs to make sure the service
     //reads all partitions within the time range.
@@ -153,13 +153,13 @@ public class BatchAggregatorTest extends ETLTestBase {
     ServiceManager serviceManager = applicationManager.getServiceManager(
       SnapshotFilesetService.class.getSimpleName());
     serviceManager.start();
-    serviceManager.waitForRun(ProgramRunStatus.RUNNING, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    waitForRun(serviceManager, ProgramRunStatus.RUNNING, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
     ingestData(PURCHASE_SOURCE);
 
     // run the pipeline
     WorkflowManager workflowManager = appManager.getWorkflowManager(SMARTWORKFLOW_NAME);
     workflowManager.start();
-    workflowManager.waitForRun(ProgramRunStatus.COMPLETED, 15, TimeUnit.MINUTES);
+    waitForRun(workflowManager, ProgramRunStatus.COMPLETED, 15, TimeUnit.MINUTES);
 
     Map<String, List<Long>> groupedUsers = readOutput(serviceManager, USER_SINK);
     Map<String, List<Long>> groupedItems = readOutput(serviceManager, ITEM_SINK);
@@ -45,6 +45,7 @@ import io.cdap.cdap.test.ApplicationManager;
 import io.cdap.cdap.test.DataSetManager;
 import io.cdap.cdap.test.ServiceManager;
 import io.cdap.cdap.test.WorkflowManager;
+import io.cdap.cdap.test.runner.AutoSuiteRunner;
 import io.cdap.cdap.test.suite.category.MapR5Incompatible;
 import io.cdap.cdap.test.suite.category.RequiresSpark;
 import io.cdap.common.http.HttpMethod;
@@ -73,6 +74,7 @@ import java.util.concurrent.TimeUnit;
 /**
  * Tests inner join, outer join for map reduce and spark.
  */
+@AutoSuiteRunner.Resources(budgets = @AutoSuiteRunner.Budget(name = "spark.programs", amount = 1))
 public class BatchJoinerTest extends ETLTestBase {
 
   @Category({
@@ -213,13 +215,13 @@ public class BatchJoinerTest extends ETLTestBase {
     // run the pipeline
     WorkflowManager workflowManager = appManager.getWorkflowManager(SmartWorkflow.NAME);
     workflowManager.start();
-    workflowManager.waitForRun(ProgramRunStatus.COMPLETED, 15, TimeUnit.MINUTES);
+    waitForRun(workflowManager, ProgramRunStatus.COMPLETED, 15, TimeUnit.MINUTES);
 
     // Deploy an application with a service to get partitionedFileset data for verification
     ApplicationManager applicationManager = deployApplication(DatasetAccessApp.class);
     ServiceManager serviceManager = applicationManager.getServiceManager(SnapshotFilesetService.class.getSimpleName());
     serviceManager.start();
-    serviceManager.waitForRun(ProgramRunStatus.RUNNING, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    waitForRun(serviceManager, ProgramRunStatus.RUNNING, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
 
     org.apache.avro.Schema avroOutputSchema = new Parser().parse(outputSchema.toString());
     GenericRecord record1 = new GenericRecordBuilder(avroOutputSchema)
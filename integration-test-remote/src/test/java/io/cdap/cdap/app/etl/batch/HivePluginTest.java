@@ -77,7 +77,7 @@ public class HivePluginTest extends ETLTestBase {
 
     ApplicationManager applicationManager = deployApplication(FileSetExample.class);
     ServiceManager fileSetService = applicationManager.getServiceManager("FileSetService").start();
-    fileSetService.waitForRun(ProgramRunStatus.RUNNING, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    waitForRun(fileSetService, ProgramRunStatus.RUNNING, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
     URL serviceURL = fileSetService.getServiceURL(PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
 
     DatasetProperties datasetProperties = FileSetProperties.builder()
@@ -131,7 +131,7 @@ public class HivePluginTest extends ETLTestBase {
     ApplicationId appId = TEST_NAMESPACE.app("HiveImportApp");
     ApplicationManager appManager = deployApplication(appId, appRequest);
     WorkflowManager workflowManager = appManager.getWorkflowManager(SmartWorkflow.NAME).start();
-    workflowManager.waitForRun(ProgramRunStatus.COMPLETED, 5, TimeUnit.MINUTES);
+    waitForRun(workflowManager, ProgramRunStatus.COMPLETED, 5, TimeUnit.MINUTES);
 
     // query the outputDataset to ensure that the data was written by the pipeline
     QueryClient queryClient = new QueryClient(getClientConfig());
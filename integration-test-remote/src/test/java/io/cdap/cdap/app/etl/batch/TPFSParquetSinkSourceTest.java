@@ -37,6 +37,7 @@ import io.cdap.cdap.security.spi.authorization.UnauthorizedException;
 import io.cdap.cdap.test.ApplicationManager;
 import io.cdap.cdap.test.ServiceManager;
 import io.cdap.cdap.test.WorkflowManager;
+import io.cdap.cdap.test.runner.AutoSuiteRunner;
 import io.cdap.cdap.test.suite.category.RequiresSpark;
 import io.cdap.common.http.HttpMethod;
 import io.cdap.common.http.HttpResponse;
@@ -54,6 +55,7 @@ import java.util.concurrent.TimeUnit;
 /**
  * Tests functionalities of TPFS parquet sinks and sources
  */
+@AutoSuiteRunner.Resources(budgets = @AutoSuiteRunner.Budget(name = "spark.programs", amount = 1))
 public class TPFSParquetSinkSourceTest extends ETLTestBase {
 
   @Test
@@ -74,7 +76,7 @@ public class TPFSParquetSinkSourceTest extends ETLTestBase {
     ApplicationManager applicationManager = deployApplication(DatasetAccessApp.class);
     ServiceManager serviceManager = applicationManager.getServiceManager(TPFSService.class.getSimpleName());
     serviceManager.start();
-    serviceManager.waitForRun(ProgramRunStatus.RUNNING, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    waitForRun(serviceManager, ProgramRunStatus.RUNNING, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
 
     // 2. Ingest Data
     ingestData();
@@ -88,7 +90,7 @@ public class TPFSParquetSinkSourceTest extends ETLTestBase {
 
     long timeInMillis = System.currentTimeMillis();
     workflowManager.start(ImmutableMap.of("logical.start.time", String.valueOf(timeInMillis)));
-    workflowManager.waitForRun(ProgramRunStatus.COMPLETED, 10, TimeUnit.MINUTES);
+    waitForRun(workflowManager, ProgramRunStatus.COMPLETED, 10, TimeUnit.MINUTES);
 
     // 4. Run TPFS to TPFS pipeline where the source is the sink from the above pipeline
     ApplicationId tpfsToTPFSAppId = TEST_NAMESPACE.app("TPFSToTPFSWithProjection");
@@ -100,7 +102,7 @@ public class TPFSParquetSinkSourceTest extends ETLTestBase {
     // add 10 minutes to the end time to make sure the newly added partition is included in the run.
     long endRange = timeInMillis + 600 * 1000;
     workflowManager.start(ImmutableMap.of("logical.start.time", String.valueOf(endRange)));
-    workflowManager.waitForRun(ProgramRunStatus.COMPLETED, 10, TimeUnit.MINUTES);
+    waitForRun(workflowManager, ProgramRunStatus.COMPLETED, 10, TimeUnit.MINUTES);
 
     // 5. Verify data in TPFS, add 10 minutes to the start of when the second pipeline runs to make sure the service
     //reads all partitions within the time range.
@@ -135,7 +135,7 @@ public class ValueMapperTest extends ETLTestBase {
 
     WorkflowManager mrManager = appManager.getWorkflowManager(SmartWorkflow.NAME);
     mrManager.start();
-    mrManager.waitForRun(ProgramRunStatus.COMPLETED, 10, TimeUnit.MINUTES);
+    waitForRun(mrManager, ProgramRunStatus.COMPLETED, 10, TimeUnit.MINUTES);
 
     Map<String, String> nameDesignationMap = new HashMap<>();
     nameDesignationMap.put("John", "DEFAULTID");
@@ -41,7 +41,6 @@ import com.google.pubsub.v1.PubsubMessage;
 import com.google.pubsub.v1.PushConfig;
 import io.cdap.cdap.api.artifact.ArtifactScope;
 import io.cdap.cdap.common.ArtifactNotFoundException;
-import io.cdap.cdap.common.utils.Tasks;
 import io.cdap.cdap.datastreams.DataStreamsSparkLauncher;
 import io.cdap.cdap.etl.api.batch.BatchSink;
 import io.cdap.cdap.etl.api.streaming.StreamingSource;
@@ -55,6 +54,7 @@ import io.cdap.cdap.proto.id.ApplicationId;
 import io.cdap.cdap.proto.id.ArtifactId;
 import io.cdap.cdap.test.ApplicationManager;
 import io.cdap.cdap.test.SparkManager;
+import io.cdap.cdap.test.Tasks;
 import io.cdap.cdap.test.suite.category.RequiresSpark;
 import org.junit.Assert;
 import org.junit.BeforeClass;
@@ -23,7 +23,6 @@ import io.cdap.cdap.api.dataset.table.Row;
 import io.cdap.cdap.api.dataset.table.Table;
 import io.cdap.cdap.app.etl.ETLTestBase;
 import io.cdap.cdap.app.etl.batch.UploadFile;
-import io.cdap.cdap.common.utils.Tasks;
 import io.cdap.cdap.etl.api.batch.BatchSink;
 import io.cdap.cdap.etl.api.streaming.StreamingSource;
 import io.cdap.cdap.etl.proto.v2.DataStreamsConfig;
@@ -37,6 +36,8 @@ import io.cdap.cdap.test.ApplicationManager;
 import io.cdap.cdap.test.DataSetManager;
 import io.cdap.cdap.test.ServiceManager;
 import io.cdap.cdap.test.SparkManager;
+import io.cdap.cdap.test.Tasks;
+import io.cdap.cdap.test.runner.AutoSuiteRunner;
 import io.cdap.cdap.test.suite.category.CDH54Incompatible;
 import io.cdap.cdap.test.suite.category.HDP22Incompatible;
 import io.cdap.cdap.test.suite.category.RequiresSpark;
@@ -57,6 +58,7 @@ import java.util.concurrent.TimeoutException;
 /**
  * Tests for DataStreams app.
  */
+@AutoSuiteRunner.Resources(budgets = @AutoSuiteRunner.Budget(name = "spark.programs", amount = 1))
 public class DataStreamsTest extends ETLTestBase {
 
   @Category({
@@ -73,7 +75,7 @@ public class DataStreamsTest extends ETLTestBase {
     String fileSetName = UploadFile.FileSetService.class.getSimpleName();
     ServiceManager serviceManager = applicationManager.getServiceManager(fileSetName);
     serviceManager.start();
-    serviceManager.waitForRun(ProgramRunStatus.RUNNING, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    waitForRun(serviceManager, ProgramRunStatus.RUNNING, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
     URL serviceURL = serviceManager.getServiceURL(PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
 
     URL url = new URL(serviceURL, "testFileSet/create");
@@ -128,7 +130,7 @@ public class DataStreamsTest extends ETLTestBase {
     ApplicationManager appManager = deployApplication(appId, appRequest);
     SparkManager sparkManager = appManager.getSparkManager("DataStreamsSparkStreaming");
     sparkManager.start();
-    sparkManager.waitForRun(ProgramRunStatus.RUNNING, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    waitForRun(sparkManager, ProgramRunStatus.RUNNING, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
 
     url = new URL(serviceURL, "testFileSet?path=test1.csv");
     //PUT request to upload the test1.csv file, sent in the request body
@@ -147,7 +149,7 @@ public class DataStreamsTest extends ETLTestBase {
     verifyOutput(table, "2", "Marshall", "Mathers");
 
     sparkManager.stop();
-    sparkManager.waitForRun(ProgramRunStatus.KILLED, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    waitForRun(sparkManager, ProgramRunStatus.KILLED, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
   }
 
   private void verifyOutput(final Table table, final String id, String firstName, String lastName)
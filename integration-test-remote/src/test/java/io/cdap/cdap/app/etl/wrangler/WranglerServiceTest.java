@@ -32,6 +32,7 @@ import io.cdap.cdap.proto.id.ApplicationId;
 import io.cdap.cdap.proto.id.NamespaceId;
 import io.cdap.cdap.test.ApplicationManager;
 import io.cdap.cdap.test.ServiceManager;
+import io.cdap.cdap.test.runner.AutoSuiteRunner;
 import io.cdap.common.http.HttpMethod;
 import io.cdap.common.http.HttpResponse;
 import org.junit.Assert;
@@ -50,6 +51,8 @@ import java.util.concurrent.TimeUnit;
 /**
  * Integration test for wrangler service.
  */
+// starts and stops the dataprep service of the system namespace
+@AutoSuiteRunner.Resources(exclusive = "namespace:system")
 public class WranglerServiceTest extends ETLTestBase {
 
   private static final Gson GSON =
@@ -141,7 +144,7 @@ public class WranglerServiceTest extends ETLTestBase {
     if (!serviceManager.isRunning()) {
       serviceManager.start();
     }
-    serviceManager.waitForRun(ProgramRunStatus.RUNNING, 5, TimeUnit.MINUTES);
+    waitForRun(serviceManager, ProgramRunStatus.RUNNING, 5, TimeUnit.MINUTES);
     return serviceManager;
   }
 
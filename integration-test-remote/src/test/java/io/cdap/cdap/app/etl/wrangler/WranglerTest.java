@@ -46,6 +46,7 @@ import io.cdap.cdap.test.ApplicationManager;
 import io.cdap.cdap.test.DataSetManager;
 import io.cdap.cdap.test.ServiceManager;
 import io.cdap.cdap.test.WorkflowManager;
+import io.cdap.cdap.test.runner.AutoSuiteRunner;
 import io.cdap.cdap.test.suite.category.RequiresSpark;
 import io.cdap.common.http.HttpMethod;
 import io.cdap.common.http.HttpResponse;
@@ -73,6 +74,7 @@ import java.util.concurrent.TimeoutException;
 /**
  * Wrangler test to test Wrangler Transform functionalities
  */
+@AutoSuiteRunner.Resources(budgets = @AutoSuiteRunner.Budget(name = "spark.programs", amount = 1))
 public class WranglerTest extends ETLTestBase {
 
   @Test
@@ -163,7 +165,7 @@ public class WranglerTest extends ETLTestBase {
     // run the pipeline
     WorkflowManager workflowManager = testAppManager.getWorkflowManager(SmartWorkflow.NAME);
     workflowManager.start();
-    workflowManager.waitForRun(ProgramRunStatus.COMPLETED, 10, TimeUnit.MINUTES);
+    waitForRun(workflowManager, ProgramRunStatus.COMPLETED, 10, TimeUnit.MINUTES);
 
     // Deploy an application with a service to get partitionedFileset data for verification
     ApplicationManager appManager = deployApplication(DatasetAccessApp.class);
@@ -200,7 +202,7 @@ public class WranglerTest extends ETLTestBase {
     ExecutionException, TimeoutException {
     ServiceManager serviceManager = appManager.getServiceManager(service);
     serviceManager.start();
-    serviceManager.waitForRun(ProgramRunStatus.RUNNING, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    waitForRun(serviceManager, ProgramRunStatus.RUNNING, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
     return serviceManager;
   }
 
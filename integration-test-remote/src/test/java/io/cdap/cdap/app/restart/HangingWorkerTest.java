@@ -18,11 +18,11 @@ package io.cdap.cdap.app.restart;
 
 import io.cdap.cdap.api.common.Bytes;
 import io.cdap.cdap.api.dataset.lib.KeyValueTable;
-import io.cdap.cdap.common.utils.Tasks;
 import io.cdap.cdap.proto.ProgramRunStatus;
 import io.cdap.cdap.test.ApplicationManager;
 import io.cdap.cdap.test.AudiTestBase;
 import io.cdap.cdap.test.DataSetManager;
+import io.cdap.cdap.test.Tasks;
 import io.cdap.cdap.test.WorkerManager;
 import io.cdap.cdap.test.suite.category.SDKIncompatible;
 import org.junit.Test;
@@ -49,7 +49,7 @@ public class HangingWorkerTest extends AudiTestBase {
 
     // start the worker
     WorkerManager workerManager = applicationManager.getWorkerManager(HangingWorkerApp.WORKER_NAME).start();
-    workerManager.waitForRun(ProgramRunStatus.RUNNING, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    waitForRun(workerManager, ProgramRunStatus.RUNNING, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
 
     // the worker writes current time into workerDataset every HangingWorkerApp.WORKER_SLEEP_SECS secs
     final DataSetManager<KeyValueTable> workerDataset = getKVTableDataset(HangingWorkerApp.WORKER_DATASET_NAME);
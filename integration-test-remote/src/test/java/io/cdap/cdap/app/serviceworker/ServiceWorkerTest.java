@@ -35,6 +35,7 @@ import io.cdap.cdap.test.ApplicationManager;
 import io.cdap.cdap.test.AudiTestBase;
 import io.cdap.cdap.test.ServiceManager;
 import io.cdap.cdap.test.WorkerManager;
+import io.cdap.cdap.test.runner.AutoSuiteRunner;
 import io.cdap.common.http.HttpRequest;
 import io.cdap.common.http.HttpResponse;
 import org.junit.Assert;
@@ -53,6 +54,8 @@ import java.util.concurrent.TimeUnit;
 /**
  * Test worker that writes to dataset and service that reads from it.
  */
+// reads the artifacts of the system namespace, which other test classes deploy apps to
+@AutoSuiteRunner.Resources(shared = "namespace:system")
 public class ServiceWorkerTest extends AudiTestBase {
   private static final Type ARTIFACT_INFO_LIST_TYPE = new TypeToken<List<ArtifactInfo>>() { }.getType();
   private static final ArtifactId artifactId = TEST_NAMESPACE.artifact("image-app", "1.0.0");
@@ -66,7 +69,7 @@ public class ServiceWorkerTest extends AudiTestBase {
     ApplicationManager applicationManager = deployApplication(ServiceApplication.class);
 
     ServiceManager serviceManager = applicationManager.getServiceManager(ServiceApplication.SERVICE_NAME).start();
-    serviceManager.waitForRun(ProgramRunStatus.RUNNING, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    waitForRun(serviceManager, ProgramRunStatus.RUNNING, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
 
 
     URL serviceURL = serviceManager.getServiceURL(PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
@@ -79,7 +82,7 @@ public class ServiceWorkerTest extends AudiTestBase {
     // start the worker
     WorkerManager workerManager = applicationManager.getWorkerManager(ServiceApplication.WORKER_NAME).start();
     // worker will stop automatically
-    workerManager.waitForRun(ProgramRunStatus.COMPLETED, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    waitForRun(workerManager, ProgramRunStatus.COMPLETED, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
 
     // check if the worker's write to the table was successful
     response = restClient.execute(HttpRequest.get(url).build(), getClientConfig().getAccessToken());
@@ -98,7 +101,7 @@ public class ServiceWorkerTest extends AudiTestBase {
     }
 
     serviceManager.stop();
-    serviceManager.waitForRun(ProgramRunStatus.KILLED, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    waitForRun(serviceManager, ProgramRunStatus.KILLED, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
 
     // Now testing the artifact listing / class loading using the Artifact HTTP Service
     final File directiveJar =
@@ -119,7 +122,7 @@ public class ServiceWorkerTest extends AudiTestBase {
     artifactClient.add(artifactId, parentArtifacts, () -> new FileInputStream(directiveJar));
 
     serviceManager = applicationManager.getServiceManager(ServiceApplication.ARTIFACT_SERVICE_NAME).start();
-    serviceManager.waitForRun(ProgramRunStatus.RUNNING, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    waitForRun(serviceManager, ProgramRunStatus.RUNNING, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
 
 
     serviceURL = serviceManager.getServiceURL(PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
@@ -136,6 +139,6 @@ public class ServiceWorkerTest extends AudiTestBase {
     Assert.assertEquals(HttpURLConnection.HTTP_OK, response.getResponseCode());
 
     serviceManager.stop();
-    serviceManager.waitForRun(ProgramRunStatus.KILLED, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    waitForRun(serviceManager, ProgramRunStatus.KILLED, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
   }
 }
@@ -63,7 +63,7 @@ public class FileSetTest extends AudiTestBase {
     }
     ServiceManager fileSetService = applicationManager.getServiceManager("FileSetService").start();
 
-    fileSetService.waitForRun(ProgramRunStatus.RUNNING, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    waitForRun(fileSetService, ProgramRunStatus.RUNNING, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
 
     URL serviceURL = fileSetService.getServiceURL(PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
     URL url = new URL(serviceURL, "lines?path=myFile.txt");
@@ -93,7 +93,7 @@ public class FileSetTest extends AudiTestBase {
                              "dataset.counts.output.path", "out.txt"));
 
     // wait 5 minutes for mapreduce to complete
-    wordCountManager.waitForRun(ProgramRunStatus.COMPLETED, 5, TimeUnit.MINUTES);
+    waitForRun(wordCountManager, ProgramRunStatus.COMPLETED, 5, TimeUnit.MINUTES);
 
     url = new URL(serviceURL, "counts?path=out.txt/part-r-00000");
     response = getRestClient().execute(HttpMethod.GET, url, getClientConfig().getAccessToken());
@@ -49,7 +49,7 @@ public class PartitionCorrectorTest extends AudiTestBase {
     ApplicationManager applicationManager = deployApplication(PFSApp.class);
 
     ServiceManager pfsService = applicationManager.getServiceManager("PFSService").start();
-    pfsService.waitForRun(ProgramRunStatus.RUNNING, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    waitForRun(pfsService, ProgramRunStatus.RUNNING, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
     URL serviceURL = pfsService.getServiceURL(PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
 
     for (int i = 0; i < 100; i++) {
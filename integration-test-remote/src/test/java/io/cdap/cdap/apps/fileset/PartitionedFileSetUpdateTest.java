@@ -60,7 +60,7 @@ public class PartitionedFileSetUpdateTest extends AudiTestBase {
     ApplicationManager applicationManager = deployApplication(PFSApp.class);
 
     ServiceManager pfsService = applicationManager.getServiceManager("PFSService").start();
-    pfsService.waitForRun(ProgramRunStatus.RUNNING, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    waitForRun(pfsService, ProgramRunStatus.RUNNING, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
     URL serviceURL = pfsService.getServiceURL(PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
 
     HttpResponse response = getRestClient().execute(HttpRequest.put(new URL(serviceURL, "1")).build(),
@@ -109,7 +109,7 @@ public class PartitionedFileSetUpdateTest extends AudiTestBase {
     // run the partition corrector. This should bring all partitions to use delimiter :
     WorkerManager pfsWorker = applicationManager
       .getWorkerManager("PartitionWorker").start(ImmutableMap.of("dataset.name", "pfs"));
-    pfsWorker.waitForRun(ProgramRunStatus.COMPLETED, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    waitForRun(pfsWorker, ProgramRunStatus.COMPLETED, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
 
     validate(client, "i", "j", 0, 4);
   }
@@ -24,7 +24,6 @@ import io.cdap.cdap.client.LineageClient;
 import io.cdap.cdap.client.MetadataClient;
 import io.cdap.cdap.client.ProgramClient;
 import io.cdap.cdap.common.app.RunIds;
-import io.cdap.cdap.common.utils.Tasks;
 import io.cdap.cdap.data2.metadata.lineage.AccessType;
 import io.cdap.cdap.data2.metadata.lineage.Lineage;
 import io.cdap.cdap.data2.metadata.lineage.LineageSerializer;
@@ -43,6 +42,7 @@ import io.cdap.cdap.spi.metadata.MetadataConstants;
 import io.cdap.cdap.test.ApplicationManager;
 import io.cdap.cdap.test.AudiTestBase;
 import io.cdap.cdap.test.MapReduceManager;
+import io.cdap.cdap.test.Tasks;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -93,7 +93,7 @@ public class ProgramMetadataTest extends AudiTestBase {
     MapReduceManager mapReduceManager =
       applicationManager.getMapReduceManager(PROGRAM.getProgram());
     mapReduceManager.start();
-    mapReduceManager.waitForRun(ProgramRunStatus.COMPLETED, 5, TimeUnit.MINUTES);
+    waitForRun(mapReduceManager, ProgramRunStatus.COMPLETED, 5, TimeUnit.MINUTES);
 
     List<RunRecord> runRecords = getRunRecords(1, programClient, PROGRAM,
                                                ProgramRunStatus.COMPLETED.name(), 0, endTime);
@@ -26,7 +26,6 @@ import io.cdap.cdap.api.artifact.ArtifactScope;
 import io.cdap.cdap.api.artifact.ArtifactSummary;
 import io.cdap.cdap.client.util.RESTClient;
 import io.cdap.cdap.common.UnauthenticatedException;
-import io.cdap.cdap.common.utils.Tasks;
 import io.cdap.cdap.proto.ProgramRunStatus;
 import io.cdap.cdap.proto.artifact.AppRequest;
 import io.cdap.cdap.proto.id.ApplicationId;
@@ -52,6 +51,8 @@ import io.cdap.cdap.test.ApplicationManager;
 import io.cdap.cdap.test.AudiTestBase;
 import io.cdap.cdap.test.ServiceManager;
 import io.cdap.cdap.test.SparkManager;
+import io.cdap.cdap.test.Tasks;
+import io.cdap.cdap.test.runner.AutoSuiteRunner;
 import io.cdap.cdap.test.suite.category.RequiresSpark2;
 import io.cdap.common.http.HttpRequest;
 import io.cdap.common.http.HttpResponse;
@@ -72,6 +73,9 @@ import java.util.concurrent.TimeUnit;
 @Category({
   RequiresSpark2.class,
 })
+// deploys and starts the report generation app in the system namespace
+@AutoSuiteRunner.Resources(exclusive = "namespace:system",
+                           budgets = @AutoSuiteRunner.Budget(name = "spark.programs", amount = 1))
 public class ReportGenerationAppTest extends AudiTestBase {
   private static final Gson GSON = new GsonBuilder()
     .registerTypeAdapter(ReportContent.class, new ReportContentDeserializer())
@@ -108,20 +112,20 @@ public class ReportGenerationAppTest extends AudiTestBase {
     runtimeArgs.put("task.client.system.resources.reserved.memory.override", "512");
 
     reportSpark.start(runtimeArgs);
-    reportSpark.waitForRun(ProgramRunStatus.RUNNING, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    waitForRun(reportSpark, ProgramRunStatus.RUNNING, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
 
     // start the service
     // TODO: CDAP-14746 Migrate ReportGenerationAppTest to use an application that doesn't have flows.
     ApplicationManager applicationManager = null; // deployApplication(PurchaseApp.class);
     ServiceManager serviceManager = applicationManager.getServiceManager("PurchaseHistoryService").start();
-    serviceManager.waitForRun(ProgramRunStatus.RUNNING, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    waitForRun(serviceManager, ProgramRunStatus.RUNNING, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
 
     // make sure the spark app has started to process program status records
     checkMetricAtLeast(reportAppTags, PROGRAM_STATUS_PROCESSED, previousProcessed + 1,
                        PROGRAM_FIRST_PROCESSED_TIMEOUT_SECONDS);
 
     serviceManager.stop();
-    serviceManager.waitForRun(ProgramRunStatus.KILLED, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    waitForRun(serviceManager, ProgramRunStatus.KILLED, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
 
 
     // at least 3 states starting->running->killed for PurchaseHistoryService program is expected to be processed
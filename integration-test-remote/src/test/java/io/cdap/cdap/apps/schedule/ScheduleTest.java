@@ -24,7 +24,6 @@ import io.cdap.cdap.api.schedule.SchedulableProgramType;
 import io.cdap.cdap.api.workflow.ScheduleProgramInfo;
 import io.cdap.cdap.client.ScheduleClient;
 import io.cdap.cdap.common.UnauthenticatedException;
-import io.cdap.cdap.common.utils.Tasks;
 import io.cdap.cdap.internal.app.runtime.schedule.ProgramScheduleStatus;
 import io.cdap.cdap.internal.schedule.constraint.Constraint;
 import io.cdap.cdap.proto.ProgramRunStatus;
@@ -42,6 +41,7 @@ import io.cdap.cdap.proto.id.WorkflowId;
 import io.cdap.cdap.security.spi.authorization.UnauthorizedException;
 import io.cdap.cdap.test.ApplicationManager;
 import io.cdap.cdap.test.AudiTestBase;
+import io.cdap.cdap.test.Tasks;
 import io.cdap.cdap.test.WorkflowManager;
 import io.cdap.common.http.HttpRequest;
 import io.cdap.common.http.HttpResponse;
@@ -139,7 +139,7 @@ public class ScheduleTest extends AudiTestBase {
       // expected
     }
     // DELAY_WORKFLOW should run after DELAY_MILLIS and complete
-    delayWorkflowManager.waitForRun(ProgramRunStatus.COMPLETED, 300, TimeUnit.SECONDS);
+    waitForRun(delayWorkflowManager, ProgramRunStatus.COMPLETED, 300, TimeUnit.SECONDS);
     // TWO_ACTIONS_WORKFLOW should not have a new run because of one TWO_ACTIONS_WORKFLOW run is suspended
     // and the concurrency constraint requires only one run of TWO_ACTIONS_WORKFLOW
     Assert.assertEquals(numRunsBeforeTrigger, workflowManager.getHistory().size());
@@ -157,7 +157,7 @@ public class ScheduleTest extends AudiTestBase {
     // Wait for the TIME_TRIGGER_ONLY_WORKFLOW launched by CAN_FAIL_SCHEDULE, which was triggered
     // by new partitions created previously, so that after new partitions are created again, CAN_FAIL_SCHEDULE
     // can be triggered and launch TIME_TRIGGER_ONLY_WORKFLOW to have one more failed run
-    timeWorkflowManager.waitForRun(ProgramRunStatus.FAILED, 20, TimeUnit.SECONDS);
+    waitForRun(timeWorkflowManager, ProgramRunStatus.FAILED, 20, TimeUnit.SECONDS);
     // New partitions should not trigger the suspended schedule to launch workflow
     triggerDataSchedule(serviceUrl);
     // Sleep for 10 sec to make sure notifications are processed and TWO_ACTIONS_WORKFLOW is not launched after
@@ -169,7 +169,7 @@ public class ScheduleTest extends AudiTestBase {
     if (waitMillis > 0) {
       Thread.sleep(waitMillis);
       // Wait for TIME_TRIGGER_ONLY_WORKFLOW to complete
-      timeWorkflowManager.waitForRun(ProgramRunStatus.COMPLETED, 20, TimeUnit.SECONDS);
+      waitForRun(timeWorkflowManager, ProgramRunStatus.COMPLETED, 20, TimeUnit.SECONDS);
     } else {
       // Wait for to complete at most 20 seconds after TIME_SCHEDULE is triggered so that TIME_TRIGGER_ONLY_WORKFLOW
       // can complete
@@ -184,7 +184,7 @@ public class ScheduleTest extends AudiTestBase {
     // Wait for 1 completed run since TIME_SCHEDULE is triggered every 10 seconds but can only run
     // TIME_TRIGGER_ONLY_WORKFLOW after MIN_SINCE_LAST_RUN minutes since last
     // completed run of TIME_TRIGGER_ONLY_WORKFLOW
-    timeWorkflowManager.waitForRun(ProgramRunStatus.COMPLETED, 30L, TimeUnit.SECONDS);
+    waitForRun(timeWorkflowManager, ProgramRunStatus.COMPLETED, 30L, TimeUnit.SECONDS);
     // Totally only 3 runs with no other status
     Assert.assertEquals(3, timeWorkflowManager.getHistory().size());
   }
@@ -252,7 +252,7 @@ public class ScheduleTest extends AudiTestBase {
     // before update is not counted after update
     createPartition(serviceUrl);
     try {
-      workflowManager.waitForRun(ProgramRunStatus.RUNNING, 30L, TimeUnit.SECONDS);
+      waitForRun(workflowManager, ProgramRunStatus.RUNNING, 30L, TimeUnit.SECONDS);
       Assert.fail(AppWithDataPartitionSchedule.CONCURRENCY_SCHEDULE + "'s trigger should not be satisfied " +
                     "with one new partition to launch workflow '" +
                     AppWithDataPartitionSchedule.TWO_ACTIONS_WORKFLOW + "'");
@@ -308,7 +308,7 @@ public class ScheduleTest extends AudiTestBase {
       .getServiceURL(PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
     triggerDataSchedule(serviceUrl);
     // Wait for a complete run for TIME_TRIGGER_ONLY_WORKFLOW launched by CAN_FAIL_SCHEDULE
-    timeWorkflowManager.waitForRun(ProgramRunStatus.COMPLETED, 60L, TimeUnit.SECONDS);
+    waitForRun(timeWorkflowManager, ProgramRunStatus.COMPLETED, 60L, TimeUnit.SECONDS);
 
     // Update CAN_FAIL_SCHEDULE to also have a time window constraint which will abort the job if not met
     ScheduleClient scheduleClient = new ScheduleClient(getClientConfig(), getRestClient());
@@ -382,7 +382,7 @@ public class ScheduleTest extends AudiTestBase {
 
   private String startAndSuspendWorkflow(WorkflowManager workflowManager, WorkflowId workflowId) throws Exception {
     workflowManager.start();
-    workflowManager.waitForRun(ProgramRunStatus.RUNNING, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    waitForRun(workflowManager, ProgramRunStatus.RUNNING, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
     String runId = workflowManager.getHistory().get(0).getPid();
     suspendWorkflow(workflowId, runId, 200);
     return runId;
@@ -25,7 +25,6 @@ import io.cdap.cdap.api.dataset.lib.KeyValueTable;
 import io.cdap.cdap.client.ProgramClient;
 import io.cdap.cdap.common.UnauthenticatedException;
 import io.cdap.cdap.common.app.RunIds;
-import io.cdap.cdap.common.utils.Tasks;
 import io.cdap.cdap.data2.metadata.lineage.AccessType;
 import io.cdap.cdap.data2.metadata.lineage.Lineage;
 import io.cdap.cdap.data2.metadata.lineage.LineageSerializer;
@@ -46,6 +45,8 @@ import io.cdap.cdap.test.DataSetManager;
 import io.cdap.cdap.test.MapReduceManager;
 import io.cdap.cdap.test.ServiceManager;
 import io.cdap.cdap.test.SparkManager;
+import io.cdap.cdap.test.Tasks;
+import io.cdap.cdap.test.runner.AutoSuiteRunner;
 import io.cdap.cdap.test.suite.category.RequiresSpark2;
 import io.cdap.common.http.HttpRequest;
 import io.cdap.common.http.HttpResponse;
@@ -68,6 +69,7 @@ import java.util.concurrent.TimeUnit;
 @Category({
   RequiresSpark2.class
 })
+@AutoSuiteRunner.Resources(budgets = @AutoSuiteRunner.Budget(name = "spark.programs", amount = 1))
 public class SparkPageRankAppTest extends AudiTestBase {
   private static final Gson GSON = new GsonBuilder()
     .registerTypeAdapter(NamespacedEntityId.class, new NamespacedEntityIdCodec())
@@ -105,7 +107,7 @@ public class SparkPageRankAppTest extends AudiTestBase {
 
     // Start service
     ServiceManager serviceManager = applicationManager.getServiceManager(PAGE_RANK_SERVICE.getEntityName()).start();
-    serviceManager.waitForRun(ProgramRunStatus.RUNNING, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    waitForRun(serviceManager, ProgramRunStatus.RUNNING, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
     Assert.assertTrue(serviceManager.isRunning());
 
     // Start Spark Page Rank and await completion
@@ -127,7 +129,7 @@ public class SparkPageRankAppTest extends AudiTestBase {
         return (status == ProgramRunStatus.RUNNING || status == ProgramRunStatus.COMPLETED);
       }
     }, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS, 1, TimeUnit.SECONDS);
-    pageRankManager.waitForRun(ProgramRunStatus.COMPLETED, 10, TimeUnit.MINUTES);
+    waitForRun(pageRankManager, ProgramRunStatus.COMPLETED, 10, TimeUnit.MINUTES);
 
     List<RunRecord> sparkRanRecords =
       getRunRecords(1, programClient, PAGE_RANK_PROGRAM,
@@ -138,7 +140,7 @@ public class SparkPageRankAppTest extends AudiTestBase {
       RANKS_COUNTER_PROGRAM.getEntityName());
     ranksCounterManager.start(Collections.singletonMap("system.resources.memory", "1024"));
     // wait 10 minutes for the mapreduce to execute
-    ranksCounterManager.waitForRun(ProgramRunStatus.COMPLETED, 10, TimeUnit.MINUTES);
+    waitForRun(ranksCounterManager, ProgramRunStatus.COMPLETED, 10, TimeUnit.MINUTES);
 
     List<RunRecord> mrRanRecords =
       getRunRecords(1, programClient, RANKS_COUNTER_PROGRAM,
@@ -162,7 +164,7 @@ public class SparkPageRankAppTest extends AudiTestBase {
     Assert.assertEquals(RANK, response.getResponseBodyAsString());
 
     serviceManager.stop();
-    serviceManager.waitForRun(ProgramRunStatus.KILLED, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    waitForRun(serviceManager, ProgramRunStatus.KILLED, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
 
     List<RunRecord> serviceRanRecords =
       getRunRecords(1, programClient, PAGE_RANK_SERVICE,
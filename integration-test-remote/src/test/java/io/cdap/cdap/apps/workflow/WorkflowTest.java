@@ -39,7 +39,7 @@ public class WorkflowTest extends AudiTestBase {
 
     workflowManager.start();
 
-    workflowManager.waitForRun(ProgramRunStatus.COMPLETED, 5, TimeUnit.MINUTES);
+    waitForRun(workflowManager, ProgramRunStatus.COMPLETED, 5, TimeUnit.MINUTES);
 
     Assert.assertEquals(
       Long.valueOf(
@@ -0,0 +1,78 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.remote.dataset.test;
+
+import com.google.common.collect.ImmutableMap;
+import io.cdap.cdap.api.dataset.lib.KeyValueTable;
+import io.cdap.cdap.test.AudiTestBase;
+import io.cdap.cdap.test.DisruptorFactory;
+import io.cdap.cdap.test.LoadTimelineRecorder;
+import io.cdap.cdap.test.runner.AutoSuiteRunner;
+import io.cdap.chaosmonkey.proto.ActionArguments;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Measures the throughput and latency of a {@link io.cdap.cdap.remote.dataset.kvtable.RemoteKeyValueTable}
+ * while the HBase tables of its dataset are major compacted. It runs alone, since the disruptor is stopped after every
+ * test class.
+ */
+@AutoSuiteRunner.RunAlone
+public class RemoteKeyValueDisruptionTest extends AudiTestBase {
+  private static final Logger LOG = LoggerFactory.getLogger(RemoteKeyValueDisruptionTest.class);
+  private static final int OPERATIONS_PER_SECOND = Integer.getInteger("disruption.load.rate", 50);
+  private static final int NUM_THREADS = Integer.getInteger("disruption.load.threads", 16);
+  private static final String DATASET = "kvTable";
+  // the fraction of failed operations that is tolerated after the disruption
+  private static final double MAX_ERROR_RATE_AFTER = 0.01d;
+
+  @Test
+  public void testMajorCompact() throws Exception {
+    KeyValueTable kvTable = getKVTableDataset(DATASET).get();
+    LoadTimelineRecorder recorder = new LoadTimelineRecorder(LoadTimelineRecorder.keyValueWorkload(kvTable, 1000),
+                                                             OPERATIONS_PER_SECOND, NUM_THREADS);
+
+    // only compact the tables of the dataset, whose names contain the namespace and the dataset name
+    Map<String, String> compactArguments = ImmutableMap.of(
+      "tables.include",
+      ".*" + Pattern.quote(TEST_NAMESPACE.getNamespace()) + ".*" + Pattern.quote(DATASET) + ".*",
+      "concurrency", "1");
+    ActionArguments actionArguments = DisruptorFactory.createActionArguments(compactArguments);
+
+    LoadTimelineRecorder.Timeline timeline = recorder.record(() -> {
+      getClusterDisruptor().disruptAndWait("hbase-master", "major-compact", actionArguments, 10, TimeUnit.MINUTES);
+      return null;
+    }, 30, 30, TimeUnit.SECONDS);
+
+    // the workload must make progress in every phase, and recover from the disruption
+    for (LoadTimelineRecorder.Phase phase : Arrays.asList(timeline.getBeforeDisruption(),
+                                                          timeline.getDuringDisruption(),
+                                                          timeline.getAfterDisruption())) {
+      LOG.info("{}", phase);
+      Assert.assertTrue("No operations completed: " + phase, phase.getOperations() > 0);
+    }
+    LoadTimelineRecorder.Phase after = timeline.getAfterDisruption();
+    Assert.assertTrue("Too many errors after the disruption: " + after, after.getErrorRate() <= MAX_ERROR_RATE_AFTER);
+  }
+}
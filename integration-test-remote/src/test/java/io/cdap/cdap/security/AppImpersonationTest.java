@@ -107,18 +107,18 @@ public class AppImpersonationTest extends AudiTestBase {
     Assert.assertFalse(results.hasNext());
 
     generatorWorkerManager.start();
-    generatorWorkerManager.waitForRun(ProgramRunStatus.RUNNING, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    waitForRun(generatorWorkerManager, ProgramRunStatus.RUNNING, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
 
     TimeUnit.SECONDS.sleep(15);
 
     generatorWorkerManager.stop();
-    generatorWorkerManager.waitForRun(ProgramRunStatus.KILLED, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    waitForRun(generatorWorkerManager, ProgramRunStatus.KILLED, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
 
     processorWorkflowManager.start();
-    processorWorkflowManager
-      .waitForRun(ProgramRunStatus.RUNNING, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    waitForRun(processorWorkflowManager, ProgramRunStatus.RUNNING, PROGRAM_START_STOP_TIMEOUT_SECONDS,
+               TimeUnit.SECONDS);
 
-    processorWorkflowManager.waitForRun(ProgramRunStatus.COMPLETED, 5, TimeUnit.MINUTES);
+    waitForRun(processorWorkflowManager, ProgramRunStatus.COMPLETED, 5, TimeUnit.MINUTES);
 
     // Ensure that there is at least one result
     results = new QueryClient(getClientConfig())
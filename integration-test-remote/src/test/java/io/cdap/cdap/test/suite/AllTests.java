@@ -48,13 +48,14 @@ import io.cdap.cdap.operations.OperationalStatsTest;
 import io.cdap.cdap.remote.dataset.test.RemoteCubeTest;
 import io.cdap.cdap.remote.dataset.test.RemoteKeyValueTest;
 import io.cdap.cdap.remote.dataset.test.RemoteTableTest;
+import io.cdap.cdap.test.runner.ShardedSuite;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 
 /**
- * Suite to represent all integration tests for CDAP.
+ * Suite to represent all integration tests for CDAP. It can be split across several JVMs, see {@link ShardedSuite}.
  */
-@RunWith(Suite.class)
+@RunWith(ShardedSuite.class)
 @Suite.SuiteClasses({
 //
 // Note: all the class names below are in sorted order
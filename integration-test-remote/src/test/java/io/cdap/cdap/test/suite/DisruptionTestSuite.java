@@ -16,6 +16,7 @@
 
 package io.cdap.cdap.test.suite;
 
+import io.cdap.cdap.remote.dataset.test.RemoteKeyValueDisruptionTest;
 import org.junit.experimental.categories.Categories;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
@@ -26,6 +27,7 @@ import org.junit.runners.Suite;
 @RunWith(Categories.class)
 @Suite.SuiteClasses({
   // TODO(CDAP-14746): Bring back ContinuousCounterTest?
+  RemoteKeyValueDisruptionTest.class
 })
 public class DisruptionTestSuite {
 }
@@ -16,10 +16,15 @@
 
 package io.cdap.cdap.test;
 
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.gson.Gson;
 import io.cdap.cdap.proto.NamespaceMeta;
+import io.cdap.cdap.proto.ProgramRunStatus;
+import io.cdap.cdap.proto.RunRecord;
 import io.cdap.cdap.proto.id.NamespaceId;
 import org.junit.After;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.slf4j.Logger;
@@ -27,7 +32,21 @@ import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Abstract class for writing long running tests for CDAP.
@@ -43,19 +62,59 @@ public abstract class LongRunningTestBase<T extends TestState> extends AudiTestB
   private static final String STAGE = System.getProperty("stage");
   private static final String PRE = "PRE";
   private static final String POST = "POST";
+  // maximum time for one iteration of a test, no limit if not positive
+  private static final long ITERATION_TIMEOUT_MINUTES = Long.getLong("longrunning.iteration.timeout.minutes", 0L);
+  // continuous mode runs iterations in-process, until one of the budgets is used up
+  private static final boolean CONTINUOUS = Boolean.getBoolean("longrunning.continuous");
+  private static final long CONTINUOUS_MINUTES = Long.getLong("longrunning.continuous.minutes", 0L);
+  private static final int CONTINUOUS_ITERATIONS = Integer.getInteger("longrunning.continuous.iterations", 0);
+  // how long to wait for the thread of an iteration that timed out to exit
+  private static final long CANCELLED_ITERATION_EXIT_SECONDS = 30L;
+  private static final long CHECKPOINT_MINUTES = Long.getLong("longrunning.checkpoint.minutes", 10L);
+  // the timings of the latest iterations are kept alongside the test state, under the test name with this suffix
+  private static final String PERFORMANCE_SUFFIX = "#performance";
+  private static final int PERFORMANCE_HISTORY_SIZE = Integer.getInteger("longrunning.performance.history", 20);
+  private static final double REGRESSION_FACTOR =
+    Double.parseDouble(System.getProperty("longrunning.performance.regression.factor", "2"));
+  private static final boolean FAIL_ON_REGRESSION = Boolean.getBoolean("longrunning.performance.fail.on.regression");
+  private static final int REGRESSION_MIN_SAMPLES = 5;
+  private static final long REGRESSION_MIN_MS = TimeUnit.SECONDS.toMillis(1);
+
+  // end of the time budget of continuous mode, shared by all tests of the suite, set by the first test that starts
+  private static Long continuousDeadlineNanos;
+  // saves the states of all tests, set by the test runner
+  private static volatile Callable<?> stateCheckpoint;
 
   private NamespaceId longRunningNamespace;
-  private T state;
+  // volatile because the iteration may run in a separate thread, see runOneIteration(long, TimeUnit)
+  private volatile T state;
+  // the iteration that runs or ran last, which is cancelled if it times out
+  private volatile Iteration iteration = new Iteration();
+  // timings of the current iteration, in milliseconds
+  private final Map<String, Long> iterationTimings = new ConcurrentHashMap<>();
+  // history as of the start of the current iteration, and start times of the runs recorded by the current iteration
+  private volatile PerformanceHistory performanceHistory;
+  private final Map<String, Long> recordedRunStarts = new ConcurrentHashMap<>();
 
   public static void initializeInMemoryMap(Map<String, String> inMemoryMap) {
-    inMemoryStatePerTest = inMemoryMap;
+    // tests may run concurrently, see AutoSuiteRunner
+    inMemoryStatePerTest = new ConcurrentHashMap<>(inMemoryMap);
+  }
+
+  /**
+   * Sets the callable that saves the states of all tests, which is called periodically in continuous mode.
+   */
+  public static void setStateCheckpoint(Callable<?> checkpoint) {
+    stateCheckpoint = checkpoint;
   }
 
   private NamespaceId configureLongRunningNamespace(String namespace) throws Exception {
     NamespaceId namespaceId = new NamespaceId(namespace);
-    if (!getNamespaceClient().exists(namespaceId)) {
-      NamespaceMeta namespaceMeta = new NamespaceMeta.Builder().setName(namespaceId).build();
-      getNamespaceClient().create(namespaceMeta);
+    synchronized (LongRunningTestBase.class) {
+      if (!getNamespaceClient().exists(namespaceId)) {
+        NamespaceMeta namespaceMeta = new NamespaceMeta.Builder().setName(namespaceId).build();
+        getNamespaceClient().create(namespaceMeta);
+      }
     }
     return namespaceId;
   }
@@ -116,8 +175,125 @@ public abstract class LongRunningTestBase<T extends TestState> extends AudiTestB
   }
 
   private void testLongRunning() throws Exception {
+    if (CONTINUOUS) {
+      testContinuously();
+      return;
+    }
     LOG.info("Running one iteration of long running test {}", getTestName());
-    runOneIteration();
+    runOneIterationWithTimeout();
+  }
+
+  /**
+   * Runs iterations one after the other until the time or iteration budget is used up, and saves the state
+   * periodically, so that a soak run doesn't pay the cost of starting a JVM and loading the state for every iteration.
+   * The time budget is shared by all tests of the suite: it starts with the first test and ends at the same time for
+   * all of them, but every test runs at least one iteration. The iteration budget applies to every test.
+   */
+  private void testContinuously() throws Exception {
+    if (CONTINUOUS_MINUTES <= 0 && CONTINUOUS_ITERATIONS <= 0) {
+      throw new IllegalArgumentException("Continuous mode requires longrunning.continuous.minutes or " +
+                                           "longrunning.continuous.iterations to be set");
+    }
+    LOG.info("Running long running test {} continuously for {} minutes or {} iterations", getTestName(),
+             CONTINUOUS_MINUTES <= 0 ? "unlimited" : CONTINUOUS_MINUTES,
+             CONTINUOUS_ITERATIONS <= 0 ? "unlimited" : CONTINUOUS_ITERATIONS);
+    long startTime = System.nanoTime();
+    long deadline;
+    synchronized (LongRunningTestBase.class) {
+      if (continuousDeadlineNanos == null) {
+        continuousDeadlineNanos = startTime + TimeUnit.MINUTES.toNanos(CONTINUOUS_MINUTES);
+      }
+      deadline = continuousDeadlineNanos;
+    }
+    long lastCheckpoint = startTime;
+    List<Long> durationsMs = new ArrayList<>();
+    try {
+      while ((CONTINUOUS_ITERATIONS <= 0 || durationsMs.size() < CONTINUOUS_ITERATIONS)
+        && (CONTINUOUS_MINUTES <= 0 || durationsMs.isEmpty() || System.nanoTime() - deadline < 0)) {
+        long iterationStart = System.nanoTime();
+        runOneIterationWithTimeout();
+        long durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - iterationStart);
+        durationsMs.add(durationMs);
+        LOG.info("Iteration {} of long running test {} took {} ms", durationsMs.size(), getTestName(), durationMs);
+
+        inMemoryStatePerTest.put(getTestName(), GSON.toJson(state));
+        if (System.nanoTime() - lastCheckpoint >= TimeUnit.MINUTES.toNanos(CHECKPOINT_MINUTES)) {
+          checkpoint();
+          lastCheckpoint = System.nanoTime();
+        }
+      }
+    } finally {
+      logIterationSummary(durationsMs);
+    }
+  }
+
+  private void checkpoint() throws Exception {
+    Callable<?> checkpoint = stateCheckpoint;
+    if (checkpoint != null) {
+      LOG.info("Saving checkpoint of long running test states");
+      checkpoint.call();
+    }
+  }
+
+  private void logIterationSummary(List<Long> durationsMs) {
+    if (durationsMs.isEmpty()) {
+      return;
+    }
+    List<Long> sorted = new ArrayList<>(durationsMs);
+    Collections.sort(sorted);
+    long totalMs = 0;
+    for (long durationMs : sorted) {
+      totalMs += durationMs;
+    }
+    LOG.info("Long running test {} ran {} iterations in {} s: min {} ms, median {} ms, max {} ms, all {}",
+             getTestName(), sorted.size(), TimeUnit.MILLISECONDS.toSeconds(totalMs), sorted.get(0),
+             sorted.get(sorted.size() / 2), sorted.get(sorted.size() - 1), durationsMs);
+  }
+
+  private void runOneIterationWithTimeout() throws Exception {
+    if (ITERATION_TIMEOUT_MINUTES > 0) {
+      runOneIteration(ITERATION_TIMEOUT_MINUTES, TimeUnit.MINUTES);
+    } else {
+      runOneIteration(iteration);
+    }
+  }
+
+  /**
+   * Runs one iteration in a separate thread and fails if it doesn't complete within the given timeout. The state is
+   * kept as of the last phase of the iteration that completed. An iteration that times out is cancelled: the thread
+   * is interrupted, but since most client calls ignore interrupts, it may keep running until its current phase ends.
+   * Once cancelled, it doesn't change the state nor the performance history anymore, and fails at the start of its
+   * next phase, or at the next {@link #checkNotCancelled()} of the test.
+   */
+  private void runOneIteration(long timeout, TimeUnit unit) throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor(
+      new ThreadFactoryBuilder().setDaemon(true).setNameFormat("iteration-" + getClass().getSimpleName()).build());
+    Iteration current = new Iteration();
+    iteration = current;
+    try {
+      Future<?> future = executor.submit(() -> {
+        runOneIteration(current);
+        return null;
+      });
+      try {
+        future.get(timeout, unit);
+      } catch (TimeoutException e) {
+        current.cancel();
+        future.cancel(true);
+        executor.shutdownNow();
+        if (!executor.awaitTermination(CANCELLED_ITERATION_EXIT_SECONDS, TimeUnit.SECONDS)) {
+          LOG.warn("Cancelled iteration of long running test {} is still running after {} seconds, " +
+                     "its changes to the state are discarded", getTestName(), CANCELLED_ITERATION_EXIT_SECONDS);
+        }
+        throw new TimeoutException(String.format("Iteration of long running test %s did not complete within %d %s",
+                                                 getTestName(), timeout, unit));
+      } catch (ExecutionException e) {
+        Throwables.propagateIfPossible(e.getCause(), Exception.class);
+        throw Throwables.propagate(e.getCause());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
   }
 
   private void testUpgrade() throws Exception {
@@ -134,8 +310,8 @@ public abstract class LongRunningTestBase<T extends TestState> extends AudiTestB
     }
     try {
       // run two iterations and then verify runs at the end (don't need to runOperations at the end)
-      runOneIteration();
-      runOneIteration();
+      runOneIteration(iteration);
+      runOneIteration(iteration);
 
       LOG.info("Calling awaitOperations...");
       awaitOperations(state);
@@ -152,17 +328,142 @@ public abstract class LongRunningTestBase<T extends TestState> extends AudiTestB
     LOG.info("Testing stage {} of Upgrade: {} - SUCCESSFUL!", STAGE, getTestName());
   }
 
-  private void runOneIteration() throws Exception {
+  private void runOneIteration(Iteration iteration) throws Exception {
     LOG.info("Running one iteration of test run {}", getTestName());
+    iterationTimings.clear();
+    recordedRunStarts.clear();
+    String json = inMemoryStatePerTest.get(getTestName() + PERFORMANCE_SUFFIX);
+    performanceHistory = json == null ? new PerformanceHistory() : GSON.fromJson(json, PerformanceHistory.class);
 
     LOG.info("Calling awaitOperations...");
+    long startTime = System.nanoTime();
+    iteration.checkNotCancelled();
     awaitOperations(state);
+    startTime = recordPhase("awaitOperations", startTime);
     LOG.info("Calling verifyRuns...");
-    state = verifyRuns(state);
-    LOG.info("Calling runOperations with updated state: {}", state);
-    state = runOperations(state);
-    LOG.info("Got output state = {}", state);
+    iteration.checkNotCancelled();
+    T verified = verifyRuns(state);
+    iteration.update(() -> state = verified);
+    startTime = recordPhase("verifyRuns", startTime);
+    LOG.info("Calling runOperations with updated state: {}", verified);
+    iteration.checkNotCancelled();
+    T next = runOperations(verified);
+    iteration.update(() -> state = next);
+    recordPhase("runOperations", startTime);
+    LOG.info("Got output state = {}", next);
 
     LOG.info("One iteration of test run {} completed", getTestName());
+    iteration.update(this::recordPerformance);
+  }
+
+  /**
+   * Fails if the current iteration was cancelled because it timed out. Tests can call it between the steps of a long
+   * phase, so that a cancelled iteration doesn't keep starting programs.
+   */
+  protected void checkNotCancelled() {
+    iteration.checkNotCancelled();
+  }
+
+  /**
+   * Records the duration of the completed runs of the given program that were not recorded yet, so that they become
+   * part of the performance history of the test. See {@link #recordProgramRuns(String, List)}.
+   */
+  protected void recordProgramRuns(String name, ProgramManager<?> programManager) throws Exception {
+    recordProgramRuns(name, programManager.getHistory(ProgramRunStatus.COMPLETED));
+  }
+
+  /**
+   * Records the duration of the given completed runs that started after the latest run recorded under the same name
+   * by a previous iteration, so that a run is recorded even if it completed before the iteration that waits for it.
+   * If no run was recorded under that name yet, only the latest run is recorded. If several runs are recorded, the
+   * longest one becomes part of the performance history, so several programs can be recorded under the same name.
+   */
+  protected void recordProgramRuns(String name, List<RunRecord> completedRuns) {
+    String key = "run:" + name;
+    Long lastRecordedStart = performanceHistory.getLastRecordedRunStart(key);
+    List<RunRecord> runs = new ArrayList<>();
+    for (RunRecord run : completedRuns) {
+      if (run.getStopTs() != null && (lastRecordedStart == null || run.getStartTs() > lastRecordedStart)) {
+        runs.add(run);
+      }
+    }
+    if (lastRecordedStart == null && !runs.isEmpty()) {
+      runs = Collections.singletonList(Collections.max(runs, Comparator.comparingLong(RunRecord::getStartTs)));
+    }
+    for (RunRecord run : runs) {
+      iterationTimings.merge(key, TimeUnit.SECONDS.toMillis(run.getStopTs() - run.getStartTs()), Math::max);
+      recordedRunStarts.merge(key, run.getStartTs(), Math::max);
+    }
+  }
+
+  /**
+   * Records a timing of the current iteration, in milliseconds, as part of the performance history of the test.
+   */
+  protected void recordTiming(String name, long durationMs) {
+    iterationTimings.put(name, durationMs);
+  }
+
+  /**
+   * Records a throughput of the current iteration, per second, as part of the performance history of the test.
+   */
+  protected void recordThroughput(String name, double perSecond) {
+    iterationTimings.put(name + PerformanceHistory.THROUGHPUT_SUFFIX, Math.round(perSecond));
+  }
+
+  private long recordPhase(String phase, long startTime) {
+    long now = System.nanoTime();
+    iterationTimings.put(phase, TimeUnit.NANOSECONDS.toMillis(now - startTime));
+    return now;
+  }
+
+  /**
+   * Adds the timings of the current iteration to the performance history of the test, and flags the iteration if any
+   * of its timings is much slower than the median of the previous iterations.
+   */
+  private void recordPerformance() {
+    String key = getTestName() + PERFORMANCE_SUFFIX;
+    PerformanceHistory history = performanceHistory;
+    recordedRunStarts.forEach(history::setLastRecordedRunStart);
+    Map<String, Long> timings = new TreeMap<>(iterationTimings);
+    List<String> regressions = history.findRegressions(timings, REGRESSION_FACTOR, REGRESSION_MIN_SAMPLES,
+                                                       REGRESSION_MIN_MS);
+    history.add(timings, PERFORMANCE_HISTORY_SIZE);
+    inMemoryStatePerTest.put(key, GSON.toJson(history));
+    LOG.info("Timings of the iteration of long running test {} in ms: {}", getTestName(), timings);
+
+    if (!regressions.isEmpty()) {
+      String message = String.format("Iteration of long running test %s is slower than before: %s",
+                                     getTestName(), regressions);
+      if (FAIL_ON_REGRESSION) {
+        Assert.fail(message);
+      }
+      LOG.warn(message);
+    }
+  }
+
+  /**
+   * One iteration of a test, which can be cancelled. Once {@link #cancel()} returns, no update of the iteration runs
+   * anymore, so the thread that cancelled it owns the state of the test.
+   */
+  private static final class Iteration {
+    private boolean cancelled;
+
+    synchronized void cancel() {
+      cancelled = true;
+    }
+
+    synchronized void checkNotCancelled() {
+      if (cancelled) {
+        throw new CancellationException("Iteration was cancelled");
+      }
+    }
+
+    /**
+     * Runs the given update of the state of the test, unless the iteration was cancelled.
+     */
+    synchronized void update(Runnable update) {
+      checkNotCancelled();
+      update.run();
+    }
   }
 }
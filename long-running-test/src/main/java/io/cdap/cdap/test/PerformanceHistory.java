@@ -0,0 +1,122 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * The timings of the latest iterations of a long running test, kept alongside its {@link TestState}, so that an
+ * iteration that is much slower than the ones before can be flagged. Every iteration records the duration of its
+ * phases and of the program runs that completed since the previous iteration, keyed by name, in milliseconds, and
+ * throughputs, whose name ends with {@link #THROUGHPUT_SUFFIX}, for which a lower value is slower. The start time of
+ * the latest recorded run of every name is kept as well, so that a run is recorded exactly once, even if it completes
+ * in a previous iteration or JVM than the one that waits for it.
+ */
+public final class PerformanceHistory {
+  public static final String THROUGHPUT_SUFFIX = ".perSecond";
+
+  private final List<Map<String, Long>> iterations;
+  // start time in seconds of the latest recorded run, keyed by name
+  private final Map<String, Long> lastRecordedRunStarts;
+
+  public PerformanceHistory() {
+    this.iterations = new ArrayList<>();
+    this.lastRecordedRunStarts = new HashMap<>();
+  }
+
+  /**
+   * Returns the timings of the iterations in the history, from the oldest to the latest.
+   */
+  public List<Map<String, Long>> getIterations() {
+    return Collections.unmodifiableList(iterations);
+  }
+
+  /**
+   * Adds the timings of an iteration, and drops the oldest iterations if there are more than {@code maxSize}.
+   */
+  public void add(Map<String, Long> timings, int maxSize) {
+    iterations.add(new LinkedHashMap<>(timings));
+    while (iterations.size() > Math.max(1, maxSize)) {
+      iterations.remove(0);
+    }
+  }
+
+  /**
+   * Returns the start time in seconds of the latest run recorded under the given name, or {@code null} if no run was
+   * recorded under that name yet.
+   */
+  @Nullable
+  public Long getLastRecordedRunStart(String name) {
+    return lastRecordedRunStarts.get(name);
+  }
+
+  /**
+   * Sets the start time in seconds of the latest run recorded under the given name, unless a later one is set already.
+   */
+  public void setLastRecordedRunStart(String name, long startSeconds) {
+    lastRecordedRunStarts.merge(name, startSeconds, Math::max);
+  }
+
+  /**
+   * Returns a description of every timing of the given iteration that exceeds {@code factor} times the median of the
+   * same timing in the history, and of every throughput below the median divided by {@code factor}. Values with less
+   * than {@code minSamples} previous values are not compared, and neither are the timings below {@code minMs}, since
+   * small timings vary too much to be meaningful.
+   */
+  public List<String> findRegressions(Map<String, Long> timings, double factor, int minSamples, long minMs) {
+    List<String> regressions = new ArrayList<>();
+    for (Map.Entry<String, Long> timing : timings.entrySet()) {
+      List<Long> previous = new ArrayList<>();
+      for (Map<String, Long> iteration : iterations) {
+        Long value = iteration.get(timing.getKey());
+        if (value != null) {
+          previous.add(value);
+        }
+      }
+      boolean throughput = timing.getKey().endsWith(THROUGHPUT_SUFFIX);
+      if (previous.size() < Math.max(1, minSamples) || (!throughput && timing.getValue() < minMs)) {
+        continue;
+      }
+      Collections.sort(previous);
+      long median = previous.get(previous.size() / 2);
+      if (throughput) {
+        if (factor * timing.getValue() < median) {
+          regressions.add(String.format("%s was %d, less than the median of %d over %d iterations divided by %.1f",
+                                        timing.getKey(), timing.getValue(), median, previous.size(), factor));
+        }
+      } else if (timing.getValue() > factor * median) {
+        regressions.add(String.format("%s took %d ms, more than %.1f times the median of %d ms over %d iterations",
+                                      timing.getKey(), timing.getValue(), factor, median, previous.size()));
+      }
+    }
+    return regressions;
+  }
+
+  @Override
+  public String toString() {
+    return "PerformanceHistory{" +
+      "iterations=" + iterations +
+      ", lastRecordedRunStarts=" + lastRecordedRunStarts +
+      '}';
+  }
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.test;
+
+import com.google.common.reflect.TypeToken;
+import com.google.gson.Gson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only journal of the state of the long running tests. Every record holds the state of one test, keyed by
+ * the test name, and the latest record of a test wins. Saving only appends the states that changed, so that loading
+ * and saving cost is proportional to what changed rather than to the total size of the state.
+ *
+ * The file starts with a header, followed by records of the form
+ * {@code [key length][value length][crc32 of key and value][key][value]}. It is read through a memory-mapped buffer.
+ * A record with a wrong checksum or a truncated record, e.g. from a crash during a save, ends the journal, and is
+ * overwritten by the next save. Once the records that are no longer the latest take more space than the latest ones,
+ * the journal is compacted by rewriting only the latest records.
+ *
+ * State files in the former JSON format are read as well, and are replaced by a journal on the next save.
+ */
+public final class StateJournal {
+  private static final Logger LOG = LoggerFactory.getLogger(StateJournal.class);
+  private static final Gson GSON = new Gson();
+
+  private static final byte[] MAGIC = "LRTJRNL1".getBytes(StandardCharsets.US_ASCII);
+  private static final int RECORD_HEADER_SIZE = 4 + 4 + 8;
+  // don't bother compacting small journals
+  private static final long MIN_COMPACTION_SIZE = 1024 * 1024;
+
+  // the file that the journal was last read from or saved to
+  private Path source;
+  // whether the source is a valid journal that can be appended to
+  private boolean appendable;
+  // length of the valid part of the source
+  private long validLength;
+  private final Map<String, String> persisted;
+  private final Map<String, String> pending = new LinkedHashMap<>();
+  private long liveBytes;
+  private long totalBytes;
+
+  /**
+   * Reads the journal from the given file. A missing file results in an empty journal.
+   */
+  public static StateJournal open(Path file) throws IOException {
+    if (!Files.exists(file) || Files.size(file) == 0) {
+      return new StateJournal(file, false, 0, new HashMap<>(), 0);
+    }
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      byte[] magic = new byte[MAGIC.length];
+      if (buffer.remaining() < magic.length || !Arrays.equals(MAGIC, get(buffer, magic))) {
+        return new StateJournal(file, false, 0, readJson(file), 0);
+      }
+
+      Map<String, String> states = new HashMap<>();
+      long totalBytes = 0;
+      int records = 0;
+      CRC32 crc = new CRC32();
+      while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+        int start = buffer.position();
+        int keyLength = buffer.getInt();
+        int valueLength = buffer.getInt();
+        long checksum = buffer.getLong();
+        if (keyLength < 0 || valueLength < 0 || (long) keyLength + valueLength > buffer.remaining()) {
+          buffer.position(start);
+          break;
+        }
+        byte[] key = get(buffer, new byte[keyLength]);
+        byte[] value = get(buffer, new byte[valueLength]);
+        crc.reset();
+        crc.update(key);
+        crc.update(value);
+        if (crc.getValue() != checksum) {
+          buffer.position(start);
+          break;
+        }
+        states.put(new String(key, StandardCharsets.UTF_8), new String(value, StandardCharsets.UTF_8));
+        totalBytes += buffer.position() - start;
+        records++;
+      }
+      if (buffer.hasRemaining()) {
+        LOG.warn("Ignoring {} bytes of corrupt or truncated records at the end of {}", buffer.remaining(), file);
+      }
+      LOG.info("Read {} states from {} records of state journal {}", states.size(), records, file);
+      return new StateJournal(file, true, buffer.position(), states, totalBytes);
+    }
+  }
+
+  private StateJournal(Path source, boolean appendable, long validLength,
+                       Map<String, String> persisted, long totalBytes) {
+    this.source = source;
+    this.appendable = appendable;
+    this.validLength = validLength;
+    this.persisted = persisted;
+    this.totalBytes = totalBytes;
+    for (Map.Entry<String, String> entry : persisted.entrySet()) {
+      liveBytes += getRecordSize(entry.getKey(), entry.getValue());
+    }
+  }
+
+  /**
+   * Returns the latest state of every test.
+   */
+  public Map<String, String> getStates() {
+    Map<String, String> states = new HashMap<>(persisted);
+    states.putAll(pending);
+    return states;
+  }
+
+  /**
+   * Sets the state of a test. It is only written by the next {@link #save(Path)} if it differs from the saved one.
+   */
+  public void put(String key, String value) {
+    if (value.equals(persisted.get(key))) {
+      pending.remove(key);
+    } else {
+      pending.put(key, value);
+    }
+  }
+
+  /**
+   * Sets the states of all tests in the given map.
+   */
+  public void putAll(Map<String, String> states) {
+    for (Map.Entry<String, String> entry : states.entrySet()) {
+      put(entry.getKey(), entry.getValue());
+    }
+  }
+
+  /**
+   * Saves the journal to the given file. If it is the file the journal was read from or last saved to, the changed
+   * states are appended to it. Otherwise a compacted journal is written to it, with only the latest states, and the
+   * next saves append to it. If saving fails, the changed states are kept for the next save.
+   */
+  public void save(Path target) throws IOException {
+    long newLiveBytes = liveBytes;
+    long appendedBytes = 0;
+    for (Map.Entry<String, String> entry : pending.entrySet()) {
+      String previous = persisted.get(entry.getKey());
+      if (previous != null) {
+        newLiveBytes -= getRecordSize(entry.getKey(), previous);
+      }
+      long size = getRecordSize(entry.getKey(), entry.getValue());
+      newLiveBytes += size;
+      appendedBytes += size;
+    }
+    long newTotalBytes = totalBytes + appendedBytes;
+
+    boolean sameFile = appendable && Files.exists(target) && Files.isSameFile(source, target);
+    if (!sameFile || (newTotalBytes >= MIN_COMPACTION_SIZE && newTotalBytes > 2 * newLiveBytes)) {
+      Map<String, String> states = new HashMap<>(persisted);
+      states.putAll(pending);
+      rewrite(target, states);
+      persisted.putAll(pending);
+      pending.clear();
+      liveBytes = newLiveBytes;
+      totalBytes = newLiveBytes;
+      validLength = MAGIC.length + newLiveBytes;
+      appendable = true;
+      source = target;
+      return;
+    }
+
+    long newValidLength;
+    try (FileChannel channel = FileChannel.open(target, StandardOpenOption.WRITE)) {
+      // drop a corrupt or truncated tail before appending
+      channel.truncate(validLength);
+      channel.position(validLength);
+      for (Map.Entry<String, String> entry : pending.entrySet()) {
+        write(channel, entry.getKey(), entry.getValue());
+      }
+      channel.force(true);
+      newValidLength = channel.position();
+    }
+    LOG.info("Appended {} changed states to state journal {}", pending.size(), target);
+    persisted.putAll(pending);
+    pending.clear();
+    liveBytes = newLiveBytes;
+    totalBytes = newTotalBytes;
+    validLength = newValidLength;
+  }
+
+  /**
+   * Writes a compacted journal with only the given states.
+   */
+  private void rewrite(Path target, Map<String, String> states) throws IOException {
+    Path parent = target.toAbsolutePath().getParent();
+    Path tmpFile = Files.createTempFile(parent, target.getFileName().toString(), ".tmp");
+    try {
+      try (FileChannel channel = FileChannel.open(tmpFile, StandardOpenOption.WRITE)) {
+        channel.write(ByteBuffer.wrap(MAGIC));
+        for (Map.Entry<String, String> entry : states.entrySet()) {
+          write(channel, entry.getKey(), entry.getValue());
+        }
+        channel.force(true);
+      }
+      Files.move(tmpFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tmpFile);
+    }
+    LOG.info("Wrote {} states to compacted state journal {}", states.size(), target);
+  }
+
+  private static void write(FileChannel channel, String key, String value) throws IOException {
+    byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+    byte[] valueBytes = value.getBytes(StandardCharsets.UTF_8);
+    CRC32 crc = new CRC32();
+    crc.update(keyBytes);
+    crc.update(valueBytes);
+    ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE + keyBytes.length + valueBytes.length);
+    buffer.putInt(keyBytes.length).putInt(valueBytes.length).putLong(crc.getValue()).put(keyBytes).put(valueBytes);
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  private static long getRecordSize(String key, String value) {
+    return RECORD_HEADER_SIZE + key.getBytes(StandardCharsets.UTF_8).length
+      + value.getBytes(StandardCharsets.UTF_8).length;
+  }
+
+  private static byte[] get(ByteBuffer buffer, byte[] bytes) {
+    buffer.get(bytes);
+    return bytes;
+  }
+
+  private static Map<String, String> readJson(Path file) throws IOException {
+    Type type = new TypeToken<Map<String, String>>() { }.getType();
+    try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      Map<String, String> states = GSON.fromJson(reader, type);
+      LOG.info("Read {} states from JSON state file {}", states == null ? 0 : states.size(), file);
+      return states == null ? new HashMap<>() : states;
+    }
+  }
+}
@@ -0,0 +1,510 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.longrunning.datacleansing;
+
+import io.cdap.cdap.api.data.schema.Schema;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A schema matcher for flat-record schemas with simple (or nullable of simple) fields, which gives the same results as
+ * {@link SimpleSchemaMatcher} at a fraction of the cost. The schema is compiled into a table of field names and
+ * types, and a record is validated in a single pass over its UTF-8 bytes, without building any intermediate objects or
+ * throwing exceptions.
+ *
+ * A record matches if it is a JSON object whose fields are all in the schema, whose values can be converted to the
+ * type of their fields, and which has all non-nullable fields of the schema. Unlike {@link SimpleSchemaMatcher}, it
+ * doesn't accept the lenient JSON extensions of Gson, such as unquoted or single quoted strings, numbers with leading
+ * zeros or unknown escape sequences, nor arrays of a single value, or hexadecimal floating point values.
+ *
+ * Instances are not thread safe.
+ */
+public final class CompiledSchemaMatcher {
+  // how the value of a field is validated
+  private static final int UNSUPPORTED = 0;
+  private static final int ANY = 1;
+  private static final int INT = 2;
+  private static final int LONG = 3;
+  private static final int FLOATING = 4;
+
+  private final byte[][] names;
+  private final int[] kinds;
+  private final boolean[] nullable;
+  // the fields seen in the current record, and whether their value is valid
+  private final boolean[] seen;
+  private final boolean[] valid;
+  // the decoded content of the current string
+  private byte[] scratch = new byte[64];
+  private int scratchLength;
+
+  // the record being matched
+  private byte[] data;
+  private int position;
+  private int end;
+
+  public CompiledSchemaMatcher(Schema schema) {
+    if (schema.getType() != Schema.Type.RECORD) {
+      throw new IllegalArgumentException("Schema must be a record, but is " + schema);
+    }
+    List<Schema.Field> fields = schema.getFields();
+    this.names = new byte[fields.size()][];
+    this.kinds = new int[fields.size()];
+    this.nullable = new boolean[fields.size()];
+    this.seen = new boolean[fields.size()];
+    this.valid = new boolean[fields.size()];
+    for (int i = 0; i < fields.size(); i++) {
+      Schema fieldSchema = fields.get(i).getSchema();
+      names[i] = fields.get(i).getName().getBytes(StandardCharsets.UTF_8);
+      nullable[i] = fieldSchema.isNullable();
+      kinds[i] = getKind(nullable[i] ? fieldSchema.getNonNullable().getType() : fieldSchema.getType());
+    }
+  }
+
+  private static int getKind(Schema.Type type) {
+    switch (type) {
+      case BOOLEAN:
+      case BYTES:
+      case STRING:
+        // conversions of these types never fail
+        return ANY;
+      case INT:
+        return INT;
+      case LONG:
+        return LONG;
+      case FLOAT:
+      case DOUBLE:
+        return FLOATING;
+      default:
+        return UNSUPPORTED;
+    }
+  }
+
+  /**
+   * Determines whether or not this matcher's schema fits a piece of data.
+   *
+   * @param data a JSON string to check if the schema matches it
+   * @return true if the schema matches the given data
+   */
+  public boolean matches(String data) {
+    byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+    return matches(bytes, 0, bytes.length);
+  }
+
+  /**
+   * Determines whether or not this matcher's schema fits a piece of data.
+   *
+   * @param data the UTF-8 bytes of a JSON string to check if the schema matches it
+   * @param offset the offset of the JSON string in the bytes
+   * @param length the length of the JSON string in bytes
+   * @return true if the schema matches the given data
+   */
+  public boolean matches(byte[] data, int offset, int length) {
+    this.data = data;
+    this.position = offset;
+    this.end = offset + length;
+    try {
+      return matchObject();
+    } finally {
+      this.data = null;
+    }
+  }
+
+  private boolean matchObject() {
+    Arrays.fill(seen, false);
+    skipWhitespace();
+    if (!consume('{')) {
+      return false;
+    }
+    skipWhitespace();
+    if (!consume('}')) {
+      do {
+        skipWhitespace();
+        if (!readString(true)) {
+          return false;
+        }
+        int field = lookupField();
+        skipWhitespace();
+        if (field < 0 || !consume(':')) {
+          return false;
+        }
+        skipWhitespace();
+        if (!matchValue(field)) {
+          return false;
+        }
+        skipWhitespace();
+      } while (consume(','));
+      if (!consume('}')) {
+        return false;
+      }
+    }
+    skipWhitespace();
+    if (position != end) {
+      return false;
+    }
+    for (int i = 0; i < names.length; i++) {
+      if (seen[i] ? !valid[i] : !nullable[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Reads the value of the given field, and records whether it can be converted to the type of the field. Returns
+   * false if the value is not a JSON string, number or boolean. A field that appears several times takes the last
+   * value, like in a JSON object.
+   */
+  private boolean matchValue(int field) {
+    if (position == end) {
+      return false;
+    }
+    int kind = kinds[field];
+    int start = position;
+    boolean isValid;
+    switch (data[position]) {
+      case '"':
+        if (!readString(kind != ANY)) {
+          return false;
+        }
+        isValid = isValid(kind, scratch, 0, scratchLength);
+        break;
+      case 't':
+        if (!consumeLiteral("true")) {
+          return false;
+        }
+        isValid = kind == ANY;
+        break;
+      case 'f':
+        if (!consumeLiteral("false")) {
+          return false;
+        }
+        isValid = kind == ANY;
+        break;
+      case 'n':
+        // a null value can't be converted to a string, so it never matches
+        if (!consumeLiteral("null")) {
+          return false;
+        }
+        isValid = false;
+        break;
+      default:
+        if (!skipNumber()) {
+          return false;
+        }
+        isValid = isValid(kind, data, start, position);
+    }
+    seen[field] = true;
+    valid[field] = isValid;
+    return true;
+  }
+
+  private static boolean isValid(int kind, byte[] bytes, int start, int end) {
+    switch (kind) {
+      case ANY:
+        return true;
+      case INT:
+        return isInteger(bytes, start, end, Integer.MIN_VALUE, Integer.MAX_VALUE);
+      case LONG:
+        return isInteger(bytes, start, end, Long.MIN_VALUE, Long.MAX_VALUE);
+      case FLOATING:
+        return isFloating(bytes, start, end);
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Returns whether the bytes are accepted by {@link Long#parseLong(String)} and are within the given range, which
+   * is the same as {@link Integer#parseInt(String)} for the range of an int.
+   */
+  private static boolean isInteger(byte[] bytes, int start, int end, long min, long max) {
+    int i = start;
+    boolean negative = false;
+    if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+      negative = bytes[i] == '-';
+      i++;
+    }
+    if (i == end) {
+      return false;
+    }
+    // accumulate negatively, like Long.parseLong, so that the minimum value doesn't overflow
+    long limit = negative ? min : -max;
+    long multiplyMin = limit / 10;
+    long value = 0;
+    for (; i < end; i++) {
+      int digit = bytes[i] - '0';
+      if (digit < 0 || digit > 9 || value < multiplyMin) {
+        return false;
+      }
+      value *= 10;
+      if (value < limit + digit) {
+        return false;
+      }
+      value -= digit;
+    }
+    return true;
+  }
+
+  /**
+   * Returns whether the bytes are accepted by {@link Double#parseDouble(String)}, except for hexadecimal values.
+   */
+  private static boolean isFloating(byte[] bytes, int start, int end) {
+    // leading and trailing whitespace is ignored
+    while (start < end && (bytes[start] & 0xFF) <= ' ') {
+      start++;
+    }
+    while (end > start && (bytes[end - 1] & 0xFF) <= ' ') {
+      end--;
+    }
+    int i = start;
+    if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+      i++;
+    }
+    if (equals(bytes, i, end, "NaN") || equals(bytes, i, end, "Infinity")) {
+      return true;
+    }
+    int digits = 0;
+    while (i < end && isDigit(bytes[i])) {
+      i++;
+      digits++;
+    }
+    if (i < end && bytes[i] == '.') {
+      i++;
+      while (i < end && isDigit(bytes[i])) {
+        i++;
+        digits++;
+      }
+    }
+    if (digits == 0) {
+      return false;
+    }
+    if (i < end && (bytes[i] == 'e' || bytes[i] == 'E')) {
+      i++;
+      if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+        i++;
+      }
+      int exponentStart = i;
+      while (i < end && isDigit(bytes[i])) {
+        i++;
+      }
+      if (i == exponentStart) {
+        return false;
+      }
+    }
+    if (i < end && (bytes[i] == 'f' || bytes[i] == 'F' || bytes[i] == 'd' || bytes[i] == 'D')) {
+      i++;
+    }
+    return i == end;
+  }
+
+  private static boolean isDigit(byte b) {
+    return b >= '0' && b <= '9';
+  }
+
+  private static boolean equals(byte[] bytes, int start, int end, String ascii) {
+    if (end - start != ascii.length()) {
+      return false;
+    }
+    for (int i = 0; i < ascii.length(); i++) {
+      if (bytes[start + i] != ascii.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the index of the field whose name is in the scratch buffer, or -1 if the schema has no such field.
+   */
+  private int lookupField() {
+    for (int i = 0; i < names.length; i++) {
+      if (equals(names[i], scratch, scratchLength)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static boolean equals(byte[] name, byte[] bytes, int length) {
+    if (name.length != length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (name[i] != bytes[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Reads a JSON string, and decodes its content into the scratch buffer if requested. Returns false if there is no
+   * valid JSON string at the current position.
+   */
+  private boolean readString(boolean decode) {
+    if (!consume('"')) {
+      return false;
+    }
+    scratchLength = 0;
+    while (position < end) {
+      byte b = data[position++];
+      if (b == '"') {
+        return true;
+      }
+      if (b == '\\') {
+        int decoded = readEscape();
+        if (decoded < 0) {
+          return false;
+        }
+        if (decode) {
+          appendUtf8(decoded);
+        }
+      } else if (decode) {
+        append(b);
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Reads the escape sequence after a backslash, and returns the character it stands for, or -1 if it is invalid.
+   */
+  private int readEscape() {
+    if (position == end) {
+      return -1;
+    }
+    byte b = data[position++];
+    switch (b) {
+      case '"':
+      case '\\':
+      case '/':
+        return b;
+      case 'b':
+        return '\b';
+      case 'f':
+        return '\f';
+      case 'n':
+        return '\n';
+      case 'r':
+        return '\r';
+      case 't':
+        return '\t';
+      case 'u':
+        if (end - position < 4) {
+          return -1;
+        }
+        int c = 0;
+        for (int i = 0; i < 4; i++) {
+          int digit = Character.digit(data[position++], 16);
+          if (digit < 0) {
+            return -1;
+          }
+          c = (c << 4) | digit;
+        }
+        return c;
+      default:
+        return -1;
+    }
+  }
+
+  private void appendUtf8(int c) {
+    if (c < 0x80) {
+      append((byte) c);
+    } else if (c < 0x800) {
+      append((byte) (0xC0 | (c >> 6)));
+      append((byte) (0x80 | (c & 0x3F)));
+    } else {
+      append((byte) (0xE0 | (c >> 12)));
+      append((byte) (0x80 | ((c >> 6) & 0x3F)));
+      append((byte) (0x80 | (c & 0x3F)));
+    }
+  }
+
+  private void append(byte b) {
+    if (scratchLength == scratch.length) {
+      scratch = Arrays.copyOf(scratch, scratch.length * 2);
+    }
+    scratch[scratchLength++] = b;
+  }
+
+  /**
+   * Skips a JSON number. Returns false if there is no valid JSON number at the current position.
+   */
+  private boolean skipNumber() {
+    if (position < end && data[position] == '-') {
+      position++;
+    }
+    if (position == end || !isDigit(data[position])) {
+      return false;
+    }
+    if (data[position] == '0') {
+      position++;
+    } else {
+      skipDigits();
+    }
+    if (position < end && data[position] == '.') {
+      position++;
+      if (skipDigits() == 0) {
+        return false;
+      }
+    }
+    if (position < end && (data[position] == 'e' || data[position] == 'E')) {
+      position++;
+      if (position < end && (data[position] == '-' || data[position] == '+')) {
+        position++;
+      }
+      return skipDigits() > 0;
+    }
+    return true;
+  }
+
+  private int skipDigits() {
+    int start = position;
+    while (position < end && isDigit(data[position])) {
+      position++;
+    }
+    return position - start;
+  }
+
+  private boolean consumeLiteral(String literal) {
+    if (!equals(data, position, Math.min(end, position + literal.length()), literal)) {
+      return false;
+    }
+    position += literal.length();
+    return true;
+  }
+
+  private boolean consume(char c) {
+    if (position < end && data[position] == c) {
+      position++;
+      return true;
+    }
+    return false;
+  }
+
+  private void skipWhitespace() {
+    while (position < end) {
+      byte b = data[position];
+      if (b != ' ' && b != '\t' && b != '\n' && b != '\r') {
+        return;
+      }
+      position++;
+    }
+  }
+}
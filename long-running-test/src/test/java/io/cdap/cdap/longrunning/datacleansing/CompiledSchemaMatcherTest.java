@@ -0,0 +1,214 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.cdap.longrunning.datacleansing;
+
+import io.cdap.cdap.api.data.schema.Schema;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests that {@link CompiledSchemaMatcher} gives the same result as {@link SimpleSchemaMatcher} on a table of records,
+ * each one with the result both matchers must give, and that they only differ on the lenient JSON that Gson accepts.
+ */
+public class CompiledSchemaMatcherTest {
+
+  private static final Schema SCHEMA = Schema.recordOf(
+    "record",
+    Schema.Field.of("name", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("count", Schema.of(Schema.Type.INT)),
+    Schema.Field.of("id", Schema.nullableOf(Schema.of(Schema.Type.LONG))),
+    Schema.Field.of("score", Schema.nullableOf(Schema.of(Schema.Type.DOUBLE))),
+    Schema.Field.of("ratio", Schema.nullableOf(Schema.of(Schema.Type.FLOAT))),
+    Schema.Field.of("flag", Schema.nullableOf(Schema.of(Schema.Type.BOOLEAN))));
+
+  private static final Object[][] CASES = {
+    // valid records
+    {"{\"name\": \"a\", \"count\": 1}", true},
+    {" { \"name\" : \"a\" , \"count\" : 1 } ", true},
+    {"{\"count\": 1, \"name\": \"a\", \"id\": 2, \"score\": 1.5, \"ratio\": 2.5, \"flag\": true}", true},
+    {"{\"name\": \"\", \"count\": 0}", true},
+    {"{\"name\": \"caf\u00e9 \\u00e9\", \"count\": 1}", true},
+
+    // nulls
+    {"{\"name\": null, \"count\": 1}", false},
+    {"{\"name\": \"a\", \"count\": null}", false},
+    {"{\"name\": \"a\", \"count\": 1, \"id\": null}", false},
+    {"{\"name\": \"a\", \"count\": 1, \"flag\": null}", false},
+
+    // booleans
+    {"{\"name\": true, \"count\": 1}", true},
+    {"{\"name\": \"a\", \"count\": 1, \"flag\": false}", true},
+    {"{\"name\": \"a\", \"count\": 1, \"flag\": \"yes\"}", true},
+    {"{\"name\": \"a\", \"count\": true}", false},
+    {"{\"name\": \"a\", \"count\": 1, \"id\": false}", false},
+    {"{\"name\": \"a\", \"count\": 1, \"score\": true}", false},
+
+    // signs
+    {"{\"name\": \"a\", \"count\": -1}", true},
+    {"{\"name\": \"a\", \"count\": \"-1\"}", true},
+    {"{\"name\": \"a\", \"count\": \"+1\"}", true},
+    {"{\"name\": \"a\", \"count\": \"-\"}", false},
+    {"{\"name\": \"a\", \"count\": \"+\"}", false},
+    {"{\"name\": \"a\", \"count\": \"--1\"}", false},
+    {"{\"name\": \"a\", \"count\": \"+-1\"}", false},
+    {"{\"name\": \"a\", \"count\": 1, \"id\": \"+9\"}", true},
+    {"{\"name\": \"a\", \"count\": 1, \"score\": -0.5}", true},
+    {"{\"name\": \"a\", \"count\": 1, \"score\": \"+.5\"}", true},
+
+    // int and long bounds
+    {"{\"name\": \"a\", \"count\": 2147483647}", true},
+    {"{\"name\": \"a\", \"count\": -2147483648}", true},
+    {"{\"name\": \"a\", \"count\": 2147483648}", false},
+    {"{\"name\": \"a\", \"count\": -2147483649}", false},
+    {"{\"name\": \"a\", \"count\": 99999999999999999999}", false},
+    {"{\"name\": \"a\", \"count\": 1, \"id\": 9223372036854775807}", true},
+    {"{\"name\": \"a\", \"count\": 1, \"id\": -9223372036854775808}", true},
+    {"{\"name\": \"a\", \"count\": 1, \"id\": 9223372036854775808}", false},
+    {"{\"name\": \"a\", \"count\": 1, \"id\": -9223372036854775809}", false},
+
+    // exponents and fractions
+    {"{\"name\": \"a\", \"count\": 1.0}", false},
+    {"{\"name\": \"a\", \"count\": 1.5}", false},
+    {"{\"name\": \"a\", \"count\": 1e3}", false},
+    {"{\"name\": \"a\", \"count\": 1E+3}", false},
+    {"{\"name\": \"a\", \"count\": \"1e3\"}", false},
+    {"{\"name\": \"a\", \"count\": 1, \"id\": 2.0}", false},
+    {"{\"name\": \"a\", \"count\": 1, \"score\": 1e3}", true},
+    {"{\"name\": \"a\", \"count\": 1, \"score\": -1.5E-3}", true},
+    {"{\"name\": \"a\", \"count\": 1, \"score\": \"1e\"}", false},
+    {"{\"name\": \"a\", \"count\": 1, \"score\": \".\"}", false},
+    {"{\"name\": \"a\", \"count\": 1, \"score\": \" 1.5 \"}", true},
+    {"{\"name\": \"a\", \"count\": 1, \"score\": \"NaN\"}", true},
+    {"{\"name\": \"a\", \"count\": 1, \"score\": \"-Infinity\"}", true},
+    {"{\"name\": \"a\", \"count\": 1, \"ratio\": \"1.5f\"}", true},
+    {"{\"name\": \"a\", \"count\": 1, \"ratio\": \"1.5x\"}", false},
+    {"{\"name\": \"a\", \"count\": 1, \"ratio\": 3.4e39}", true},
+
+    // numbers in strings
+    {"{\"name\": 12, \"count\": \"12\"}", true},
+    {"{\"name\": \"a\", \"count\": \" 12\"}", false},
+    {"{\"name\": \"a\", \"count\": \"\"}", false},
+    {"{\"name\": \"a\", \"count\": \"12a\"}", false},
+
+    // field names
+    {"{\"n\\u0061me\": \"a\", \"count\": 1}", true},
+    {"{\"name\": \"a\", \"c\\u006Funt\": 1}", true},
+    {"{\"name\": \"a\", \"co\\\"unt\": 1}", false},
+    {"{\"name\": \"a\", \"count\": 1, \"other\": 1}", false},
+    {"{\"name\": \"a\", \"count\": 1, \"Name\": \"b\"}", false},
+    {"{\"name\": \"a\", \"count\": 1, \"\": 1}", false},
+    {"{\"name\": \"a\\tb\\n\\\"c\\\\\", \"count\": 1}", true},
+    {"{\"name\": \"a\\u00\", \"count\": 1}", false},
+
+    // duplicate keys, the last value counts
+    {"{\"name\": \"a\", \"count\": 1, \"count\": 2}", true},
+    {"{\"name\": \"a\", \"count\": \"x\", \"count\": 2}", true},
+    {"{\"name\": \"a\", \"count\": 1, \"count\": \"x\"}", false},
+    {"{\"name\": \"a\", \"count\": 1, \"id\": 1, \"id\": 1.5}", false},
+
+    // missing fields
+    {"{\"name\": \"a\"}", false},
+    {"{\"count\": 1}", false},
+    {"{}", false},
+    {"{\"name\": \"a\", \"count\": 1, \"id\": 2}", true},
+
+    // trailing garbage and malformed records
+    {"{\"name\": \"a\", \"count\": 1} x", false},
+    {"{\"name\": \"a\", \"count\": 1}}", false},
+    {"{\"name\": \"a\", \"count\": 1} {}", false},
+    {"{\"name\": \"a\", \"count\": 1", false},
+    {"{\"name\": \"a\", \"count\": 1,}", false},
+    {"{\"name\": \"a\" \"count\": 1}", false},
+    {"{\"name\" \"a\", \"count\": 1}", false},
+    {"{\"name\": \"a, \"count\": 1}", false},
+    {"{\"name\": \"a\", \"count\": tru}", false},
+    {"[\"name\", \"count\"]", false},
+    {"\"name\"", false},
+    {"", false},
+
+    // nested values
+    {"{\"name\": {\"first\": \"a\"}, \"count\": 1}", false},
+    {"{\"name\": \"a\", \"count\": {}}", false},
+    {"{\"name\": [\"a\", \"b\"], \"count\": 1}", false},
+    {"{\"name\": [], \"count\": 1}", false},
+    {"{\"name\": \"a\", \"count\": 1, \"id\": [1, 2]}", false},
+  };
+
+  // records that only the lenient parsing of Gson accepts
+  private static final String[] LENIENT_CASES = {
+    "{\"name\": a, \"count\": 1}",
+    "{name: \"a\", \"count\": 1}",
+    "{'name': 'a', 'count': 1}",
+    "{\"name\": \"a\"; \"count\": 1}",
+    "{\"name\": \"a\", \"count\": +1}",
+    "{\"name\": \"a\", \"count\": 007}",
+    "{\"name\": \"a\\x\", \"count\": 1}",
+    "{\"name\": [\"a\"], \"count\": [1]}",
+    "{\"name\": \"a\", \"count\": 1, \"score\": \"0x1p3\"}",
+  };
+
+  @Test
+  public void testEquivalence() {
+    SimpleSchemaMatcher simpleMatcher = new SimpleSchemaMatcher(SCHEMA);
+    CompiledSchemaMatcher compiledMatcher = new CompiledSchemaMatcher(SCHEMA);
+    List<String> failures = new ArrayList<>();
+    for (Object[] testCase : CASES) {
+      String record = (String) testCase[0];
+      boolean expected = (Boolean) testCase[1];
+      boolean simple = simpleMatcher.matches(record);
+      boolean compiled = compiledMatcher.matches(record);
+      if (simple != expected || compiled != expected) {
+        failures.add(String.format("%s: expected %s, simple %s, compiled %s", record, expected, simple, compiled));
+      }
+    }
+    Assert.assertTrue("Matchers disagree with the expected results:\n" + String.join("\n", failures),
+                      failures.isEmpty());
+  }
+
+  @Test
+  public void testLenient() {
+    SimpleSchemaMatcher simpleMatcher = new SimpleSchemaMatcher(SCHEMA);
+    CompiledSchemaMatcher compiledMatcher = new CompiledSchemaMatcher(SCHEMA);
+    for (String record : LENIENT_CASES) {
+      Assert.assertTrue(record, simpleMatcher.matches(record));
+      Assert.assertFalse(record, compiledMatcher.matches(record));
+    }
+  }
+
+  @Test
+  public void testOffset() {
+    CompiledSchemaMatcher matcher = new CompiledSchemaMatcher(SCHEMA);
+    byte[] bytes = "xx{\"name\": \"a\", \"count\": 1}yy".getBytes(StandardCharsets.UTF_8);
+    Assert.assertTrue(matcher.matches(bytes, 2, bytes.length - 4));
+    Assert.assertFalse(matcher.matches(bytes, 2, bytes.length - 3));
+  }
+
+  @Test
+  public void testReuse() {
+    // the state of a previous record must not leak into the next one
+    CompiledSchemaMatcher matcher = new CompiledSchemaMatcher(SCHEMA);
+    Assert.assertTrue(matcher.matches("{\"name\": \"a\", \"count\": 1}"));
+    Assert.assertFalse(matcher.matches("{\"name\": \"a\"}"));
+    Assert.assertFalse(matcher.matches("{\"name\": \"a\", \"count\": \"x\"}"));
+    Assert.assertTrue(matcher.matches("{\"name\": \"a\", \"count\": 1}"));
+  }
+}
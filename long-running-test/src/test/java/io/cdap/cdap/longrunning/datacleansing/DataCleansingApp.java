@@ -18,7 +18,11 @@ package io.cdap.cdap.longrunning.datacleansing;
 
 import io.cdap.cdap.api.dataset.DatasetProperties;
 import io.cdap.cdap.api.dataset.lib.KeyValueTable;
+import io.cdap.cdap.api.dataset.lib.PartitionedFileSet;
+import io.cdap.cdap.api.dataset.lib.PartitionedFileSetProperties;
+import io.cdap.cdap.api.dataset.lib.Partitioning;
 import io.cdap.cdap.api.dataset.table.Table;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
 
 /**
  * DataCleansing Application which extends {@link DataCleansing} to assert using
@@ -34,8 +38,14 @@ public class DataCleansingApp extends DataCleansing {
   public static final String CONSUMING_STATE = "consumingState";
   public static final String TOTAL_RECORDS_TABLE = "totalRecords";
 
+  // outputs of the DataCleansingSpark, which processes the same raw records as the DataCleansingMapReduce
+  public static final String SPARK_CLEAN_RECORDS = "sparkCleanRecords";
+  public static final String SPARK_INVALID_RECORDS = "sparkInvalidRecords";
+
   public static final byte[] CLEAN_RECORD_KEY = {'c'};
   public static final byte[] INVALID_RECORD_KEY = {'i'};
+  public static final byte[] SPARK_CLEAN_RECORD_KEY = {'s', 'c'};
+  public static final byte[] SPARK_INVALID_RECORD_KEY = {'s', 'i'};
 
   @Override
   public void configure() {
@@ -43,5 +53,17 @@ public class DataCleansingApp extends DataCleansing {
     this.addMapReduce(new DataCleansingMapReduce());
     createDataset(TOTAL_RECORDS_TABLE, KeyValueTable.class, DatasetProperties.builder()
       .add(Table.PROPERTY_READLESS_INCREMENT, "true").build());
+
+    addSpark(new DataCleansingSpark());
+    createDataset(SPARK_CLEAN_RECORDS, PartitionedFileSet.class, PartitionedFileSetProperties.builder()
+      .setPartitioning(Partitioning.builder().addLongField("time").addIntField("zip").build())
+      .setOutputFormat(TextOutputFormat.class)
+      .setDescription("Store clean records of the Spark program")
+      .build());
+    createDataset(SPARK_INVALID_RECORDS, PartitionedFileSet.class, PartitionedFileSetProperties.builder()
+      .setPartitioning(Partitioning.builder().addLongField("time").build())
+      .setOutputFormat(TextOutputFormat.class)
+      .setDescription("Store invalid records of the Spark program")
+      .build());
   }
 }
@@ -33,6 +33,7 @@ import io.cdap.cdap.api.dataset.lib.partitioned.PartitionBatchInput;
 import io.cdap.cdap.api.mapreduce.AbstractMapReduce;
 import io.cdap.cdap.api.mapreduce.MapReduceContext;
 import io.cdap.cdap.api.mapreduce.MapReduceTaskContext;
+import io.cdap.cdap.api.metrics.Metrics;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
@@ -40,8 +41,10 @@ import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.Mapper;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A simple MapReduce that reads records from the rawRecords PartitionedFileSet and writes all records
@@ -53,6 +56,13 @@ public class DataCleansingMapReduce extends AbstractMapReduce {
   protected static final String NAME = "DataCleansingMapReduce";
   protected static final String OUTPUT_PARTITION_KEY = "output.partition.key";
   protected static final String SCHEMA_KEY = "schema.key";
+  // if true, the mapper increments the record counters for every record instead of once per task, for benchmarking
+  protected static final String COUNTERS_PER_RECORD_KEY = "counters.per.record";
+  // user metrics of the records mapped by the tasks and of the time spent mapping them, to measure the map throughput,
+  // and of the number of map tasks, to estimate the containers of a run
+  protected static final String MAP_RECORDS_METRIC = "map.records";
+  protected static final String MAP_MICROS_METRIC = "map.micros";
+  protected static final String MAP_TASKS_METRIC = "map.tasks";
 
   private PartitionBatchInput.BatchPartitionCommitter partitionCommitter;
 
@@ -96,6 +106,8 @@ public class DataCleansingMapReduce extends AbstractMapReduce {
     if (schemaJson != null) {
       job.getConfiguration().set(SCHEMA_KEY, schemaJson);
     }
+    job.getConfiguration().setBoolean(COUNTERS_PER_RECORD_KEY,
+                                      Boolean.parseBoolean(context.getRuntimeArguments().get(COUNTERS_PER_RECORD_KEY)));
   }
 
   @Override
@@ -108,25 +120,56 @@ public class DataCleansingMapReduce extends AbstractMapReduce {
    * Partitions the records based upon a runtime argument (time) and a field extracted from the text being written (zip)
    */
   public static final class TimeAndZipPartitioner extends DynamicPartitioner<NullWritable, Text> {
+    // number of partition keys cached, by zip
+    private static final int KEY_CACHE_SIZE = 256;
 
     private Long time;
     private JsonParser jsonParser;
+    private IntFieldScanner zipScanner;
+    // a direct mapped cache of the partition keys of the latest zips, since records have few distinct zips
+    private int[] cachedZips;
+    private PartitionKey[] cachedKeys;
 
     @Override
     public void initialize(MapReduceTaskContext<NullWritable, Text> mapReduceTaskContext) {
       this.time = Long.valueOf(mapReduceTaskContext.getRuntimeArguments().get(OUTPUT_PARTITION_KEY));
       this.jsonParser = new JsonParser();
+      this.zipScanner = new IntFieldScanner("zip");
+      this.cachedZips = new int[KEY_CACHE_SIZE];
+      this.cachedKeys = new PartitionKey[KEY_CACHE_SIZE];
     }
 
     @Override
     public PartitionKey getPartitionKey(NullWritable key, Text value) {
-      int zip = jsonParser.parse(value.toString()).getAsJsonObject().get("zip").getAsInt();
-      return PartitionKey.builder().addLongField("time", time).addIntField("zip", zip).build();
+      int zip = getZip(zipScanner, jsonParser, value.getBytes(), value.getLength());
+      int slot = (zip ^ (zip >>> 16)) & (KEY_CACHE_SIZE - 1);
+      PartitionKey partitionKey = cachedKeys[slot];
+      if (partitionKey == null || cachedZips[slot] != zip) {
+        partitionKey = PartitionKey.builder().addLongField("time", time).addIntField("zip", zip).build();
+        cachedZips[slot] = zip;
+        cachedKeys[slot] = partitionKey;
+      }
+      return partitionKey;
+    }
+
+    /**
+     * Returns the zip of the given UTF-8 record.
+     */
+    static int getZip(IntFieldScanner zipScanner, JsonParser jsonParser, byte[] record, int length) {
+      if (zipScanner.scan(record, 0, length)) {
+        return zipScanner.getValue();
+      }
+      // the record is not a plain flat record, e.g. it has escaped field names
+      String json = new String(record, 0, length, StandardCharsets.UTF_8);
+      return jsonParser.parse(json).getAsJsonObject().get("zip").getAsInt();
     }
   }
 
   /**
-   * A Mapper which skips text that doesn't match a given schema.
+   * A Mapper which skips text that doesn't match a given schema. It counts the clean and invalid records of the task,
+   * and adds them to the total records table when the task finishes. It also emits the number of records it mapped and
+   * the time spent mapping them, including the updates of the totals, so that the map throughput can be measured
+   * without the time to launch the containers.
    */
   public static class SchemaMatchingFilter extends Mapper<LongWritable, Text, NullWritable, Text>
     implements ProgramLifecycle<MapReduceTaskContext<NullWritable, Text>> {
@@ -136,10 +179,16 @@ public class DataCleansingMapReduce extends AbstractMapReduce {
                                                                 Schema.Field.of("dob", Schema.of(Schema.Type.STRING)),
                                                                 Schema.Field.of("zip", Schema.of(Schema.Type.INT)));
 
-    private SimpleSchemaMatcher schemaMatcher;
+    private CompiledSchemaMatcher schemaMatcher;
     @UseDataSet(DataCleansingApp.TOTAL_RECORDS_TABLE)
     private KeyValueTable totalRecords;
     private MapReduceTaskContext<NullWritable, Text> mapReduceTaskContext;
+    private boolean countersPerRecord;
+    private long cleanRecords;
+    private long invalidRecords;
+    private Metrics metrics;
+    private long mappedRecords;
+    private long mapNanos;
 
     @Override
     public void initialize(MapReduceTaskContext<NullWritable, Text> context) throws Exception {
@@ -155,26 +204,55 @@ public class DataCleansingMapReduce extends AbstractMapReduce {
       // deploy the schema to be used by the mapper
       String schemaJson = context.getConfiguration().get(SCHEMA_KEY);
       if (schemaJson == null) {
-        schemaMatcher = new SimpleSchemaMatcher(DEFAULT_SCHEMA);
+        schemaMatcher = new CompiledSchemaMatcher(DEFAULT_SCHEMA);
       } else {
-        schemaMatcher = new SimpleSchemaMatcher(Schema.parseJson(schemaJson));
+        schemaMatcher = new CompiledSchemaMatcher(Schema.parseJson(schemaJson));
       }
+      countersPerRecord = context.getConfiguration().getBoolean(COUNTERS_PER_RECORD_KEY, false);
     }
 
     public void map(LongWritable key, Text data, MapReduceTaskContext<NullWritable, Text> context)
       throws IOException, InterruptedException {
-      if (!schemaMatcher.matches(data.toString())) {
+      long start = System.nanoTime();
+      if (!schemaMatcher.matches(data.getBytes(), 0, data.getLength())) {
         context.write(DataCleansingApp.INVALID_RECORDS, NullWritable.get(), data);
-        totalRecords.increment(DataCleansingApp.INVALID_RECORD_KEY, 1);
+        invalidRecords++;
       } else {
         context.write(DataCleansingApp.CLEAN_RECORDS, NullWritable.get(), data);
-        totalRecords.increment(DataCleansingApp.CLEAN_RECORD_KEY, 1);
+        cleanRecords++;
+      }
+      if (countersPerRecord) {
+        flushCounters();
       }
+      mappedRecords++;
+      mapNanos += System.nanoTime() - start;
     }
 
     @Override
     protected void map(LongWritable key, Text value, Context context) throws IOException, InterruptedException {
       map(key, value, this.mapReduceTaskContext);
     }
+
+    @Override
+    protected void cleanup(Context context) throws IOException, InterruptedException {
+      // the counters are flushed here rather than in destroy(), like in ReadlessApp.CountMapper (CDAP-6099)
+      long start = System.nanoTime();
+      flushCounters();
+      mapNanos += System.nanoTime() - start;
+      metrics.count(MAP_RECORDS_METRIC, (int) Math.min(Integer.MAX_VALUE, mappedRecords));
+      metrics.count(MAP_MICROS_METRIC, (int) Math.min(Integer.MAX_VALUE, TimeUnit.NANOSECONDS.toMicros(mapNanos)));
+      metrics.count(MAP_TASKS_METRIC, 1);
+    }
+
+    private void flushCounters() {
+      if (invalidRecords > 0) {
+        totalRecords.increment(DataCleansingApp.INVALID_RECORD_KEY, invalidRecords);
+        invalidRecords = 0;
+      }
+      if (cleanRecords > 0) {
+        totalRecords.increment(DataCleansingApp.CLEAN_RECORD_KEY, cleanRecords);
+        cleanRecords = 0;
+      }
+    }
   }
 }
@@ -16,8 +16,13 @@
 
 package io.cdap.cdap.longrunning.datacleansing;
 
+import com.google.common.collect.ImmutableSet;
 import io.cdap.cdap.api.Transactional;
+import io.cdap.cdap.api.annotation.TransactionControl;
+import io.cdap.cdap.api.annotation.TransactionPolicy;
 import io.cdap.cdap.api.annotation.UseDataSet;
+import io.cdap.cdap.api.dataset.lib.PartitionDetail;
+import io.cdap.cdap.api.dataset.lib.PartitionFilter;
 import io.cdap.cdap.api.dataset.lib.PartitionKey;
 import io.cdap.cdap.api.dataset.lib.PartitionOutput;
 import io.cdap.cdap.api.dataset.lib.PartitionedFileSet;
@@ -31,12 +36,21 @@ import org.apache.twill.filesystem.Location;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
 
 /**
  * A {@link Service} to write to PartitionedFileSet.
@@ -48,7 +62,7 @@ public class DataCleansingService extends AbstractService {
   @Override
   protected void configure() {
     setName(NAME);
-    setDescription("A service to ingest data into the rawRecords partitioned file set.");
+    setDescription("A service to ingest data into the rawRecords partitioned file set and to verify the output.");
     addHandler(new RecordsHandler());
   }
 
@@ -59,6 +73,9 @@ public class DataCleansingService extends AbstractService {
   public static class RecordsHandler extends AbstractHttpServiceHandler {
 
     private static final Logger LOG = LoggerFactory.getLogger(RecordsHandler.class);
+    private static final Set<String> OUTPUT_DATASETS = ImmutableSet.of(
+      DataCleansing.CLEAN_RECORDS, DataCleansing.INVALID_RECORDS,
+      DataCleansingApp.SPARK_CLEAN_RECORDS, DataCleansingApp.SPARK_INVALID_RECORDS);
 
     @SuppressWarnings("unused")
     @UseDataSet(DataCleansing.RAW_RECORDS)
@@ -107,5 +124,47 @@ public class DataCleansingService extends AbstractService {
         return null;
       }
     }
+
+    /**
+     * Returns the number and the checksum of the records in the partitions of one of the output datasets of the
+     * DataCleansingMapReduce or of the DataCleansingSpark with the given time. The partition files are read outside of
+     * a transaction, since they can be large.
+     */
+    @GET
+    @Path("/records/{dataset}/checksum")
+    @TransactionPolicy(TransactionControl.EXPLICIT)
+    public void checksum(HttpServiceRequest request, HttpServiceResponder responder,
+                         @PathParam("dataset") String datasetName, @QueryParam("time") long time) throws Exception {
+      if (!OUTPUT_DATASETS.contains(datasetName)) {
+        responder.sendError(404, String.format("Unknown dataset '%s'", datasetName));
+        return;
+      }
+      List<Location> partitions = new ArrayList<>();
+      getContext().execute(context -> {
+        PartitionedFileSet dataset = context.getDataset(datasetName);
+        PartitionFilter filter = PartitionFilter.builder().addValueCondition("time", time).build();
+        for (PartitionDetail partition : dataset.getPartitions(filter)) {
+          partitions.add(partition.getLocation());
+        }
+      });
+
+      RecordsChecksum checksum = new RecordsChecksum();
+      for (Location partition : partitions) {
+        for (Location file : partition.list()) {
+          // skip marker files such as _SUCCESS and hidden files such as checksums
+          if (file.getName().startsWith("_") || file.getName().startsWith(".") || file.isDirectory()) {
+            continue;
+          }
+          try (BufferedReader reader = new BufferedReader(new InputStreamReader(file.getInputStream(),
+                                                                                StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+              checksum.add(line);
+            }
+          }
+        }
+      }
+      responder.sendJson(200, checksum);
+    }
   }
 }
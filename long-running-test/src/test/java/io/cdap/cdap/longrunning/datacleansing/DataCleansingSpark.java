@@ -0,0 +1,49 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.longrunning.datacleansing;
+
+import io.cdap.cdap.api.Resources;
+import io.cdap.cdap.api.spark.AbstractSpark;
+import org.apache.spark.SparkConf;
+
+/**
+ * A Spark program that does the same as the {@link DataCleansingMapReduce}, so that both engines can be compared on
+ * the same records. It consumes the partitions of the rawRecords dataset with its own consuming state, and writes to
+ * its own output datasets and record totals.
+ */
+public class DataCleansingSpark extends AbstractSpark {
+  public static final String NAME = "DataCleansingSpark";
+  // runtime argument for the number of executors
+  public static final String EXECUTORS_KEY = "spark.executors";
+  private static final int DEFAULT_EXECUTORS = 2;
+
+  @Override
+  public void configure() {
+    setName(NAME);
+    setDescription("Spark program that segregates clean and invalid records");
+    setMainClass(DataCleansingSparkProgram.class);
+    setDriverResources(new Resources(1024));
+    setExecutorResources(new Resources(1024));
+  }
+
+  @Override
+  protected void initialize() throws Exception {
+    String executors = getContext().getRuntimeArguments().get(EXECUTORS_KEY);
+    getContext().setSparkConf(new SparkConf().set(
+      "spark.executor.instances", executors == null ? Integer.toString(DEFAULT_EXECUTORS) : executors));
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.longrunning.datacleansing;
+
+import com.google.common.collect.Iterators;
+import com.google.gson.JsonParser;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.cdap.api.dataset.lib.KeyValueTable;
+import io.cdap.cdap.api.dataset.lib.PartitionDetail;
+import io.cdap.cdap.api.dataset.lib.PartitionKey;
+import io.cdap.cdap.api.dataset.lib.PartitionedFileSetArguments;
+import io.cdap.cdap.api.dataset.lib.partitioned.KVTableStatePersistor;
+import io.cdap.cdap.api.dataset.lib.partitioned.PartitionConsumer;
+import io.cdap.cdap.api.dataset.lib.partitioned.TransactionalPartitionConsumer;
+import io.cdap.cdap.api.spark.JavaSparkExecutionContext;
+import io.cdap.cdap.api.spark.JavaSparkMain;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.spark.api.java.JavaPairRDD;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import scala.Tuple2;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The main class of the {@link DataCleansingSpark}. It reads the new partitions of the rawRecords dataset, matches
+ * every record against the schema like the {@link DataCleansingMapReduce.SchemaMatchingFilter}, writes the invalid
+ * records to one partition and the clean records to one partition per zip, like the
+ * {@link DataCleansingMapReduce.TimeAndZipPartitioner}, and adds the number of records to the record totals.
+ */
+public class DataCleansingSparkProgram implements JavaSparkMain {
+  private static final Logger LOG = LoggerFactory.getLogger(DataCleansingSparkProgram.class);
+  // the key of the consuming state of the Spark program, separate from the one of the MapReduce
+  private static final String STATE_KEY = "spark.state.key";
+  // timeout of the transaction that writes all outputs, which spans several Spark jobs
+  private static final int OUTPUT_TX_TIMEOUT_SECONDS = 3600;
+
+  @Override
+  public void run(JavaSparkExecutionContext sec) throws Exception {
+    Map<String, String> runtimeArgs = sec.getRuntimeArguments();
+    long time = Long.parseLong(runtimeArgs.get(DataCleansingMapReduce.OUTPUT_PARTITION_KEY));
+    String schemaJson = runtimeArgs.get(DataCleansingMapReduce.SCHEMA_KEY);
+
+    PartitionConsumer partitionConsumer = new TransactionalPartitionConsumer(
+      sec, DataCleansingApp.RAW_RECORDS, new KVTableStatePersistor(DataCleansingApp.CONSUMING_STATE, STATE_KEY));
+    List<PartitionDetail> partitions = partitionConsumer.consumePartitions().getPartitions();
+    LOG.info("Processing {} partitions of {}", partitions.size(), DataCleansingApp.RAW_RECORDS);
+    boolean succeeded = false;
+    try {
+      if (!partitions.isEmpty()) {
+        process(sec, partitions, time, schemaJson);
+      }
+      succeeded = true;
+    } finally {
+      partitionConsumer.onFinish(partitions, succeeded);
+    }
+  }
+
+  private void process(JavaSparkExecutionContext sec, List<PartitionDetail> partitions, long time,
+                       String schemaJson) throws Exception {
+    Map<String, String> inputArgs = new HashMap<>();
+    for (PartitionDetail partition : partitions) {
+      PartitionedFileSetArguments.addInputPartition(inputArgs, partition);
+    }
+    JavaPairRDD<LongWritable, Text> input = sec.fromDataset(DataCleansingApp.RAW_RECORDS, inputArgs);
+
+    // match every record, keyed by whether it is clean, with one matcher per partition since it isn't thread safe
+    JavaPairRDD<Boolean, String> records = input.values().map(Text::toString)
+      .<Boolean, String>mapPartitionsToPair(iterator -> {
+        Schema schema = schemaJson == null
+          ? DataCleansingMapReduce.SchemaMatchingFilter.DEFAULT_SCHEMA : Schema.parseJson(schemaJson);
+        CompiledSchemaMatcher matcher = new CompiledSchemaMatcher(schema);
+        return Iterators.transform(iterator, record -> {
+          byte[] bytes = record.getBytes(StandardCharsets.UTF_8);
+          return new Tuple2<>(matcher.matches(bytes, 0, bytes.length), record);
+        });
+      }).cache();
+
+    // the clean records are written to one partition per zip, with one job per zip, since there are few zips
+    JavaPairRDD<Integer, String> cleanRecords = records.filter(Tuple2::_1).values()
+      .<Integer, String>mapPartitionsToPair(iterator -> {
+        IntFieldScanner zipScanner = new IntFieldScanner("zip");
+        JsonParser jsonParser = new JsonParser();
+        return Iterators.transform(iterator, record -> {
+          byte[] bytes = record.getBytes(StandardCharsets.UTF_8);
+          return new Tuple2<>(DataCleansingMapReduce.TimeAndZipPartitioner.getZip(zipScanner, jsonParser,
+                                                                                   bytes, bytes.length), record);
+        });
+      }).cache();
+    List<Integer> zips = cleanRecords.keys().distinct().collect();
+    Map<Boolean, Long> counts = records.countByKey();
+
+    // all outputs and the totals are written in one transaction, so that either all or none of them are committed,
+    // and the partitions are consumed again if any of them fails
+    sec.execute(OUTPUT_TX_TIMEOUT_SECONDS, context -> {
+      Map<String, String> invalidArgs = new HashMap<>();
+      PartitionedFileSetArguments.setOutputPartitionKey(invalidArgs,
+                                                        PartitionKey.builder().addLongField("time", time).build());
+      sec.saveAsDataset(records.filter(record -> !record._1()).mapToPair(DataCleansingSparkProgram::toOutput),
+                        DataCleansingApp.SPARK_INVALID_RECORDS, invalidArgs);
+      for (int zip : zips) {
+        Map<String, String> cleanArgs = new HashMap<>();
+        PartitionedFileSetArguments.setOutputPartitionKey(
+          cleanArgs, PartitionKey.builder().addLongField("time", time).addIntField("zip", zip).build());
+        sec.saveAsDataset(cleanRecords.filter(record -> record._1() == zip)
+                            .mapToPair(DataCleansingSparkProgram::toOutput),
+                          DataCleansingApp.SPARK_CLEAN_RECORDS, cleanArgs);
+      }
+      KeyValueTable totalRecords = context.getDataset(DataCleansingApp.TOTAL_RECORDS_TABLE);
+      totalRecords.increment(DataCleansingApp.SPARK_CLEAN_RECORD_KEY, counts.getOrDefault(true, 0L));
+      totalRecords.increment(DataCleansingApp.SPARK_INVALID_RECORD_KEY, counts.getOrDefault(false, 0L));
+    });
+    LOG.info("Processed {} clean and {} invalid records",
+             counts.getOrDefault(true, 0L), counts.getOrDefault(false, 0L));
+  }
+
+  /**
+   * Returns the record as an output of the text output format, which only writes the value if the key is null.
+   */
+  private static Tuple2<NullWritable, Text> toOutput(Tuple2<?, String> record) {
+    return new Tuple2<>(NullWritable.get(), new Text(record._2()));
+  }
+}
@@ -16,48 +16,63 @@
 
 package io.cdap.cdap.longrunning.datacleansing;
 
-import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.util.concurrent.ListenableFuture;
 import com.google.gson.Gson;
 import io.cdap.cdap.api.common.Bytes;
 import io.cdap.cdap.api.dataset.lib.KeyValueTable;
-import io.cdap.cdap.client.QueryClient;
 import io.cdap.cdap.common.UnauthenticatedException;
-import io.cdap.cdap.explore.client.ExploreExecutionResult;
+import io.cdap.cdap.common.conf.Constants;
+import io.cdap.cdap.proto.ApplicationDetail;
+import io.cdap.cdap.proto.ProgramRecord;
 import io.cdap.cdap.proto.ProgramRunStatus;
-import io.cdap.cdap.proto.QueryResult;
 import io.cdap.cdap.proto.RunRecord;
 import io.cdap.cdap.proto.id.DatasetId;
 import io.cdap.cdap.security.spi.authorization.UnauthorizedException;
 import io.cdap.cdap.test.ApplicationManager;
 import io.cdap.cdap.test.LongRunningTestBase;
 import io.cdap.cdap.test.ServiceManager;
+import io.cdap.cdap.test.SparkManager;
 import io.cdap.common.http.HttpRequest;
 import io.cdap.common.http.HttpResponse;
 import org.junit.Assert;
 
 import java.io.IOException;
 import java.net.URL;
-import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import javax.annotation.Nullable;
 
 /**
  * Data Cleansing long running test
  */
 public class DataCleansingTest extends LongRunningTestBase<DataCleansingTestState> {
-  private static final int CLEAN_RECORDS_PER_BATCH = 70;
-  private static final int INVALID_RECORDS_PER_BATCH = 30;
+  // records are generated while they are uploaded, so that batches can have millions of records
+  private static final long CLEAN_RECORDS_PER_BATCH = Long.getLong("longrunning.datacleansing.clean.records", 70L);
+  private static final long INVALID_RECORDS_PER_BATCH =
+    Long.getLong("longrunning.datacleansing.invalid.records", 30L);
+  private static final long MAPREDUCE_TIMEOUT_MINUTES =
+    Long.getLong("longrunning.datacleansing.mapreduce.timeout.minutes", 5L);
+  // whether the mapper updates the record counters for every record, to compare the map throughput with the default
+  private static final boolean COUNTERS_PER_RECORD =
+    Boolean.getBoolean("longrunning.datacleansing.counters.per.record");
+  // whether the DataCleansingSpark also processes every batch, to compare its output and throughput with the MapReduce
+  private static final boolean SPARK = Boolean.getBoolean("longrunning.datacleansing.spark");
+  private static final int SPARK_EXECUTORS = Integer.getInteger("longrunning.datacleansing.spark.executors", 2);
 
   private static final String DATACLEANSING_MAPREDUCE_NAME = "DataCleansingMapReduce";
   private static final String DATACLEANSING_NAME = "DataCleansing";
   private static final String OUTPUT_PARTITION_KEY = "output.partition.key";
   private static final String SCHEMA_KEY = "schema.key";
+  private static final String COUNTERS_PER_RECORD_KEY = "counters.per.record";
   private static final String SCHEMAJSON = DataCleansingMapReduce.SchemaMatchingFilter.DEFAULT_SCHEMA.toString();
 
   private static final String CLEAN_RECORDS_DATASET = "cleanRecords";
   private static final String INVALID_RECORDS_DATASET = "invalidRecords";
+  private static final String SPARK_CLEAN_RECORDS_DATASET = "sparkCleanRecords";
+  private static final String SPARK_INVALID_RECORDS_DATASET = "sparkInvalidRecords";
 
   private static final Gson GSON = new Gson();
 
@@ -69,7 +84,7 @@ public class DataCleansingTest extends LongRunningTestBase<DataCleansingTestStat
   @Override
   public void start() throws Exception {
     ServiceManager serviceManager = getApplicationManager().getServiceManager(DataCleansingService.NAME).start();
-    serviceManager.waitForRun(ProgramRunStatus.RUNNING, 5, TimeUnit.SECONDS);
+    waitForRun(serviceManager, ProgramRunStatus.RUNNING, 5, TimeUnit.SECONDS);
     // wait for it to be available
     serviceManager.getServiceURL(PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
   }
@@ -78,7 +93,7 @@ public class DataCleansingTest extends LongRunningTestBase<DataCleansingTestStat
   public void stop() throws Exception {
     ServiceManager serviceManager = getApplicationManager().getServiceManager(DataCleansingService.NAME);
     serviceManager.stop();
-    serviceManager.waitForRun(ProgramRunStatus.KILLED, 5, TimeUnit.SECONDS);
+    waitForRun(serviceManager, ProgramRunStatus.KILLED, 5, TimeUnit.SECONDS);
   }
 
   @Override
@@ -98,7 +113,7 @@ public class DataCleansingTest extends LongRunningTestBase<DataCleansingTestStat
     Assert.assertEquals(state.getEndInvalidRecordPid(), getTotalRecords(true) + getTotalRecords(false));
 
     // verify segregated records
-    Assert.assertTrue(verifyRecordsWithExplore(state));
+    Assert.assertTrue(verifyRecords(state));
     return state;
   }
 
@@ -108,6 +123,9 @@ public class DataCleansingTest extends LongRunningTestBase<DataCleansingTestStat
 
   @Override
   public DataCleansingTestState runOperations(DataCleansingTestState state) throws Exception {
+    if (SPARK) {
+      deploySparkIfMissing();
+    }
     ApplicationManager applicationManager = getApplicationManager();
     ServiceManager serviceManager = applicationManager.getServiceManager(DataCleansingService.NAME);
     URL serviceURL = serviceManager.getServiceURL(PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
@@ -117,12 +135,24 @@ public class DataCleansingTest extends LongRunningTestBase<DataCleansingTestStat
     createPartition(serviceURL, state);
     long now = System.currentTimeMillis();
     ImmutableMap<String, String> args = ImmutableMap.of(OUTPUT_PARTITION_KEY, Long.toString(now),
-                                                        SCHEMA_KEY, SCHEMAJSON);
+                                                        SCHEMA_KEY, SCHEMAJSON,
+                                                        COUNTERS_PER_RECORD_KEY, Boolean.toString(COUNTERS_PER_RECORD));
     List<RunRecord> history = applicationManager.getMapReduceManager(DATACLEANSING_MAPREDUCE_NAME).getHistory();
     applicationManager.getMapReduceManager(DATACLEANSING_MAPREDUCE_NAME).start(args);
     applicationManager.getMapReduceManager(DATACLEANSING_MAPREDUCE_NAME).waitForRuns(ProgramRunStatus.COMPLETED,
                                                                                      history.size() + 1,
-                                                                                     5, TimeUnit.MINUTES);
+                                                                                     MAPREDUCE_TIMEOUT_MINUTES,
+                                                                                     TimeUnit.MINUTES);
+    // runs with counters per record are kept apart in the performance history, so that both can be compared
+    String runName = COUNTERS_PER_RECORD ? DATACLEANSING_MAPREDUCE_NAME + ".countersPerRecord"
+      : DATACLEANSING_MAPREDUCE_NAME;
+    recordProgramRuns(runName, applicationManager.getMapReduceManager(DATACLEANSING_MAPREDUCE_NAME));
+    recordMapThroughput(runName, applicationManager.getMapReduceManager(DATACLEANSING_MAPREDUCE_NAME).getHistory(
+      ProgramRunStatus.COMPLETED));
+    if (SPARK) {
+      checkNotCancelled();
+      runSpark(applicationManager, serviceURL, args, now);
+    }
 
     return new DataCleansingTestState(now, state.getEndInvalidRecordPid() + 1,
                                       state.getEndInvalidRecordPid() + CLEAN_RECORDS_PER_BATCH,
@@ -131,71 +161,204 @@ public class DataCleansingTest extends LongRunningTestBase<DataCleansingTestStat
                                       INVALID_RECORDS_PER_BATCH);
   }
 
-  private void createPartition(URL serviceUrl, DataCleansingTestState state)
-    throws IOException, UnauthenticatedException, UnauthorizedException {
-    URL url = new URL(serviceUrl, "v1/records/raw");
-    List<String> records = new ArrayList<>();
-    generateRecords(records, state.getEndInvalidRecordPid() + 1, false);
-    generateRecords(records, state.getEndInvalidRecordPid() + CLEAN_RECORDS_PER_BATCH + 1, true);
-    String body = Joiner.on("\n").join(records) + "\n";
-    HttpRequest request = HttpRequest.post(url).withBody(body).build();
-    HttpResponse response = getRestClient().execute(request, getClientConfig().getAccessToken());
-    Assert.assertEquals(200, response.getResponseCode());
+  /**
+   * Redeploys the app if it was deployed before it had the DataCleansingSpark and its datasets, since the app is only
+   * deployed by the first run of the test.
+   */
+  private void deploySparkIfMissing() throws Exception {
+    ApplicationDetail detail = getApplicationClient().get(getLongRunningNamespace().app(DATACLEANSING_NAME));
+    for (ProgramRecord program : detail.getPrograms()) {
+      if (DataCleansingSpark.NAME.equals(program.getName())) {
+        return;
+      }
+    }
+    LOG.info("Redeploying {} to add {}", DATACLEANSING_NAME, DataCleansingSpark.NAME);
+    stop();
+    deploy();
+    start();
+  }
+
+  /**
+   * Runs the DataCleansingSpark on the partition that the MapReduce just processed, and verifies that it wrote the same
+   * clean and invalid records. Logs the throughput of both programs over the whole run, and an estimate of their
+   * container-seconds, which is the duration of the run times the number of containers: the application master and the
+   * map tasks that the MapReduce run reported in its metrics, and the driver and the requested executors of the Spark
+   * program. It is an upper bound, since not all containers run for the whole run.
+   */
+  private void runSpark(ApplicationManager applicationManager, URL serviceURL,
+                        Map<String, String> mapReduceArgs, long time) throws Exception {
+    long processedBefore = getTotalRecords(DataCleansingApp.SPARK_CLEAN_RECORD_KEY)
+      + getTotalRecords(DataCleansingApp.SPARK_INVALID_RECORD_KEY);
+    Map<String, String> args = new HashMap<>(mapReduceArgs);
+    args.put(DataCleansingSpark.EXECUTORS_KEY, Integer.toString(SPARK_EXECUTORS));
+    SparkManager sparkManager = applicationManager.getSparkManager(DataCleansingSpark.NAME);
+    List<RunRecord> history = sparkManager.getHistory();
+    sparkManager.start(args);
+    sparkManager.waitForRuns(ProgramRunStatus.COMPLETED, history.size() + 1,
+                             MAPREDUCE_TIMEOUT_MINUTES, TimeUnit.MINUTES);
+    recordProgramRuns(DataCleansingSpark.NAME, sparkManager);
+
+    long batchSize = CLEAN_RECORDS_PER_BATCH + INVALID_RECORDS_PER_BATCH;
+    long processed = getTotalRecords(DataCleansingApp.SPARK_CLEAN_RECORD_KEY)
+      + getTotalRecords(DataCleansingApp.SPARK_INVALID_RECORD_KEY) - processedBefore;
+    if (processed != batchSize) {
+      // the first run after the Spark program is enabled also consumes the partitions of all the previous batches
+      LOG.warn("{} processed {} records instead of the {} records of the batch, not comparing it with {}",
+               DataCleansingSpark.NAME, processed, batchSize, DATACLEANSING_MAPREDUCE_NAME);
+      return;
+    }
+    Assert.assertEquals(getChecksum(serviceURL, CLEAN_RECORDS_DATASET, time),
+                        getChecksum(serviceURL, SPARK_CLEAN_RECORDS_DATASET, time));
+    Assert.assertEquals(getChecksum(serviceURL, INVALID_RECORDS_DATASET, time),
+                        getChecksum(serviceURL, SPARK_INVALID_RECORDS_DATASET, time));
+
+    List<RunRecord> mapReduceRuns =
+      applicationManager.getMapReduceManager(DATACLEANSING_MAPREDUCE_NAME).getHistory(ProgramRunStatus.COMPLETED);
+    long mapReduceSeconds = getLatestRunSeconds(mapReduceRuns);
+    long mapTasks = getMetricValue(getMapReduceRunTags(getLatestRun(mapReduceRuns)),
+                                   "user." + DataCleansingMapReduce.MAP_TASKS_METRIC);
+    if (mapTasks == 0) {
+      LOG.warn("The map tasks of {} are not reported, estimating its container-seconds with one map task",
+               DATACLEANSING_MAPREDUCE_NAME);
+      mapTasks = 1;
+    }
+    long sparkSeconds = getLatestRunSeconds(sparkManager.getHistory(ProgramRunStatus.COMPLETED));
+    LOG.info("{} processed {} records in {} s, {} records per second, at most {} container-seconds with {} map tasks; "
+               + "{} processed the same records in {} s, {} records per second, at most {} container-seconds with {} "
+               + "executors",
+             DATACLEANSING_MAPREDUCE_NAME, batchSize, mapReduceSeconds,
+             String.format("%.1f", batchSize / (double) mapReduceSeconds), (1 + mapTasks) * mapReduceSeconds, mapTasks,
+             DataCleansingSpark.NAME, sparkSeconds, String.format("%.1f", batchSize / (double) sparkSeconds),
+             (1 + SPARK_EXECUTORS) * sparkSeconds, SPARK_EXECUTORS);
+  }
+
+  /**
+   * Logs and records the number of records per second mapped by the latest run of the MapReduce, from the records and
+   * the time spent in the mappers that its tasks emit as metrics, so that the time to launch the containers is not
+   * part of it.
+   */
+  private void recordMapThroughput(String runName, List<RunRecord> runs) throws Exception {
+    RunRecord latest = getLatestRun(runs);
+    if (latest == null) {
+      return;
+    }
+    Map<String, String> tags = getMapReduceRunTags(latest);
+    long batchSize = CLEAN_RECORDS_PER_BATCH + INVALID_RECORDS_PER_BATCH;
+    try {
+      // the metrics of the tasks are aggregated asynchronously, after the run completed
+      checkMetricAtLeast(tags, "user." + DataCleansingMapReduce.MAP_RECORDS_METRIC, batchSize, 60);
+    } catch (TimeoutException e) {
+      LOG.warn("The mappers of {} run {} did not report the {} records of the batch, not recording the map throughput",
+               DATACLEANSING_MAPREDUCE_NAME, latest.getPid(), batchSize);
+      return;
+    }
+    long records = getMetricValue(tags, "user." + DataCleansingMapReduce.MAP_RECORDS_METRIC);
+    long micros = Math.max(1, getMetricValue(tags, "user." + DataCleansingMapReduce.MAP_MICROS_METRIC));
+    double perSecond = records * 1000000d / micros;
+    LOG.info("{} mapped {} records in {} ms of mapper time, {} records per second, with counters updated {}",
+             DATACLEANSING_MAPREDUCE_NAME, records, TimeUnit.MICROSECONDS.toMillis(micros), Math.round(perSecond),
+             COUNTERS_PER_RECORD ? "per record" : "per task");
+    recordThroughput(runName + ".map", perSecond);
+  }
+
+  /**
+   * Returns the metrics tags of the given run of the MapReduce.
+   */
+  private Map<String, String> getMapReduceRunTags(RunRecord run) {
+    return ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, getLongRunningNamespace().getNamespace(),
+                           Constants.Metrics.Tag.APP, DATACLEANSING_NAME,
+                           Constants.Metrics.Tag.MAPREDUCE, DATACLEANSING_MAPREDUCE_NAME,
+                           Constants.Metrics.Tag.RUN_ID, run.getPid());
   }
 
-  private void generateRecords(List<String> records, long start, boolean invalid) {
-    long numRecords = invalid ? INVALID_RECORDS_PER_BATCH : CLEAN_RECORDS_PER_BATCH;
-    for (long i = start; i < (start + numRecords); i++) {
-      records.add(getRecord(i, invalid));
+  /**
+   * Returns the duration in seconds of the latest of the given runs, at least one second, or 0 if there is none.
+   */
+  private static long getLatestRunSeconds(List<RunRecord> runs) {
+    RunRecord latest = getLatestRun(runs);
+    if (latest == null || latest.getStopTs() == null) {
+      return 0;
+    }
+    return Math.max(1, latest.getStopTs() - latest.getStartTs());
+  }
+
+  @Nullable
+  private static RunRecord getLatestRun(List<RunRecord> runs) {
+    RunRecord latest = null;
+    for (RunRecord run : runs) {
+      if (latest == null || run.getStartTs() > latest.getStartTs()) {
+        latest = run;
+      }
     }
+    return latest;
   }
 
-  private String getRecord(long index, boolean invalid) {
-    String zip = invalid ? "84125q" : "84125";
-    return GSON.toJson(new Person(index, "bob", "02-12-1983", zip));
+  private void createPartition(URL serviceUrl, DataCleansingTestState state)
+    throws IOException, UnauthenticatedException, UnauthorizedException {
+    URL url = new URL(serviceUrl, "v1/records/raw");
+    long firstPid = state.getEndInvalidRecordPid() + 1;
+    // without a body length, the request is sent with chunked transfer encoding
+    HttpRequest request = HttpRequest.post(url)
+      .withBody(() -> new RecordsInputStream(firstPid, CLEAN_RECORDS_PER_BATCH, INVALID_RECORDS_PER_BATCH))
+      .build();
+    HttpResponse response = getRestClient().execute(request, getClientConfig().getAccessToken());
+    Assert.assertEquals(200, response.getResponseCode());
   }
 
   // pass true to get the number of invalid records; pass false to get the number of valid records processed.
   private long getTotalRecords(boolean invalid) throws Exception {
+    return getTotalRecords(invalid ? DataCleansingApp.INVALID_RECORD_KEY : DataCleansingApp.CLEAN_RECORD_KEY);
+  }
+
+  private long getTotalRecords(byte[] recordKey) throws Exception {
     DatasetId totalRecordsTableId = getLongRunningNamespace().dataset(DataCleansingApp.TOTAL_RECORDS_TABLE);
     KeyValueTable totalRecordsTable = getKVTableDataset(totalRecordsTableId).get();
-    byte[] recordKey = invalid ? DataCleansingApp.INVALID_RECORD_KEY : DataCleansingApp.CLEAN_RECORD_KEY;
     return readLong(totalRecordsTable.read(recordKey));
   }
 
-  // TODO: Use service instead of explore as Explore is slower
-  private boolean verifyRecordsWithExplore(DataCleansingTestState state) throws Exception {
-    QueryClient queryClient = new QueryClient(getClientConfig());
-    String cleanRecordsQuery = "SELECT * FROM dataset_" + CLEAN_RECORDS_DATASET + " where TIME = "
-      + state.getTimestamp();
-    String invalidRecordsQuery = "SELECT * FROM dataset_" + INVALID_RECORDS_DATASET + " where TIME = "
-      + state.getTimestamp();
-
-    // Reduce wait time by submitting both the queries
-    ListenableFuture<ExploreExecutionResult> cleanRecordsExecute =
-      queryClient.execute(getLongRunningNamespace(), cleanRecordsQuery);
-    ListenableFuture<ExploreExecutionResult> invalidRecordsExecute =
-      queryClient.execute(getLongRunningNamespace(), invalidRecordsQuery);
-    ExploreExecutionResult cleanRecordsResult = cleanRecordsExecute.get();
-    ExploreExecutionResult invalidRecordsResult = invalidRecordsExecute.get();
-
-    return (verifyResults(cleanRecordsResult, state.getStartCleanRecordPid(), false) &&
-      verifyResults(invalidRecordsResult, state.getStartInvalidRecordPid(), true));
-  }
-
-  private boolean verifyResults(ExploreExecutionResult result, long index, boolean invalid) {
-    while (result.hasNext()) {
-      QueryResult next = result.next();
-      List<Object> columns = next.getColumns();
-      String expectedRecord = getRecord(index, invalid);
-      if (!expectedRecord.equalsIgnoreCase((String) columns.get(0))) {
-        return false;
-      }
-      index++;
+  /**
+   * Verifies the records of the last batch in the cleanRecords and invalidRecords datasets, by comparing their number
+   * and checksum, as computed by the {@link DataCleansingService}, to the ones of the records that were written.
+   */
+  private boolean verifyRecords(DataCleansingTestState state) throws Exception {
+    if (state.getTimestamp() == 0) {
+      // no batch was written yet
+      return true;
+    }
+    URL serviceURL = getApplicationManager().getServiceManager(DataCleansingService.NAME)
+      .getServiceURL(PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    return verifyRecords(serviceURL, CLEAN_RECORDS_DATASET, state.getTimestamp(),
+                         state.getStartCleanRecordPid(), state.getEndCleanRecordPid(), false)
+      && verifyRecords(serviceURL, INVALID_RECORDS_DATASET, state.getTimestamp(),
+                       state.getStartInvalidRecordPid(), state.getEndInvalidRecordPid(), true);
+  }
+
+  private boolean verifyRecords(URL serviceURL, String dataset, long timestamp,
+                                long startPid, long endPid, boolean invalid) throws Exception {
+    RecordsChecksum expected = new RecordsChecksum();
+    for (long pid = startPid; pid <= endPid; pid++) {
+      expected.add(RecordsInputStream.getRecord(pid, invalid));
+    }
+    RecordsChecksum actual = getChecksum(serviceURL, dataset, timestamp);
+    if (!expected.equals(actual)) {
+      LOG.error("Records of dataset {} with time {} don't match: expected {}, got {}",
+                dataset, timestamp, expected, actual);
+      return false;
     }
     return true;
   }
 
+  /**
+   * Returns the number and the checksum of the records of the given output dataset with the given time.
+   */
+  private RecordsChecksum getChecksum(URL serviceURL, String dataset, long timestamp) throws Exception {
+    URL url = new URL(serviceURL, String.format("v1/records/%s/checksum?time=%d", dataset, timestamp));
+    HttpResponse response = getRestClient().execute(HttpRequest.get(url).build(),
+                                                    getClientConfig().getAccessToken());
+    Assert.assertEquals(200, response.getResponseCode());
+    return GSON.fromJson(response.getResponseBodyAsString(), RecordsChecksum.class);
+  }
+
   private long readLong(byte[] bytes) {
     return bytes == null ? 0 : Bytes.toLong(bytes);
   }
@@ -0,0 +1,205 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.longrunning.datacleansing;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Extracts the int value of a field from the UTF-8 bytes of a flat JSON object, without decoding the record or
+ * allocating any objects. The value can be a JSON number or a string that contains an int. Records that can't be
+ * scanned this way, e.g. because of nested values, escaped field names or a value that is not a plain int, are
+ * reported as not found, so that the caller can fall back to a full JSON parser.
+ *
+ * Instances are not thread safe.
+ */
+final class IntFieldScanner {
+  private final byte[] name;
+
+  // the record being scanned
+  private byte[] data;
+  private int position;
+  private int end;
+  private int value;
+
+  IntFieldScanner(String fieldName) {
+    this.name = fieldName.getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Scans the given record for the field. Returns true if it was found, in which case its value is returned by
+   * {@link #getValue()}.
+   */
+  boolean scan(byte[] data, int offset, int length) {
+    this.data = data;
+    this.position = offset;
+    this.end = offset + length;
+    try {
+      return scanObject();
+    } finally {
+      this.data = null;
+    }
+  }
+
+  /**
+   * Returns the value of the field found by the last successful {@link #scan(byte[], int, int)}.
+   */
+  int getValue() {
+    return value;
+  }
+
+  private boolean scanObject() {
+    skipWhitespace();
+    if (!consume('{')) {
+      return false;
+    }
+    // like in a JSON object, the last value of a field that appears several times is the one that counts
+    boolean found = false;
+    do {
+      skipWhitespace();
+      int nameMatch = scanFieldName();
+      skipWhitespace();
+      if (nameMatch < 0 || !consume(':')) {
+        return false;
+      }
+      skipWhitespace();
+      if (nameMatch > 0) {
+        if (!scanValue()) {
+          return false;
+        }
+        found = true;
+      } else if (!skipValue()) {
+        return false;
+      }
+      skipWhitespace();
+    } while (consume(','));
+    return found && consume('}');
+  }
+
+  /**
+   * Reads a field name, and returns 1 if it is the name of the field, 0 if it is another name, or -1 if it can't be
+   * compared without decoding.
+   */
+  private int scanFieldName() {
+    if (!consume('"')) {
+      return -1;
+    }
+    int start = position;
+    while (position < end) {
+      byte b = data[position++];
+      if (b == '\\') {
+        return -1;
+      }
+      if (b == '"') {
+        return equalsName(start, position - 1) ? 1 : 0;
+      }
+    }
+    return -1;
+  }
+
+  private boolean equalsName(int start, int end) {
+    if (end - start != name.length) {
+      return false;
+    }
+    for (int i = 0; i < name.length; i++) {
+      if (data[start + i] != name[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Parses the value of the field as an int, like {@link Integer#parseInt(String)}.
+   */
+  private boolean scanValue() {
+    boolean quoted = consume('"');
+    boolean negative = false;
+    if (position < end && (data[position] == '-' || data[position] == '+')) {
+      negative = data[position] == '-';
+      position++;
+    }
+    // accumulate negatively, like Integer.parseInt, so that the minimum value doesn't overflow
+    int limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+    int multiplyMin = limit / 10;
+    int result = 0;
+    int digits = 0;
+    while (position < end && data[position] >= '0' && data[position] <= '9') {
+      int digit = data[position++] - '0';
+      if (result < multiplyMin || result * 10 < limit + digit) {
+        return false;
+      }
+      result = result * 10 - digit;
+      digits++;
+    }
+    if (digits == 0 || (quoted && !consume('"'))) {
+      return false;
+    }
+    // a number must end here, e.g. it must not have a fraction
+    skipWhitespace();
+    if (position == end || (data[position] != ',' && data[position] != '}')) {
+      return false;
+    }
+    value = negative ? result : -result;
+    return true;
+  }
+
+  /**
+   * Skips a string, number or literal value. Returns false for nested values or malformed strings.
+   */
+  private boolean skipValue() {
+    if (consume('"')) {
+      while (position < end) {
+        byte b = data[position++];
+        if (b == '\\') {
+          position++;
+        } else if (b == '"') {
+          return true;
+        }
+      }
+      return false;
+    }
+    while (position < end) {
+      byte b = data[position];
+      if (b == '{' || b == '[' || b == '"') {
+        return false;
+      }
+      if (b == ',' || b == '}') {
+        return true;
+      }
+      position++;
+    }
+    return false;
+  }
+
+  private boolean consume(char c) {
+    if (position < end && data[position] == c) {
+      position++;
+      return true;
+    }
+    return false;
+  }
+
+  private void skipWhitespace() {
+    while (position < end) {
+      byte b = data[position];
+      if (b != ' ' && b != '\t' && b != '\n' && b != '\r') {
+        return;
+      }
+      position++;
+    }
+  }
+}
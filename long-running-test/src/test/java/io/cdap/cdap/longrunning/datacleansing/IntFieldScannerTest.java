@@ -0,0 +1,160 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.cdap.longrunning.datacleansing;
+
+import com.google.gson.JsonParser;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Tests that {@link IntFieldScanner} finds the int value of a field in the records it can scan, reports the other
+ * records as not found, and that {@link DataCleansingMapReduce.TimeAndZipPartitioner#getZip} gives the same zip as
+ * Gson for both.
+ */
+public class IntFieldScannerTest {
+
+  // records with the value the scanner must find
+  private static final Object[][] FOUND = {
+    {"{\"zip\":12345}", 12345},
+    {"{\"zip\":\"12345\"}", 12345},
+    {" { \"pid\" : 1 , \"zip\" : 7 } ", 7},
+    {"{\"pid\": 1, \"name\": \"a\", \"dob\": \"2000-01-01\", \"zip\": 94105}", 94105},
+    {"{\"zip\": 0}", 0},
+    {"{\"zip\": -5}", -5},
+    {"{\"zip\": \"-5\"}", -5},
+    {"{\"zip\": 2147483647}", Integer.MAX_VALUE},
+    {"{\"zip\": -2147483648}", Integer.MIN_VALUE},
+    {"{\"zip\": \"-2147483648\"}", Integer.MIN_VALUE},
+    // escaped characters in the values of other fields
+    {"{\"name\": \"a\\\"b\\\\\", \"zip\": 5}", 5},
+    {"{\"name\": \"{[\", \"zip\": 5}", 5},
+    // literals and other numbers before the field
+    {"{\"a\": null, \"b\": true, \"c\": 1.5e3, \"zip\": 5}", 5},
+    // like in a JSON object, the last value of a duplicate field counts
+    {"{\"zip\": 1, \"zip\": 2}", 2},
+    {"{\"zip\": 1, \"pid\": 3, \"zip\": 2}", 2},
+  };
+
+  // records the scanner must report as not found, so that the caller falls back to a JSON parser
+  private static final String[] NOT_FOUND = {
+    "{}",
+    "{\"pid\": 1}",
+    "",
+    "[1]",
+    "{\"zip\": }",
+    "{\"zip\": 5",
+    "{\"zip\" 5}",
+    // overflow
+    "{\"zip\": 2147483648}",
+    "{\"zip\": -2147483649}",
+    "{\"zip\": \"2147483648\"}",
+    "{\"zip\": 99999999999}",
+    // not a plain int
+    "{\"zip\": 1.5}",
+    "{\"zip\": 1e3}",
+    "{\"zip\": \"12a\"}",
+    "{\"zip\": \"\"}",
+    "{\"zip\": \"-\"}",
+    "{\"zip\": true}",
+    "{\"zip\": null}",
+    "{\"zip\": [1]}",
+    "{\"zip\": {\"a\": 1}}",
+    // nested values before or after the field
+    "{\"a\": {\"zip\": 1}, \"zip\": 2}",
+    "{\"a\": [1, 2], \"zip\": 2}",
+    "{\"zip\": 2, \"a\": {}}",
+    // escaped field names
+    "{\"z\\u0069p\": 5}",
+    "{\"a\\\"b\": 1, \"zip\": 5}",
+    "{\"zip\\\\\": 5}",
+  };
+
+  // records the scanner can't scan, with the zip that getZip must find with its Gson fallback
+  private static final Object[][] FALLBACK = {
+    {"{\"z\\u0069p\": 5}", 5},
+    {"{\"a\\\"b\": 1, \"zip\": 6}", 6},
+    {"{\"a\": {\"zip\": 1}, \"zip\": 2}", 2},
+    {"{\"a\": [1, 2], \"zip\": 3}", 3},
+    {"{\"zip\": 4, \"a\": {}}", 4},
+    {"{\"zip\": 1, \"a\": [], \"zip\": 7}", 7},
+  };
+
+  @Test
+  public void testFound() {
+    IntFieldScanner scanner = new IntFieldScanner("zip");
+    for (Object[] testCase : FOUND) {
+      String record = (String) testCase[0];
+      byte[] bytes = record.getBytes(StandardCharsets.UTF_8);
+      Assert.assertTrue(record, scanner.scan(bytes, 0, bytes.length));
+      Assert.assertEquals(record, testCase[1], scanner.getValue());
+    }
+  }
+
+  @Test
+  public void testNotFound() {
+    IntFieldScanner scanner = new IntFieldScanner("zip");
+    for (String record : NOT_FOUND) {
+      byte[] bytes = record.getBytes(StandardCharsets.UTF_8);
+      Assert.assertFalse(record, scanner.scan(bytes, 0, bytes.length));
+    }
+  }
+
+  @Test
+  public void testOffset() {
+    // the record is in the middle of a larger buffer, like the bytes of a reused Text
+    IntFieldScanner scanner = new IntFieldScanner("zip");
+    byte[] record = "{\"zip\": 42}".getBytes(StandardCharsets.UTF_8);
+    byte[] buffer = new byte[record.length + 10];
+    Arrays.fill(buffer, (byte) '9');
+    System.arraycopy(record, 0, buffer, 3, record.length);
+    Assert.assertTrue(scanner.scan(buffer, 3, record.length));
+    Assert.assertEquals(42, scanner.getValue());
+    Assert.assertFalse(scanner.scan(buffer, 3, record.length - 1));
+  }
+
+  @Test
+  public void testGetZip() {
+    IntFieldScanner scanner = new IntFieldScanner("zip");
+    JsonParser jsonParser = new JsonParser();
+    for (Object[] testCase : FOUND) {
+      assertZip(scanner, jsonParser, (String) testCase[0], (Integer) testCase[1]);
+    }
+    for (Object[] testCase : FALLBACK) {
+      String record = (String) testCase[0];
+      byte[] bytes = record.getBytes(StandardCharsets.UTF_8);
+      Assert.assertFalse(record, scanner.scan(bytes, 0, bytes.length));
+      assertZip(scanner, jsonParser, record, (Integer) testCase[1]);
+    }
+  }
+
+  /**
+   * Asserts that getZip and Gson both find the given zip in the given record, which is followed by garbage in the
+   * buffer given to getZip.
+   */
+  private void assertZip(IntFieldScanner scanner, JsonParser jsonParser, String record, int zip) {
+    Assert.assertEquals(record, zip, jsonParser.parse(record).getAsJsonObject().get("zip").getAsInt());
+    int length = record.getBytes(StandardCharsets.UTF_8).length;
+    byte[] bytes = Arrays.copyOf(record.getBytes(StandardCharsets.UTF_8), length + 8);
+    Arrays.fill(bytes, length, bytes.length, (byte) '}');
+    Assert.assertEquals(record, zip,
+                        DataCleansingMapReduce.TimeAndZipPartitioner.getZip(scanner, jsonParser, bytes, length));
+  }
+}
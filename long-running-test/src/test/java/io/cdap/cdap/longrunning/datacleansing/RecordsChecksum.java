@@ -0,0 +1,87 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.longrunning.datacleansing;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The number of records and an order independent checksum of them, so that two sets of records can be compared
+ * without sorting them or keeping them in memory. The checksum is the sum of a 64 bit hash of every record.
+ */
+public final class RecordsChecksum {
+  private long count;
+  private long checksum;
+
+  /**
+   * Adds a record, which is one line of a partition file.
+   */
+  public void add(String record) {
+    count++;
+    checksum += hash(record);
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  public long getChecksum() {
+    return checksum;
+  }
+
+  /**
+   * Returns the 64 bit FNV-1a hash of the record, followed by the finalizer of MurmurHash3, so that records that only
+   * differ slightly have unrelated hashes.
+   */
+  private static long hash(String record) {
+    long hash = 0xcbf29ce484222325L;
+    for (byte b : record.getBytes(StandardCharsets.UTF_8)) {
+      hash ^= b & 0xFF;
+      hash *= 0x100000001b3L;
+    }
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    RecordsChecksum that = (RecordsChecksum) o;
+    return count == that.count && checksum == that.checksum;
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * Long.hashCode(count) + Long.hashCode(checksum);
+  }
+
+  @Override
+  public String toString() {
+    return "RecordsChecksum{" +
+      "count=" + count +
+      ", checksum=" + checksum +
+      '}';
+  }
+}
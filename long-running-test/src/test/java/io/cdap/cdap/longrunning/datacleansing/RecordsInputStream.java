@@ -0,0 +1,93 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.longrunning.datacleansing;
+
+import com.google.gson.Gson;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * An {@link InputStream} of the records of one batch of the data cleansing test, one JSON {@link Person} per line.
+ * The clean records come first, followed by the invalid ones, with consecutive pids. Records are generated one at a
+ * time while the stream is read, so that a batch of any size takes constant memory.
+ */
+final class RecordsInputStream extends InputStream {
+  private static final Gson GSON = new Gson();
+  private static final byte[] EMPTY = new byte[0];
+
+  private final long firstPid;
+  private final long numCleanRecords;
+  private final long numRecords;
+  // index of the next record to generate
+  private long next;
+  private byte[] current = EMPTY;
+  private int position;
+
+  RecordsInputStream(long firstPid, long numCleanRecords, long numInvalidRecords) {
+    this.firstPid = firstPid;
+    this.numCleanRecords = numCleanRecords;
+    this.numRecords = numCleanRecords + numInvalidRecords;
+  }
+
+  /**
+   * Returns the JSON of the record with the given pid.
+   */
+  static String getRecord(long pid, boolean invalid) {
+    String zip = invalid ? "84125q" : "84125";
+    return GSON.toJson(new Person(pid, "bob", "02-12-1983", zip));
+  }
+
+  @Override
+  public int read() {
+    if (!ensureAvailable()) {
+      return -1;
+    }
+    return current[position++] & 0xFF;
+  }
+
+  @Override
+  public int read(byte[] bytes, int offset, int length) {
+    if (length == 0) {
+      return 0;
+    }
+    int read = 0;
+    while (read < length && ensureAvailable()) {
+      int count = Math.min(length - read, current.length - position);
+      System.arraycopy(current, position, bytes, offset + read, count);
+      position += count;
+      read += count;
+    }
+    return read == 0 ? -1 : read;
+  }
+
+  /**
+   * Generates the next record if the current one was read completely. Returns false once all records were read.
+   */
+  private boolean ensureAvailable() {
+    if (position < current.length) {
+      return true;
+    }
+    if (next >= numRecords) {
+      return false;
+    }
+    current = (getRecord(firstPid + next, next >= numCleanRecords) + "\n").getBytes(StandardCharsets.UTF_8);
+    position = 0;
+    next++;
+    return true;
+  }
+}
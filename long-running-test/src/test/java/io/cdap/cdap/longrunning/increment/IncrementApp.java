@@ -0,0 +1,139 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.longrunning.increment;
+
+import io.cdap.cdap.api.annotation.UseDataSet;
+import io.cdap.cdap.api.app.AbstractApplication;
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.dataset.DatasetProperties;
+import io.cdap.cdap.api.dataset.table.ConflictDetection;
+import io.cdap.cdap.api.dataset.table.Row;
+import io.cdap.cdap.api.dataset.table.Scanner;
+import io.cdap.cdap.api.dataset.table.Table;
+import io.cdap.cdap.api.service.AbstractService;
+import io.cdap.cdap.api.service.http.AbstractHttpServiceHandler;
+import io.cdap.cdap.api.service.http.HttpServiceRequest;
+import io.cdap.cdap.api.service.http.HttpServiceResponder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+
+/**
+ * An app with a service that applies batches of increment events to a table with readless increments, and reports
+ * the resulting sum and number of events of every key.
+ */
+public class IncrementApp extends AbstractApplication {
+  public static final String NAME = "IncrementApp";
+  public static final String SERVICE_NAME = "IncrementService";
+  public static final String TABLE_NAME = "increments";
+  public static final String SUMS = "sums";
+  public static final String COUNTS = "counts";
+
+  private static final byte[] SUM_COLUMN = Bytes.toBytes("sum");
+  private static final byte[] COUNT_COLUMN = Bytes.toBytes("count");
+
+  @Override
+  public void configure() {
+    setName(NAME);
+    setDescription("An app that increments counters at a high rate.");
+    addService(new AbstractService() {
+      @Override
+      protected void configure() {
+        setName(SERVICE_NAME);
+        addHandler(new IncrementHandler());
+      }
+    });
+    // many writers increment the same keys concurrently, which must not fail with conflicts
+    createDataset(TABLE_NAME, Table.class, DatasetProperties.builder()
+      .add(Table.PROPERTY_READLESS_INCREMENT, "true")
+      .add(Table.PROPERTY_CONFLICT_LEVEL, ConflictDetection.NONE.name())
+      .build());
+  }
+
+  /**
+   * Handler to apply and read increments.
+   */
+  @Path("/v1")
+  public static class IncrementHandler extends AbstractHttpServiceHandler {
+
+    @SuppressWarnings("unused")
+    @UseDataSet(TABLE_NAME)
+    private Table increments;
+
+    /**
+     * Applies a batch of events, one per line, each one of the form {@code <key> <amount>}. If any event is invalid,
+     * none of them is applied.
+     */
+    @POST
+    @Path("/increments")
+    public void increment(HttpServiceRequest request, HttpServiceResponder responder) {
+      String body = Bytes.toString(request.getContent());
+      List<String> keys = new ArrayList<>();
+      List<Long> amounts = new ArrayList<>();
+      for (String line : body.split("\n")) {
+        if (line.isEmpty()) {
+          continue;
+        }
+        int separator = line.indexOf(' ');
+        if (separator <= 0) {
+          responder.sendError(400, String.format("Invalid event '%s'", line));
+          return;
+        }
+        try {
+          amounts.add(Long.parseLong(line.substring(separator + 1)));
+        } catch (NumberFormatException e) {
+          responder.sendError(400, String.format("Invalid amount in event '%s'", line));
+          return;
+        }
+        keys.add(line.substring(0, separator));
+      }
+      for (int i = 0; i < keys.size(); i++) {
+        byte[] row = Bytes.toBytes(keys.get(i));
+        increments.increment(row, SUM_COLUMN, amounts.get(i));
+        increments.increment(row, COUNT_COLUMN, 1L);
+      }
+      responder.sendJson(200, keys.size());
+    }
+
+    /**
+     * Returns the sum and the number of events of every key.
+     */
+    @GET
+    @Path("/increments")
+    public void get(HttpServiceRequest request, HttpServiceResponder responder) {
+      Map<String, Long> sums = new HashMap<>();
+      Map<String, Long> counts = new HashMap<>();
+      try (Scanner scanner = increments.scan(null, null)) {
+        Row row;
+        while ((row = scanner.next()) != null) {
+          String key = Bytes.toString(row.getRow());
+          sums.put(key, row.getLong(SUM_COLUMN, 0L));
+          counts.put(key, row.getLong(COUNT_COLUMN, 0L));
+        }
+      }
+      Map<String, Map<String, Long>> result = new HashMap<>();
+      result.put(SUMS, sums);
+      result.put(COUNTS, counts);
+      responder.sendJson(200, result);
+    }
+  }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.longrunning.increment;
+
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates increment events with several concurrent writers at a target rate for a given duration. Every event
+ * increments a key, chosen with a {@link KeyDistribution}, by a random amount. The events are written in batches, and
+ * every writer paces its batches so that all writers together produce the target rate. The generator keeps track of
+ * the expected sum and number of events of every key, so that the result can be verified.
+ */
+final class IncrementLoadGenerator {
+  private static final int MAX_AMOUNT = 100;
+
+  private final int writers;
+  private final double eventsPerSecond;
+  private final long durationMillis;
+  private final int batchSize;
+  private final int numKeys;
+  private final KeyDistribution.Sampler sampler;
+
+  IncrementLoadGenerator(int writers, double eventsPerSecond, long durationMillis, int batchSize,
+                         int numKeys, KeyDistribution distribution, double distributionParameter) {
+    if (writers < 1 || eventsPerSecond <= 0 || batchSize < 1 || numKeys < 1) {
+      throw new IllegalArgumentException(String.format(
+        "Invalid load of %d writers, %f events per second, batches of %d events and %d keys",
+        writers, eventsPerSecond, batchSize, numKeys));
+    }
+    this.writers = writers;
+    this.eventsPerSecond = eventsPerSecond;
+    this.durationMillis = durationMillis;
+    this.batchSize = batchSize;
+    this.numKeys = numKeys;
+    this.sampler = distribution.createSampler(numKeys, distributionParameter);
+  }
+
+  /**
+   * Generates the events and writes them with the given writer, which must be thread safe. Fails if any batch fails
+   * to be written.
+   */
+  Result run(BatchWriter batchWriter) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(
+      writers, new ThreadFactoryBuilder().setDaemon(true).setNameFormat("increment-writer-%d").build());
+    long startTime = System.nanoTime();
+    long endTime = startTime + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+    try {
+      List<Future<Result>> futures = new ArrayList<>();
+      for (int i = 0; i < writers; i++) {
+        futures.add(executor.submit(() -> write(batchWriter, startTime, endTime)));
+      }
+      Result result = new Result(numKeys);
+      for (Future<Result> future : futures) {
+        result.add(future.get());
+      }
+      result.elapsedNanos = System.nanoTime() - startTime;
+      return result;
+    } catch (ExecutionException e) {
+      Throwables.propagateIfPossible(e.getCause(), Exception.class);
+      throw Throwables.propagate(e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private Result write(BatchWriter batchWriter, long startTime, long endTime) throws Exception {
+    Random random = ThreadLocalRandom.current();
+    double writerEventsPerNano = eventsPerSecond / writers / TimeUnit.SECONDS.toNanos(1);
+    Result result = new Result(numKeys);
+    StringBuilder batch = new StringBuilder();
+    while (true) {
+      // the next batch is due once the events written so far are the ones expected at the target rate
+      long dueTime = startTime + (long) (result.events / writerEventsPerNano);
+      if (dueTime >= endTime) {
+        return result;
+      }
+      long now = System.nanoTime();
+      if (dueTime > now) {
+        TimeUnit.NANOSECONDS.sleep(dueTime - now);
+      }
+
+      batch.setLength(0);
+      int[] keys = new int[batchSize];
+      int[] amounts = new int[batchSize];
+      for (int i = 0; i < batchSize; i++) {
+        keys[i] = sampler.next(random);
+        amounts[i] = 1 + random.nextInt(MAX_AMOUNT);
+        batch.append(keys[i]).append(' ').append(amounts[i]).append('\n');
+      }
+      batchWriter.write(batch.toString());
+      for (int i = 0; i < batchSize; i++) {
+        result.sums[keys[i]] += amounts[i];
+        result.counts[keys[i]]++;
+        result.sum += amounts[i];
+      }
+      result.events += batchSize;
+    }
+  }
+
+  /**
+   * Writes a batch of events, one per line, each one of the form {@code <key> <amount>}.
+   */
+  interface BatchWriter {
+    void write(String batch) throws Exception;
+  }
+
+  /**
+   * The events generated by a run.
+   */
+  static final class Result {
+    private final long[] sums;
+    private final long[] counts;
+    private long events;
+    private long sum;
+    private long elapsedNanos;
+
+    private Result(int numKeys) {
+      this.sums = new long[numKeys];
+      this.counts = new long[numKeys];
+    }
+
+    private void add(Result other) {
+      for (int i = 0; i < sums.length; i++) {
+        sums[i] += other.sums[i];
+        counts[i] += other.counts[i];
+      }
+      events += other.events;
+      sum += other.sum;
+    }
+
+    /**
+     * Returns the sum of the amounts of the events of every key, indexed by key.
+     */
+    long[] getSums() {
+      return sums;
+    }
+
+    /**
+     * Returns the number of events of every key, indexed by key.
+     */
+    long[] getCounts() {
+      return counts;
+    }
+
+    long getEvents() {
+      return events;
+    }
+
+    long getSum() {
+      return sum;
+    }
+
+    long getElapsedMillis() {
+      return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+    }
+
+    /**
+     * Returns the sustained number of events written per second.
+     */
+    double getEventsPerSecond() {
+      return elapsedNanos == 0 ? 0 : events * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+  }
+}
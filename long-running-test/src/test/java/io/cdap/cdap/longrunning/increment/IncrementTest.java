@@ -0,0 +1,177 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.longrunning.increment;
+
+import com.google.common.reflect.TypeToken;
+import com.google.gson.Gson;
+import io.cdap.cdap.proto.ProgramRunStatus;
+import io.cdap.cdap.test.ApplicationManager;
+import io.cdap.cdap.test.LongRunningTestBase;
+import io.cdap.cdap.test.ServiceManager;
+import io.cdap.cdap.test.Tasks;
+import io.cdap.common.http.HttpRequest;
+import io.cdap.common.http.HttpResponse;
+import org.junit.Assert;
+
+import java.lang.reflect.Type;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * Increment long running test, which increments counters with many concurrent writers at a target rate, and verifies
+ * the resulting sums. The load is configured with system properties:
+ * <ul>
+ *   <li>{@code longrunning.increment.writers}: number of concurrent writers</li>
+ *   <li>{@code longrunning.increment.rate}: target number of events per second of all writers together</li>
+ *   <li>{@code longrunning.increment.duration.seconds}: how long every iteration writes events</li>
+ *   <li>{@code longrunning.increment.batch.size}: number of events per request</li>
+ *   <li>{@code longrunning.increment.keys}: number of distinct keys</li>
+ *   <li>{@code longrunning.increment.distribution}: one of {@link KeyDistribution}</li>
+ *   <li>{@code longrunning.increment.skew}: the parameter of the distribution, see {@link KeyDistribution}</li>
+ * </ul>
+ */
+public class IncrementTest extends LongRunningTestBase<IncrementTestState> {
+  private static final int WRITERS = Integer.getInteger("longrunning.increment.writers", 4);
+  private static final double EVENTS_PER_SECOND =
+    Double.parseDouble(System.getProperty("longrunning.increment.rate", "1000"));
+  private static final long DURATION_SECONDS = Long.getLong("longrunning.increment.duration.seconds", 30L);
+  private static final int BATCH_SIZE = Integer.getInteger("longrunning.increment.batch.size", 100);
+  private static final int NUM_KEYS = Integer.getInteger("longrunning.increment.keys", 1000);
+  private static final KeyDistribution DISTRIBUTION =
+    KeyDistribution.valueOf(System.getProperty("longrunning.increment.distribution", "UNIFORM").toUpperCase());
+  private static final double SKEW = Double.parseDouble(
+    System.getProperty("longrunning.increment.skew", Double.toString(DISTRIBUTION.getDefaultParameter())));
+  private static final long VERIFICATION_TIMEOUT_SECONDS = 300;
+
+  private static final Gson GSON = new Gson();
+  private static final Type RESULT_TYPE = new TypeToken<Map<String, Map<String, Long>>>() { }.getType();
+
+  @Override
+  public void deploy() throws Exception {
+    deployApplication(getLongRunningNamespace(), IncrementApp.class);
+  }
+
+  @Override
+  public void start() throws Exception {
+    ServiceManager serviceManager = getApplicationManager().getServiceManager(IncrementApp.SERVICE_NAME).start();
+    waitForRun(serviceManager, ProgramRunStatus.RUNNING, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    // wait for it to be available
+    serviceManager.getServiceURL(PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+  }
+
+  @Override
+  public void stop() throws Exception {
+    ServiceManager serviceManager = getApplicationManager().getServiceManager(IncrementApp.SERVICE_NAME);
+    serviceManager.stop();
+    waitForRun(serviceManager, ProgramRunStatus.KILLED, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+  }
+
+  private ApplicationManager getApplicationManager() throws Exception {
+    return getApplicationManager(getLongRunningNamespace().app(IncrementApp.NAME));
+  }
+
+  @Override
+  public IncrementTestState getInitialState() {
+    return new IncrementTestState(0, 0);
+  }
+
+  @Override
+  public void awaitOperations(IncrementTestState state) throws Exception {
+    // No-op, increments are applied synchronously
+  }
+
+  @Override
+  public IncrementTestState verifyRuns(IncrementTestState state) throws Exception {
+    Map<String, Map<String, Long>> increments = getIncrements(getServiceURL());
+    Assert.assertEquals(state.getSumEvents(), total(increments.get(IncrementApp.SUMS)));
+    Assert.assertEquals(state.getNumEvents(), total(increments.get(IncrementApp.COUNTS)));
+    return state;
+  }
+
+  @Override
+  public IncrementTestState runOperations(IncrementTestState state) throws Exception {
+    URL serviceURL = getServiceURL();
+    Map<String, Map<String, Long>> before = getIncrements(serviceURL);
+
+    LOG.info("Writing increments with {} writers at {} events per second for {} seconds, {} distribution of {} keys",
+             WRITERS, EVENTS_PER_SECOND, DURATION_SECONDS, DISTRIBUTION, NUM_KEYS);
+    IncrementLoadGenerator generator = new IncrementLoadGenerator(WRITERS, EVENTS_PER_SECOND,
+                                                                  TimeUnit.SECONDS.toMillis(DURATION_SECONDS),
+                                                                  BATCH_SIZE, NUM_KEYS, DISTRIBUTION, SKEW);
+    URL incrementsURL = new URL(serviceURL, "v1/increments");
+    IncrementLoadGenerator.Result result = generator.run(batch -> {
+      HttpRequest request = HttpRequest.post(incrementsURL).withBody(batch).build();
+      HttpResponse response = getRestClient().execute(request, getClientConfig().getAccessToken());
+      Assert.assertEquals(200, response.getResponseCode());
+    });
+    LOG.info("Wrote {} increments in {} ms, sustained {} increments per second",
+             result.getEvents(), result.getElapsedMillis(), String.format("%.1f", result.getEventsPerSecond()));
+    recordThroughput("increment.events", result.getEventsPerSecond());
+
+    // the sums of all keys must eventually be the ones before plus the ones written, the time it takes once the
+    // writers finished is the verification lag
+    long verificationStart = System.nanoTime();
+    Tasks.waitFor(true, () -> matches(getIncrements(serviceURL), before, result),
+                  VERIFICATION_TIMEOUT_SECONDS, TimeUnit.SECONDS, 100, TimeUnit.MILLISECONDS);
+    long verificationLagMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - verificationStart);
+    LOG.info("All sums and counts matched {} ms after the writers finished", verificationLagMs);
+    recordTiming("increment.verification.lag", verificationLagMs);
+
+    return new IncrementTestState(state.getSumEvents() + result.getSum(), state.getNumEvents() + result.getEvents());
+  }
+
+  private URL getServiceURL() throws Exception {
+    return getApplicationManager().getServiceManager(IncrementApp.SERVICE_NAME)
+      .getServiceURL(PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+  }
+
+  private Map<String, Map<String, Long>> getIncrements(URL serviceURL) throws Exception {
+    HttpResponse response = getRestClient().execute(HttpRequest.get(new URL(serviceURL, "v1/increments")).build(),
+                                                     getClientConfig().getAccessToken());
+    Assert.assertEquals(200, response.getResponseCode());
+    return GSON.fromJson(response.getResponseBodyAsString(), RESULT_TYPE);
+  }
+
+  private static boolean matches(Map<String, Map<String, Long>> increments, Map<String, Map<String, Long>> before,
+                                 IncrementLoadGenerator.Result result) {
+    return matches(increments.get(IncrementApp.SUMS), before.get(IncrementApp.SUMS), result.getSums())
+      && matches(increments.get(IncrementApp.COUNTS), before.get(IncrementApp.COUNTS), result.getCounts());
+  }
+
+  private static boolean matches(Map<String, Long> actual, Map<String, Long> before, long[] written) {
+    for (int key = 0; key < written.length; key++) {
+      String name = Integer.toString(key);
+      long expected = before.getOrDefault(name, 0L) + written[key];
+      if (actual.getOrDefault(name, 0L) != expected) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static long total(@Nullable Map<String, Long> values) {
+    long total = 0;
+    if (values != null) {
+      for (long value : values.values()) {
+        total += value;
+      }
+    }
+    return total;
+  }
+}
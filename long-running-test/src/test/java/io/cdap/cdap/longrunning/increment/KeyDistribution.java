@@ -0,0 +1,92 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.longrunning.increment;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Distribution of the keys of the events generated by the {@link IncrementLoadGenerator}.
+ */
+public enum KeyDistribution {
+  /**
+   * Every key is equally likely.
+   */
+  UNIFORM(0) {
+    @Override
+    Sampler createSampler(int numKeys, double parameter) {
+      return random -> random.nextInt(numKeys);
+    }
+  },
+
+  /**
+   * The probability of the key with rank {@code k} is proportional to {@code 1 / k^s}, where {@code s} is the given
+   * parameter.
+   */
+  ZIPFIAN(1) {
+    @Override
+    Sampler createSampler(int numKeys, double parameter) {
+      double[] cumulative = new double[numKeys];
+      double total = 0;
+      for (int i = 0; i < numKeys; i++) {
+        total += 1 / Math.pow(i + 1, parameter);
+        cumulative[i] = total;
+      }
+      double sum = total;
+      return random -> {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+        return Math.min(numKeys - 1, index >= 0 ? index : -index - 1);
+      };
+    }
+  },
+
+  /**
+   * The given parameter is the fraction of the events that use the first key, the other events use a key chosen
+   * uniformly.
+   */
+  HOT_KEY(0.9) {
+    @Override
+    Sampler createSampler(int numKeys, double parameter) {
+      return random -> random.nextDouble() < parameter ? 0 : random.nextInt(numKeys);
+    }
+  };
+
+  private final double defaultParameter;
+
+  KeyDistribution(double defaultParameter) {
+    this.defaultParameter = defaultParameter;
+  }
+
+  /**
+   * Returns the parameter to use if none is given.
+   */
+  double getDefaultParameter() {
+    return defaultParameter;
+  }
+
+  /**
+   * Creates a sampler of the keys from {@code 0} to {@code numKeys - 1}.
+   */
+  abstract Sampler createSampler(int numKeys, double parameter);
+
+  /**
+   * Returns the next key of a distribution.
+   */
+  interface Sampler {
+    int next(Random random);
+  }
+}
@@ -16,7 +16,13 @@
 
 package io.cdap.cdap.longrunning.schedule;
 
+import com.google.common.reflect.TypeToken;
+import com.google.gson.Gson;
 import io.cdap.cdap.api.Transactional;
+import io.cdap.cdap.api.annotation.TransactionControl;
+import io.cdap.cdap.api.annotation.TransactionPolicy;
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.dataset.lib.PartitionDetail;
 import io.cdap.cdap.api.dataset.lib.PartitionKey;
 import io.cdap.cdap.api.dataset.lib.PartitionOutput;
 import io.cdap.cdap.api.dataset.lib.PartitionedFileSet;
@@ -26,17 +32,30 @@ import io.cdap.cdap.api.service.http.AbstractHttpServiceHandler;
 import io.cdap.cdap.api.service.http.HttpContentConsumer;
 import io.cdap.cdap.api.service.http.HttpServiceRequest;
 import io.cdap.cdap.api.service.http.HttpServiceResponder;
+import org.apache.tephra.TransactionFailureException;
 import org.apache.twill.filesystem.Location;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
 import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
 
 /**
  * A {@link Service} to write to PartitionedFileSet.
@@ -53,18 +72,24 @@ public class AddDataPartitionService extends AbstractService {
   }
 
   /**
-   * A handler that allows writing to the partitioned file set given in the query parameter.
+   * A handler that allows writing to the partitioned file set given in the query parameter, and creating or dropping
+   * many partitions at once.
    */
   @Path("/v1")
   public static class RecordsHandler extends AbstractHttpServiceHandler {
 
     private static final Logger LOG = LoggerFactory.getLogger(RecordsHandler.class);
+    private static final Gson GSON = new Gson();
+    private static final Type PARTITIONS_TYPE = new TypeToken<Map<String, Integer>>() { }.getType();
+    private static final byte[] PARTITION_CONTENT = "new partition".getBytes(StandardCharsets.UTF_8);
+    // the time of the latest partition, so that partitions created in the same millisecond get different keys
+    private static final AtomicLong LAST_PARTITION_TIME = new AtomicLong();
 
     @POST
     @Path("/records/{dataset}")
     public HttpContentConsumer write(HttpServiceRequest request, HttpServiceResponder responder,
                                      @PathParam("dataset") String datasetName) {
-      PartitionKey key = PartitionKey.builder().addLongField("time", System.currentTimeMillis()).build();
+      PartitionKey key = PartitionKey.builder().addLongField("time", nextPartitionTime()).build();
       PartitionedFileSet dataset = getContext().getDataset(datasetName);
       final PartitionOutput partitionOutput = dataset.getPartitionOutput(key);
       final Location location = partitionOutput.getLocation();
@@ -105,5 +130,122 @@ public class AddDataPartitionService extends AbstractService {
         return null;
       }
     }
+
+    /**
+     * Creates partitions in several datasets, as given by the request body, which is a JSON map from dataset name to
+     * number of partitions. The partitions of the different datasets are interleaved, and every batch of partitions is
+     * created in one transaction. Responds with a JSON map from dataset name to the time in milliseconds when the
+     * transaction that added the last partition of the dataset was committed.
+     */
+    @POST
+    @Path("/partitions")
+    @TransactionPolicy(TransactionControl.EXPLICIT)
+    public void createPartitions(HttpServiceRequest request, HttpServiceResponder responder,
+                                 @QueryParam("batchSize") @DefaultValue("100") int batchSize) {
+      Map<String, Integer> partitions = GSON.fromJson(Bytes.toString(request.getContent()), PARTITIONS_TYPE);
+      if (partitions == null || batchSize < 1) {
+        responder.sendError(400, "Expected a map from dataset name to number of partitions and a positive batchSize");
+        return;
+      }
+      List<String> datasets = interleave(partitions);
+      Map<String, Long> commitTimes = new HashMap<>();
+      int created = 0;
+      try {
+        while (created < datasets.size()) {
+          List<String> batch = datasets.subList(created, Math.min(datasets.size(), created + batchSize));
+          getContext().execute(context -> {
+            for (String datasetName : batch) {
+              addPartition(context.getDataset(datasetName));
+            }
+          });
+          long commitTime = System.currentTimeMillis();
+          for (String datasetName : batch) {
+            commitTimes.put(datasetName, commitTime);
+          }
+          created += batch.size();
+        }
+      } catch (TransactionFailureException e) {
+        LOG.error("Failed to create partitions after {} out of {}", created, datasets.size(), e);
+        responder.sendError(500, String.format("Created %d out of %d partitions. Reason: '%s'",
+                                               created, datasets.size(), e.getMessage()));
+        return;
+      }
+      responder.sendJson(200, commitTimes);
+    }
+
+    /**
+     * Drops all partitions of the given dataset, at most batchSize partitions per transaction. Responds with the number
+     * of partitions dropped.
+     */
+    @DELETE
+    @Path("/partitions/{dataset}")
+    @TransactionPolicy(TransactionControl.EXPLICIT)
+    public void dropPartitions(HttpServiceRequest request, HttpServiceResponder responder,
+                               @PathParam("dataset") String datasetName,
+                               @QueryParam("batchSize") @DefaultValue("100") int batchSize) {
+      if (batchSize < 1) {
+        responder.sendError(400, "Expected a positive batchSize");
+        return;
+      }
+      List<PartitionKey> keys = new ArrayList<>();
+      int dropped = 0;
+      try {
+        getContext().execute(context -> {
+          PartitionedFileSet dataset = context.getDataset(datasetName);
+          for (PartitionDetail partition : dataset.getPartitions(null)) {
+            keys.add(partition.getPartitionKey());
+          }
+        });
+        while (dropped < keys.size()) {
+          List<PartitionKey> batch = keys.subList(dropped, Math.min(keys.size(), dropped + batchSize));
+          getContext().execute(context -> {
+            PartitionedFileSet dataset = context.getDataset(datasetName);
+            for (PartitionKey key : batch) {
+              dataset.dropPartition(key);
+            }
+          });
+          dropped += batch.size();
+        }
+      } catch (TransactionFailureException e) {
+        LOG.error("Failed to drop partitions after {} out of {}", dropped, keys.size(), e);
+        responder.sendError(500, String.format("Dropped %d out of %d partitions. Reason: '%s'",
+                                               dropped, keys.size(), e.getMessage()));
+        return;
+      }
+      responder.sendJson(200, dropped);
+    }
+
+    private static void addPartition(PartitionedFileSet dataset) throws IOException {
+      PartitionKey key = PartitionKey.builder().addLongField("time", nextPartitionTime()).build();
+      PartitionOutput partitionOutput = dataset.getPartitionOutput(key);
+      try (OutputStream outputStream = partitionOutput.getLocation().getOutputStream()) {
+        outputStream.write(PARTITION_CONTENT);
+      }
+      partitionOutput.addPartition();
+    }
+
+    /**
+     * Returns the names of the datasets of all partitions to create, taking one partition of every dataset in turn.
+     */
+    private static List<String> interleave(Map<String, Integer> partitions) {
+      Map<String, Integer> remaining = new LinkedHashMap<>(partitions);
+      List<String> datasets = new ArrayList<>();
+      boolean added = true;
+      while (added) {
+        added = false;
+        for (Map.Entry<String, Integer> entry : remaining.entrySet()) {
+          if (entry.getValue() > 0) {
+            datasets.add(entry.getKey());
+            entry.setValue(entry.getValue() - 1);
+            added = true;
+          }
+        }
+      }
+      return datasets;
+    }
+
+    private static long nextPartitionTime() {
+      return LAST_PARTITION_TIME.updateAndGet(last -> Math.max(last + 1, System.currentTimeMillis()));
+    }
   }
 }
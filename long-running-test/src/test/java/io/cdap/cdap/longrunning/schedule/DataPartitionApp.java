@@ -17,6 +17,7 @@
 package io.cdap.cdap.longrunning.schedule;
 
 import io.cdap.cdap.AppWithFrequentScheduledWorkflows;
+import io.cdap.cdap.api.Config;
 import io.cdap.cdap.api.app.AbstractApplication;
 import io.cdap.cdap.api.app.ProgramType;
 import io.cdap.cdap.api.dataset.lib.PartitionedFileSet;
@@ -25,34 +26,34 @@ import io.cdap.cdap.api.dataset.lib.Partitioning;
 import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
 
 /**
- * An app with time partitioned file sets and schedule triggered by new data partition in a certain dataset.
+ * An app with time partitioned file sets and schedule triggered by new data partition in a certain dataset. The
+ * number of schedules and trigger datasets, and the number of partitions that trigger a schedule are given by the
+ * {@link AppConfig}, so that the scheduler can be tested at scale.
  */
-public class DataPartitionApp extends AbstractApplication {
+public class DataPartitionApp extends AbstractApplication<DataPartitionApp.AppConfig> {
   public static final String NAME = "DataPartitionApp";
   public static final String TRIGGER_DATASET_PREFIX = "triggerDataset";
   public static final String NO_TRIGGER_DATASET = "noTriggerDataset";
   public static final String WORKFLOW_PREFIX = "dummyWorkflow";
   public static final String DATASET_PARTITION_SCHEDULE_PREFIX = "datasetPartitionSchedule";
-  public static final int TRIGGER_ON_NUM_PARTITIONS = 5;
-  public static final int NUM_SCHEDULES = 20;
-  public static final int NUM_TRIGGER_DATASET = 5;
-  public static final int NUM_SCHEDULES_PER_DATASET = NUM_SCHEDULES / NUM_TRIGGER_DATASET;
-
+  public static final int DEFAULT_TRIGGER_ON_NUM_PARTITIONS = 5;
+  public static final int DEFAULT_NUM_SCHEDULES = 20;
+  public static final int DEFAULT_NUM_TRIGGER_DATASET = 5;
 
   @Override
   public void configure() {
     setName(NAME);
-    for (int i = 0; i < NUM_SCHEDULES; i++) {
+    AppConfig config = getConfig();
+    for (int i = 0; i < config.getNumSchedules(); i++) {
       String workflowName = WORKFLOW_PREFIX + i;
-      String datasetName = TRIGGER_DATASET_PREFIX + (i / NUM_SCHEDULES_PER_DATASET);
       addWorkflow(new AppWithFrequentScheduledWorkflows.DummyWorkflow(workflowName));
       schedule(buildSchedule(DATASET_PARTITION_SCHEDULE_PREFIX + i, ProgramType.WORKFLOW, workflowName)
-                 .triggerOnPartitions(datasetName, TRIGGER_ON_NUM_PARTITIONS));
+                 .triggerOnPartitions(config.getTriggerDataset(i), config.getTriggerOnNumPartitions()));
     }
 
     addService(new AddDataPartitionService());
 
-    for (int i = 0; i < NUM_TRIGGER_DATASET; i++) {
+    for (int i = 0; i < config.getNumTriggerDatasets(); i++) {
       // Create the "triggerDataset" partitioned file set for sending new partition notifications to trigger schedules
       createDataset(TRIGGER_DATASET_PREFIX + i, PartitionedFileSet.class, PartitionedFileSetProperties.builder()
         // Properties for partitioning
@@ -73,4 +74,70 @@ public class DataPartitionApp extends AbstractApplication {
       .setDescription("Store input records")
       .build());
   }
+
+  /**
+   * Application Config Class to control the scale of the schedules.
+   */
+  public static class AppConfig extends Config {
+    private final int numSchedules;
+    private final int numTriggerDatasets;
+    private final int triggerOnNumPartitions;
+
+    public AppConfig() {
+      this(DEFAULT_NUM_SCHEDULES, DEFAULT_NUM_TRIGGER_DATASET, DEFAULT_TRIGGER_ON_NUM_PARTITIONS);
+    }
+
+    public AppConfig(int numSchedules, int numTriggerDatasets, int triggerOnNumPartitions) {
+      this.numSchedules = numSchedules;
+      this.numTriggerDatasets = numTriggerDatasets;
+      this.triggerOnNumPartitions = triggerOnNumPartitions;
+    }
+
+    public int getNumSchedules() {
+      return numSchedules;
+    }
+
+    public int getNumTriggerDatasets() {
+      return numTriggerDatasets;
+    }
+
+    public int getTriggerOnNumPartitions() {
+      return triggerOnNumPartitions;
+    }
+
+    /**
+     * Returns the name of the dataset whose partitions trigger the given schedule. The schedules are spread evenly
+     * across the trigger datasets, consecutive schedules share the same dataset.
+     */
+    public String getTriggerDataset(int schedule) {
+      return TRIGGER_DATASET_PREFIX + (int) ((long) schedule * numTriggerDatasets / numSchedules);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      AppConfig that = (AppConfig) o;
+      return numSchedules == that.numSchedules && numTriggerDatasets == that.numTriggerDatasets
+        && triggerOnNumPartitions == that.triggerOnNumPartitions;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * (31 * numSchedules + numTriggerDatasets) + triggerOnNumPartitions;
+    }
+
+    @Override
+    public String toString() {
+      return "AppConfig{" +
+        "numSchedules=" + numSchedules +
+        ", numTriggerDatasets=" + numTriggerDatasets +
+        ", triggerOnNumPartitions=" + triggerOnNumPartitions +
+        '}';
+    }
+  }
 }
@@ -18,16 +18,26 @@ package io.cdap.cdap.longrunning.schedule;
 
 import io.cdap.cdap.test.TestState;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+
 /**
  * State for {@link ScheduleLongRunningTest}.
  */
 public class DataPartitionScheduleTestState implements TestState {
   private final long triggerStartTimeSeconds;
   private final int expectedCompletedRunsNum;
+  // time in milliseconds when the partitions that trigger the schedules were added, by trigger dataset name
+  @Nullable
+  private final Map<String, Long> triggerTimes;
 
-  public DataPartitionScheduleTestState(long triggerStartTimeSeconds, int expectedCompletedRunsNum) {
+  public DataPartitionScheduleTestState(long triggerStartTimeSeconds, int expectedCompletedRunsNum,
+                                        Map<String, Long> triggerTimes) {
     this.triggerStartTimeSeconds = triggerStartTimeSeconds;
     this.expectedCompletedRunsNum = expectedCompletedRunsNum;
+    this.triggerTimes = new HashMap<>(triggerTimes);
   }
 
   public long getTriggerStartTimeSeconds() {
@@ -38,11 +48,20 @@ public class DataPartitionScheduleTestState implements TestState {
     return expectedCompletedRunsNum;
   }
 
+  /**
+   * Returns the time in milliseconds when the partitions that trigger the schedules were added, by trigger dataset
+   * name. It is empty in a state from a former version.
+   */
+  public Map<String, Long> getTriggerTimes() {
+    return triggerTimes == null ? Collections.emptyMap() : Collections.unmodifiableMap(triggerTimes);
+  }
+
   @Override
   public String toString() {
     return "DataPartitionScheduleTestState{" +
       "triggerStartTimeSeconds=" + triggerStartTimeSeconds +
       ", expectedCompletedRunsNum=" + expectedCompletedRunsNum +
+      ", triggerTimes=" + triggerTimes +
       '}';
   }
 }
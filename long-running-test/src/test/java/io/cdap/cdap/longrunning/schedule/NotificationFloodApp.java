@@ -0,0 +1,63 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.longrunning.schedule;
+
+import io.cdap.cdap.AppWithFrequentScheduledWorkflows;
+import io.cdap.cdap.api.app.AbstractApplication;
+import io.cdap.cdap.api.app.ProgramType;
+import io.cdap.cdap.api.dataset.lib.PartitionedFileSet;
+import io.cdap.cdap.api.dataset.lib.PartitionedFileSetProperties;
+import io.cdap.cdap.api.dataset.lib.Partitioning;
+import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
+
+/**
+ * An app for {@link NotificationFloodTest}, with a few schedules that are triggered by a single new partition in
+ * their own dataset, and a dataset whose partitions don't trigger any schedule, to flood the scheduler with
+ * irrelevant notifications. Its datasets are separate from the ones of {@link DataPartitionApp}, so that the flood
+ * doesn't trigger the schedules of the other app.
+ */
+public class NotificationFloodApp extends AbstractApplication {
+  public static final String NAME = "NotificationFloodApp";
+  public static final String TRIGGER_DATASET_PREFIX = "floodTriggerDataset";
+  public static final String FLOOD_DATASET = "floodDataset";
+  public static final String WORKFLOW_PREFIX = "floodWorkflow";
+  public static final String SCHEDULE_PREFIX = "floodSchedule";
+  public static final int NUM_SCHEDULES = 3;
+
+  @Override
+  public void configure() {
+    setName(NAME);
+    for (int i = 0; i < NUM_SCHEDULES; i++) {
+      String workflowName = WORKFLOW_PREFIX + i;
+      addWorkflow(new AppWithFrequentScheduledWorkflows.DummyWorkflow(workflowName));
+      schedule(buildSchedule(SCHEDULE_PREFIX + i, ProgramType.WORKFLOW, workflowName)
+                 .triggerOnPartitions(TRIGGER_DATASET_PREFIX + i, 1));
+      createPartitionedFileSet(TRIGGER_DATASET_PREFIX + i);
+    }
+    createPartitionedFileSet(FLOOD_DATASET);
+
+    addService(new AddDataPartitionService());
+  }
+
+  private void createPartitionedFileSet(String name) {
+    createDataset(name, PartitionedFileSet.class, PartitionedFileSetProperties.builder()
+      .setPartitioning(Partitioning.builder().addLongField("time").build())
+      .setInputFormat(TextInputFormat.class)
+      .setDescription("Store input records")
+      .build());
+  }
+}
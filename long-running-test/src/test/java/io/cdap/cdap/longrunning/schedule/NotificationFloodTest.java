@@ -0,0 +1,337 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.longrunning.schedule;
+
+import com.google.common.base.Splitter;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.Gson;
+import io.cdap.cdap.client.ScheduleClient;
+import io.cdap.cdap.proto.ProgramRunStatus;
+import io.cdap.cdap.proto.id.ApplicationId;
+import io.cdap.cdap.test.ApplicationManager;
+import io.cdap.cdap.test.LongRunningTestBase;
+import io.cdap.cdap.test.ServiceManager;
+import io.cdap.cdap.test.Tasks;
+import io.cdap.cdap.test.WorkflowManager;
+import io.cdap.cdap.test.runner.AutoSuiteRunner;
+import io.cdap.common.http.HttpRequest;
+import io.cdap.common.http.HttpResponse;
+import org.junit.Assert;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * Benchmark of the scheduler under a flood of irrelevant partition notifications. Every iteration creates partitions
+ * in a dataset that doesn't trigger any schedule at increasing rates, and fires the triggers of a few schedules twice
+ * during every rate, to measure how the latency from a trigger to the start of its workflow degrades with the rate of
+ * irrelevant notifications. The rates, in partitions per second, and their duration are given by the
+ * {@code longrunning.schedule.flood.rates} and {@code longrunning.schedule.flood.step.seconds} system properties. The
+ * partitions are created by {@code longrunning.schedule.flood.writers} concurrent writers, and dropped at the end of
+ * every step, so that the number of partitions of the dataset doesn't grow from one iteration to the next.
+ *
+ * Two outcomes of a rate are reported separately:
+ * <ul>
+ *   <li>The writers could not generate the load, if they created less than 90% of the partitions of the rate. This
+ *   is limited by the client and by how fast the service creates partitions, not by the scheduler.</li>
+ *   <li>The scheduler is saturated, if the trigger latency of the second triggers is more than twice the one of the
+ *   first triggers, which means that the backlog of notifications grows during the step.</li>
+ * </ul>
+ *
+ * The CPU usage of the scheduler is not exposed by the REST API of CDAP in a portable way. If the
+ * {@code longrunning.schedule.flood.cpu.metric} system property names a metric that counts the CPU time of the
+ * scheduler, with the tags given by {@code longrunning.schedule.flood.cpu.tags}, its increase per second is also
+ * reported for every rate.
+ *
+ * It runs alone, because the flood slows down the schedules of the other tests.
+ */
+@AutoSuiteRunner.RunAlone
+public class NotificationFloodTest extends LongRunningTestBase<NotificationFloodTestState> {
+  private static final List<Integer> RATES = parseRates(System.getProperty("longrunning.schedule.flood.rates",
+                                                                           "20,50,100,200"));
+  private static final long STEP_SECONDS = Long.getLong("longrunning.schedule.flood.step.seconds", 60L);
+  // number of partitions created per request to the service
+  private static final int BATCH_SIZE = Integer.getInteger("longrunning.schedule.flood.batch.size", 10);
+  private static final int WRITERS = Integer.getInteger("longrunning.schedule.flood.writers", 8);
+  @Nullable
+  private static final String CPU_METRIC = System.getProperty("longrunning.schedule.flood.cpu.metric");
+  private static final Map<String, String> CPU_TAGS = Splitter.on(',').trimResults().omitEmptyStrings()
+    .withKeyValueSeparator('=')
+    .split(System.getProperty("longrunning.schedule.flood.cpu.tags", "namespace=system,component=appfabric"));
+  // the load could not be generated if the flood achieves less than this fraction of the rate
+  private static final double LOAD_FRACTION = 0.9;
+  // the scheduler is saturated if the latency of the second triggers of a step exceeds the one of the first triggers
+  // by this factor, and by more than the resolution of the run records
+  private static final double LATENCY_GROWTH_FACTOR = 2;
+  private static final long LATENCY_GROWTH_MIN_MS = TimeUnit.SECONDS.toMillis(2);
+  // every step fires the triggers of all schedules twice
+  private static final int TRIGGERS_PER_STEP = 2;
+  private static final long TRIGGER_TIMEOUT_MINUTES = 5;
+
+  private static final Gson GSON = new Gson();
+
+  @Override
+  public void deploy() throws Exception {
+    deployApplication(getLongRunningNamespace(), NotificationFloodApp.class);
+  }
+
+  @Override
+  public void start() throws Exception {
+    ServiceManager serviceManager = getApplicationManager().getServiceManager(AddDataPartitionService.NAME).start();
+    waitForRun(serviceManager, ProgramRunStatus.RUNNING, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+    ApplicationId appId = getLongRunningNamespace().app(NotificationFloodApp.NAME);
+    ScheduleClient scheduleClient = new ScheduleClient(getClientConfig(), getRestClient());
+    for (int i = 0; i < NotificationFloodApp.NUM_SCHEDULES; i++) {
+      scheduleClient.resume(appId.schedule(NotificationFloodApp.SCHEDULE_PREFIX + i));
+    }
+  }
+
+  @Override
+  public void stop() throws Exception {
+    ServiceManager serviceManager = getApplicationManager().getServiceManager(AddDataPartitionService.NAME);
+    serviceManager.stop();
+    waitForRun(serviceManager, ProgramRunStatus.KILLED, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+    ApplicationId appId = getLongRunningNamespace().app(NotificationFloodApp.NAME);
+    ScheduleClient scheduleClient = new ScheduleClient(getClientConfig(), getRestClient());
+    for (int i = 0; i < NotificationFloodApp.NUM_SCHEDULES; i++) {
+      scheduleClient.suspend(appId.schedule(NotificationFloodApp.SCHEDULE_PREFIX + i));
+    }
+  }
+
+  private ApplicationManager getApplicationManager() throws Exception {
+    return getApplicationManager(getLongRunningNamespace().app(NotificationFloodApp.NAME));
+  }
+
+  @Override
+  public NotificationFloodTestState getInitialState() {
+    return new NotificationFloodTestState(0);
+  }
+
+  @Override
+  public void awaitOperations(NotificationFloodTestState state) throws Exception {
+    // No-op, the runs of the workflows are awaited in verifyRuns
+  }
+
+  @Override
+  public NotificationFloodTestState verifyRuns(NotificationFloodTestState state) throws Exception {
+    if (state.getExpectedCompletedRunsNum() == 0) {
+      return state;
+    }
+    // every trigger of the previous iterations must have resulted in a completed run
+    ApplicationManager appManager = getApplicationManager();
+    for (int i = 0; i < NotificationFloodApp.NUM_SCHEDULES; i++) {
+      appManager.getWorkflowManager(NotificationFloodApp.WORKFLOW_PREFIX + i)
+        .waitForRuns(ProgramRunStatus.COMPLETED, state.getExpectedCompletedRunsNum(), 5, TimeUnit.MINUTES);
+    }
+    return state;
+  }
+
+  @Override
+  public NotificationFloodTestState runOperations(NotificationFloodTestState state) throws Exception {
+    URL serviceURL = getApplicationManager().getServiceManager(AddDataPartitionService.NAME)
+      .getServiceURL(PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    List<String> summary = new ArrayList<>();
+    for (int rate : RATES) {
+      checkNotCancelled();
+      summary.add(runStep(serviceURL, rate));
+    }
+    LOG.info("Trigger latency under a flood of irrelevant notifications:\n{}", String.join("\n", summary));
+    return new NotificationFloodTestState(state.getExpectedCompletedRunsNum() + TRIGGERS_PER_STEP * RATES.size());
+  }
+
+  /**
+   * Floods the scheduler at the given rate for one step, fires the triggers of all schedules after one quarter and
+   * after three quarters of the step, and records the latency of the triggers. Returns a summary of the step.
+   */
+  private String runStep(URL serviceURL, int partitionsPerSecond) throws Exception {
+    LOG.info("Flooding the scheduler with {} irrelevant partitions per second for {} seconds with {} writers",
+             partitionsPerSecond, STEP_SECONDS, WRITERS);
+    Long cpuBefore = getSchedulerCpu();
+    long stepStart = System.nanoTime();
+    ExecutorService executor = Executors.newFixedThreadPool(
+      WRITERS, new ThreadFactoryBuilder().setDaemon(true).setNameFormat("notification-flood-%d").build());
+    List<Long> firstLatenciesMs;
+    List<Long> secondLatenciesMs;
+    long flooded = 0;
+    try {
+      List<Future<Long>> writers = new ArrayList<>();
+      for (int i = 0; i < WRITERS; i++) {
+        writers.add(executor.submit(() -> flood(serviceURL, partitionsPerSecond / (double) WRITERS, stepStart)));
+      }
+      sleepUntil(stepStart + TimeUnit.SECONDS.toNanos(STEP_SECONDS) / 4);
+      firstLatenciesMs = fireTriggers(serviceURL);
+      // the second triggers are fired once the workflows of the first ones started, so that their runs are distinct
+      sleepUntil(stepStart + TimeUnit.SECONDS.toNanos(STEP_SECONDS) * 3 / 4);
+      secondLatenciesMs = fireTriggers(serviceURL);
+      for (Future<Long> writer : writers) {
+        flooded += getFlooded(writer);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - stepStart);
+    Long cpuAfter = getSchedulerCpu();
+
+    String prefix = "flood." + partitionsPerSecond + ".";
+    List<Long> latenciesMs = new ArrayList<>(firstLatenciesMs);
+    latenciesMs.addAll(secondLatenciesMs);
+    Collections.sort(latenciesMs);
+    long p50 = ScheduleLongRunningTest.percentile(latenciesMs, 0.5);
+    long max = latenciesMs.get(latenciesMs.size() - 1);
+    recordTiming(prefix + "trigger.latency.p50", p50);
+    recordTiming(prefix + "trigger.latency.max", max);
+    Collections.sort(firstLatenciesMs);
+    Collections.sort(secondLatenciesMs);
+    long firstP50 = ScheduleLongRunningTest.percentile(firstLatenciesMs, 0.5);
+    long secondP50 = ScheduleLongRunningTest.percentile(secondLatenciesMs, 0.5);
+
+    double achievedRate = flooded / (double) Math.max(1, STEP_SECONDS);
+    StringBuilder result = new StringBuilder(String.format(
+      "  %d partitions/s: achieved %.1f partitions/s, trigger latency p50 %d ms (first %d ms, second %d ms), max %d ms",
+      partitionsPerSecond, achievedRate, p50, firstP50, secondP50, max));
+    if (cpuBefore != null && cpuAfter != null) {
+      long cpuPerSecond = (cpuAfter - cpuBefore) * 1000 / Math.max(1, elapsedMs);
+      recordTiming(prefix + "cpu", cpuPerSecond);
+      result.append(String.format(", %s %d per second", CPU_METRIC, cpuPerSecond));
+    }
+    if (secondP50 > LATENCY_GROWTH_FACTOR * firstP50 && secondP50 - firstP50 > LATENCY_GROWTH_MIN_MS) {
+      result.append(", scheduler saturated");
+    }
+    if (achievedRate < LOAD_FRACTION * partitionsPerSecond) {
+      result.append(", could not generate the load");
+    }
+    dropFloodPartitions(serviceURL);
+    return result.toString();
+  }
+
+  /**
+   * Drops all partitions of the dataset that doesn't trigger any schedule, so that its size doesn't become part of
+   * what the next steps and iterations measure.
+   */
+  private void dropFloodPartitions(URL serviceURL) throws Exception {
+    long startTime = System.nanoTime();
+    URL url = new URL(serviceURL, "v1/partitions/" + NotificationFloodApp.FLOOD_DATASET + "?batchSize=1000");
+    HttpResponse response = getRestClient().execute(HttpRequest.delete(url).build(),
+                                                    getClientConfig().getAccessToken());
+    Assert.assertEquals(200, response.getResponseCode());
+    LOG.info("Dropped {} partitions of {} in {} ms", response.getResponseBodyAsString(),
+             NotificationFloodApp.FLOOD_DATASET, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+  }
+
+  private static void sleepUntil(long nanoTime) throws InterruptedException {
+    long now = System.nanoTime();
+    if (nanoTime > now) {
+      TimeUnit.NANOSECONDS.sleep(nanoTime - now);
+    }
+  }
+
+  /**
+   * Creates partitions in the dataset that doesn't trigger any schedule at the given rate, from the start of the step
+   * until its end. Returns the number of partitions created.
+   */
+  private long flood(URL serviceURL, double partitionsPerSecond, long stepStart) throws Exception {
+    double partitionsPerNano = partitionsPerSecond / TimeUnit.SECONDS.toNanos(1);
+    long stepEnd = stepStart + TimeUnit.SECONDS.toNanos(STEP_SECONDS);
+    Map<String, Integer> batch = ImmutableMap.of(NotificationFloodApp.FLOOD_DATASET, BATCH_SIZE);
+    long created = 0;
+    while (true) {
+      // the next batch is due once the partitions created so far are the ones expected at the target rate
+      long dueTime = stepStart + (long) (created / partitionsPerNano);
+      if (dueTime >= stepEnd || System.nanoTime() >= stepEnd) {
+        return created;
+      }
+      sleepUntil(dueTime);
+      createPartitions(serviceURL, batch);
+      created += BATCH_SIZE;
+    }
+  }
+
+  private static long getFlooded(Future<Long> flood) throws Exception {
+    try {
+      return flood.get();
+    } catch (ExecutionException e) {
+      Throwables.propagateIfPossible(e.getCause(), Exception.class);
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
+  /**
+   * Creates a partition in the trigger dataset of every schedule, and waits for the workflows to start. Returns the
+   * latency of every trigger, in milliseconds.
+   */
+  private List<Long> fireTriggers(URL serviceURL) throws Exception {
+    Map<String, Integer> partitions = new LinkedHashMap<>();
+    for (int i = 0; i < NotificationFloodApp.NUM_SCHEDULES; i++) {
+      partitions.put(NotificationFloodApp.TRIGGER_DATASET_PREFIX + i, 1);
+    }
+    Map<String, Long> triggerTimes = createPartitions(serviceURL, partitions);
+
+    ApplicationManager appManager = getApplicationManager();
+    List<Long> latenciesMs = new ArrayList<>();
+    for (int i = 0; i < NotificationFloodApp.NUM_SCHEDULES; i++) {
+      WorkflowManager workflowManager = appManager.getWorkflowManager(NotificationFloodApp.WORKFLOW_PREFIX + i);
+      long triggerTime = triggerTimes.get(NotificationFloodApp.TRIGGER_DATASET_PREFIX + i);
+      Tasks.waitFor(true, () -> ScheduleLongRunningTest.getTriggerLatency(
+                      workflowManager.getHistory(ProgramRunStatus.ALL), triggerTime) != null,
+                    TRIGGER_TIMEOUT_MINUTES, TimeUnit.MINUTES, 500, TimeUnit.MILLISECONDS);
+      latenciesMs.add(ScheduleLongRunningTest.getTriggerLatency(workflowManager.getHistory(ProgramRunStatus.ALL),
+                                                                triggerTime));
+    }
+    return latenciesMs;
+  }
+
+  private Map<String, Long> createPartitions(URL serviceURL, Map<String, Integer> partitions) throws Exception {
+    URL url = new URL(serviceURL, "v1/partitions?batchSize=" + BATCH_SIZE);
+    HttpRequest request = HttpRequest.post(url).withBody(GSON.toJson(partitions)).build();
+    HttpResponse response = getRestClient().execute(request, getClientConfig().getAccessToken());
+    Assert.assertEquals(200, response.getResponseCode());
+    return GSON.fromJson(response.getResponseBodyAsString(), ScheduleLongRunningTest.COMMIT_TIMES_TYPE);
+  }
+
+  /**
+   * Returns the value of the metric that counts the CPU time of the scheduler, or {@code null} if none is configured.
+   */
+  @Nullable
+  private Long getSchedulerCpu() throws Exception {
+    return CPU_METRIC == null ? null : getMetricValue(CPU_TAGS, CPU_METRIC);
+  }
+
+  private static List<Integer> parseRates(String rates) {
+    List<Integer> result = new ArrayList<>();
+    for (String rate : Splitter.on(',').trimResults().omitEmptyStrings().split(rates)) {
+      result.add(Integer.parseInt(rate));
+    }
+    if (result.isEmpty()) {
+      throw new IllegalArgumentException("No rates given in longrunning.schedule.flood.rates");
+    }
+    return result;
+  }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.longrunning.schedule;
+
+import com.google.common.base.Objects;
+import io.cdap.cdap.test.TestState;
+
+/**
+ * State for {@link NotificationFloodTest}.
+ */
+public class NotificationFloodTestState implements TestState {
+  private final int expectedCompletedRunsNum;
+
+  public NotificationFloodTestState(int expectedCompletedRunsNum) {
+    this.expectedCompletedRunsNum = expectedCompletedRunsNum;
+  }
+
+  /**
+   * Returns the number of completed runs that every workflow of {@link NotificationFloodApp} is expected to have.
+   */
+  public int getExpectedCompletedRunsNum() {
+    return expectedCompletedRunsNum;
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+      .add("expectedCompletedRunsNum", expectedCompletedRunsNum)
+      .toString();
+  }
+}
@@ -16,50 +16,96 @@
 
 package io.cdap.cdap.longrunning.schedule;
 
+import com.google.common.reflect.TypeToken;
+import com.google.gson.Gson;
 import io.cdap.cdap.client.ProgramClient;
 import io.cdap.cdap.client.ScheduleClient;
 import io.cdap.cdap.common.UnauthenticatedException;
-import io.cdap.cdap.common.utils.Tasks;
+import io.cdap.cdap.proto.ApplicationDetail;
 import io.cdap.cdap.proto.ProgramRunStatus;
+import io.cdap.cdap.proto.RunRecord;
 import io.cdap.cdap.proto.id.ApplicationId;
-import io.cdap.cdap.proto.id.ScheduleId;
 import io.cdap.cdap.proto.id.WorkflowId;
 import io.cdap.cdap.security.spi.authorization.UnauthorizedException;
 import io.cdap.cdap.test.ApplicationManager;
 import io.cdap.cdap.test.LongRunningTestBase;
 import io.cdap.cdap.test.ServiceManager;
+import io.cdap.cdap.test.Tasks;
 import io.cdap.cdap.test.WorkflowManager;
 import io.cdap.common.http.HttpRequest;
 import io.cdap.common.http.HttpResponse;
 import org.junit.Assert;
 
 import java.io.IOException;
+import java.lang.reflect.Type;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
 
 /**
  * Schedule long running test which creates new partitions in datasets and assert that
- * scheduled workflows complete successfully.
+ * scheduled workflows complete successfully. It also measures the latency from the creation of the partitions that
+ * trigger a schedule to the start of the workflow run.
+ *
+ * The scale of the app is given by the {@code longrunning.schedule.schedules},
+ * {@code longrunning.schedule.trigger.datasets} and {@code longrunning.schedule.trigger.partitions} system properties,
+ * which only take effect when the app is deployed, on the first run of the test. Later runs use the config of the
+ * deployed app, so that they don't expect schedules and workflows that the app doesn't have.
  */
 public class ScheduleLongRunningTest extends LongRunningTestBase<DataPartitionScheduleTestState> {
+  private static final Gson GSON = new Gson();
+  static final Type COMMIT_TIMES_TYPE = new TypeToken<Map<String, Long>>() { }.getType();
+  // the config to deploy the app with
+  private static final DataPartitionApp.AppConfig CONFIG = new DataPartitionApp.AppConfig(
+    Integer.getInteger("longrunning.schedule.schedules", DataPartitionApp.DEFAULT_NUM_SCHEDULES),
+    Integer.getInteger("longrunning.schedule.trigger.datasets", DataPartitionApp.DEFAULT_NUM_TRIGGER_DATASET),
+    Integer.getInteger("longrunning.schedule.trigger.partitions", DataPartitionApp.DEFAULT_TRIGGER_ON_NUM_PARTITIONS));
+  // number of irrelevant partitions created for every trigger dataset, on top of the partitions that trigger a schedule
+  private static final int NO_TRIGGER_EXTRA_PARTITIONS = 20;
+
+  private DataPartitionApp.AppConfig deployedConfig;
 
   @Override
   public void deploy() throws Exception {
-    deployApplication(getLongRunningNamespace(), DataPartitionApp.class);
+    LOG.info("Deploying {} with {}", DataPartitionApp.NAME, CONFIG);
+    getTestManager().deployApplication(getLongRunningNamespace(), DataPartitionApp.class, CONFIG);
+    deployedConfig = CONFIG;
+  }
+
+  /**
+   * Returns the config of the deployed app, which differs from the one given by the system properties if they changed
+   * since the app was deployed.
+   */
+  private DataPartitionApp.AppConfig getConfig() throws Exception {
+    if (deployedConfig == null) {
+      ApplicationDetail detail = getApplicationClient().get(getLongRunningNamespace().app(DataPartitionApp.NAME));
+      String configuration = detail.getConfiguration();
+      deployedConfig = configuration == null || configuration.isEmpty()
+        ? new DataPartitionApp.AppConfig() : GSON.fromJson(configuration, DataPartitionApp.AppConfig.class);
+      if (!deployedConfig.equals(CONFIG)) {
+        LOG.warn("{} was deployed with {}, using it instead of {}", DataPartitionApp.NAME, deployedConfig, CONFIG);
+      }
+    }
+    return deployedConfig;
   }
 
   @Override
   public void start() throws Exception {
     ApplicationManager dataPartition = getApplicationManager(DataPartitionApp.NAME);
     ServiceManager serviceManager = dataPartition.getServiceManager(AddDataPartitionService.NAME).start();
-    serviceManager.waitForRun(ProgramRunStatus.RUNNING, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    waitForRun(serviceManager, ProgramRunStatus.RUNNING, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
 
     // Resume schedules in the deployed app
     ApplicationId appId = getLongRunningNamespace().app(DataPartitionApp.NAME);
-    for (int i = 0; i < DataPartitionApp.NUM_SCHEDULES; i++) {
-      ScheduleId scheduleId = appId.schedule(DataPartitionApp.DATASET_PARTITION_SCHEDULE_PREFIX + i);
-      new ScheduleClient(getClientConfig(), getRestClient()).resume(scheduleId);
+    ScheduleClient scheduleClient = new ScheduleClient(getClientConfig(), getRestClient());
+    for (int i = 0; i < getConfig().getNumSchedules(); i++) {
+      scheduleClient.resume(appId.schedule(DataPartitionApp.DATASET_PARTITION_SCHEDULE_PREFIX + i));
     }
   }
 
@@ -68,12 +114,12 @@ public class ScheduleLongRunningTest extends LongRunningTestBase<DataPartitionSc
     ServiceManager serviceManager = getApplicationManager(DataPartitionApp.NAME)
       .getServiceManager(AddDataPartitionService.NAME);
     serviceManager.stop();
-    serviceManager.waitForRun(ProgramRunStatus.KILLED, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    waitForRun(serviceManager, ProgramRunStatus.KILLED, PROGRAM_START_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
     // Suspend schedules in the deployed app
     ApplicationId appId = getLongRunningNamespace().app(DataPartitionApp.NAME);
-    for (int i = 0; i < DataPartitionApp.NUM_SCHEDULES; i++) {
-      ScheduleId scheduleId = appId.schedule(DataPartitionApp.DATASET_PARTITION_SCHEDULE_PREFIX + i);
-      new ScheduleClient(getClientConfig(), getRestClient()).suspend(scheduleId);
+    ScheduleClient scheduleClient = new ScheduleClient(getClientConfig(), getRestClient());
+    for (int i = 0; i < getConfig().getNumSchedules(); i++) {
+      scheduleClient.suspend(appId.schedule(DataPartitionApp.DATASET_PARTITION_SCHEDULE_PREFIX + i));
     }
   }
 
@@ -83,7 +129,7 @@ public class ScheduleLongRunningTest extends LongRunningTestBase<DataPartitionSc
 
   @Override
   public DataPartitionScheduleTestState getInitialState() {
-    return new DataPartitionScheduleTestState(0, 0);
+    return new DataPartitionScheduleTestState(0, 0, Collections.emptyMap());
   }
 
   @Override
@@ -94,12 +140,13 @@ public class ScheduleLongRunningTest extends LongRunningTestBase<DataPartitionSc
     }
     final ProgramClient workflowClient = new ProgramClient(getClientConfig(), getRestClient());
     final ApplicationId appId = getLongRunningNamespace().app(DataPartitionApp.NAME);
+    final int numSchedules = getConfig().getNumSchedules();
 
     // Wait until no workflow is running
     Tasks.waitFor(true, new Callable<Boolean>() {
       @Override
       public Boolean call() throws Exception {
-        for (int i = 0; i < DataPartitionApp.NUM_SCHEDULES; i++) {
+        for (int i = 0; i < numSchedules; i++) {
           WorkflowId workflowId = appId.workflow(DataPartitionApp.WORKFLOW_PREFIX + i);
           int activeRuns = workflowClient.getProgramRuns(workflowId, ProgramRunStatus.RUNNING.name(),
                                                          state.getTriggerStartTimeSeconds(), Long.MAX_VALUE, 10).size();
@@ -119,15 +166,73 @@ public class ScheduleLongRunningTest extends LongRunningTestBase<DataPartitionSc
       return state;
     }
     ApplicationManager appManager = getApplicationManager(DataPartitionApp.NAME);
+    DataPartitionApp.AppConfig config = getConfig();
 
     // Verify that every workflow is completed for once since triggers were fired in last run
-    for (int i = 0; i < DataPartitionApp.NUM_SCHEDULES; i++) {
+    List<Long> latenciesMs = new ArrayList<>();
+    for (int i = 0; i < config.getNumSchedules(); i++) {
       WorkflowManager workflowManager = appManager.getWorkflowManager(DataPartitionApp.WORKFLOW_PREFIX + i);
       workflowManager.waitForRuns(ProgramRunStatus.COMPLETED, state.getExpectedCompletedRunsNum(), 5, TimeUnit.MINUTES);
+      List<RunRecord> completedRuns = workflowManager.getHistory(ProgramRunStatus.COMPLETED);
+      // the runs of all workflows are recorded under one name, so only the longest one is kept
+      recordProgramRuns("scheduledWorkflow", completedRuns);
+      Long triggerTime = state.getTriggerTimes().get(config.getTriggerDataset(i));
+      if (triggerTime != null) {
+        Long latencyMs = getTriggerLatency(completedRuns, triggerTime);
+        if (latencyMs != null) {
+          latenciesMs.add(latencyMs);
+        }
+      }
     }
+    recordTriggerLatencies(latenciesMs);
     return state;
   }
 
+  /**
+   * Returns the time from the creation of the partitions that triggered a schedule to the start of the first run of
+   * the scheduled workflow after that, or {@code null} if there is no such run. Run records have a resolution of one
+   * second, so a latency below one second may be reported as zero.
+   */
+  @Nullable
+  static Long getTriggerLatency(List<RunRecord> runs, long triggerTimeMs) {
+    Long firstStartSeconds = null;
+    for (RunRecord run : runs) {
+      if (run.getStartTs() >= TimeUnit.MILLISECONDS.toSeconds(triggerTimeMs)
+        && (firstStartSeconds == null || run.getStartTs() < firstStartSeconds)) {
+        firstStartSeconds = run.getStartTs();
+      }
+    }
+    if (firstStartSeconds == null) {
+      return null;
+    }
+    return Math.max(0L, TimeUnit.SECONDS.toMillis(firstStartSeconds) - triggerTimeMs);
+  }
+
+  private void recordTriggerLatencies(List<Long> latenciesMs) {
+    if (latenciesMs.isEmpty()) {
+      return;
+    }
+    Collections.sort(latenciesMs);
+    long p50 = percentile(latenciesMs, 0.5);
+    long p90 = percentile(latenciesMs, 0.9);
+    long p99 = percentile(latenciesMs, 0.99);
+    long max = latenciesMs.get(latenciesMs.size() - 1);
+    LOG.info("Trigger latency of {} schedules: min {} ms, p50 {} ms, p90 {} ms, p99 {} ms, max {} ms",
+             latenciesMs.size(), latenciesMs.get(0), p50, p90, p99, max);
+    recordTiming("trigger.latency.p50", p50);
+    recordTiming("trigger.latency.p90", p90);
+    recordTiming("trigger.latency.p99", p99);
+    recordTiming("trigger.latency.max", max);
+  }
+
+  /**
+   * Returns the value at the given fraction of the sorted values, which must not be empty.
+   */
+  static long percentile(List<Long> sorted, double fraction) {
+    int index = (int) Math.ceil(fraction * sorted.size()) - 1;
+    return sorted.get(Math.max(0, Math.min(sorted.size() - 1, index)));
+  }
+
   @Override
   public DataPartitionScheduleTestState runOperations(DataPartitionScheduleTestState state) throws Exception {
     ServiceManager serviceManager = getApplicationManager(DataPartitionApp.NAME)
@@ -137,26 +242,29 @@ public class ScheduleLongRunningTest extends LongRunningTestBase<DataPartitionSc
     // create new partitions in datasets that can trigger schedules
     // also create new partitions in datasets that won't trigger schedules to test
     // scheduler's ability to handle irrelevant notifications
-    for (int datasetSuffix = 0; datasetSuffix < DataPartitionApp.NUM_TRIGGER_DATASET; datasetSuffix++) {
-      String datasetName = DataPartitionApp.TRIGGER_DATASET_PREFIX + datasetSuffix;
-      for (int i = 0; i < DataPartitionApp.TRIGGER_ON_NUM_PARTITIONS; i++) {
-        createPartition(serviceURL, datasetName);
-        // create new partitions in NO_TRIGGER_DATASET to send notification that won't trigger schedule
-        createPartition(serviceURL, DataPartitionApp.NO_TRIGGER_DATASET);
-      }
-      for (int j = 0; j < 20; j++) {
-        // create new partitions in NO_TRIGGER_DATASET to send notification that won't trigger schedule
-        createPartition(serviceURL, DataPartitionApp.NO_TRIGGER_DATASET);
-      }
+    DataPartitionApp.AppConfig config = getConfig();
+    Map<String, Integer> partitions = new LinkedHashMap<>();
+    for (int datasetSuffix = 0; datasetSuffix < config.getNumTriggerDatasets(); datasetSuffix++) {
+      partitions.put(DataPartitionApp.TRIGGER_DATASET_PREFIX + datasetSuffix, config.getTriggerOnNumPartitions());
     }
-    return new DataPartitionScheduleTestState(triggerStartTime, 1 + state.getExpectedCompletedRunsNum());
+    partitions.put(DataPartitionApp.NO_TRIGGER_DATASET,
+                   config.getNumTriggerDatasets() * (config.getTriggerOnNumPartitions() + NO_TRIGGER_EXTRA_PARTITIONS));
+    Map<String, Long> triggerTimes = createPartitions(serviceURL, partitions);
+    triggerTimes.remove(DataPartitionApp.NO_TRIGGER_DATASET);
+    return new DataPartitionScheduleTestState(triggerStartTime, 1 + state.getExpectedCompletedRunsNum(),
+                                              triggerTimes);
   }
 
-  private void createPartition(URL serviceUrl, String datasetName)
+  /**
+   * Creates the given number of partitions in every dataset, and returns the time in milliseconds when the last
+   * partition of every dataset was added.
+   */
+  private Map<String, Long> createPartitions(URL serviceUrl, Map<String, Integer> partitions)
     throws IOException, UnauthenticatedException, UnauthorizedException {
-    URL url = new URL(serviceUrl, "v1/records/" + datasetName);
-    HttpRequest request = HttpRequest.post(url).withBody("new partition").build();
+    URL url = new URL(serviceUrl, "v1/partitions");
+    HttpRequest request = HttpRequest.post(url).withBody(GSON.toJson(partitions)).build();
     HttpResponse response = getRestClient().execute(request, getClientConfig().getAccessToken());
     Assert.assertEquals(200, response.getResponseCode());
+    return GSON.fromJson(response.getResponseBodyAsString(), COMMIT_TIMES_TYPE);
   }
 }
@@ -18,37 +18,160 @@ package io.cdap.cdap.longrunning.txprune;
 
 import io.cdap.cdap.test.TestState;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import javax.annotation.Nullable;
 
 /**
+ * State of the invalid list prune test. The invalid transaction ids of every iteration are kept as a sorted set, delta
+ * and varint encoded, so that the state stays small. Only the latest iterations are kept, see
+ * {@link #addIteration(int, long[], int)}.
  *
+ * The invalid list prune test itself is not part of this source tree, so nothing here creates this state yet. A test
+ * that does should add the ids of each iteration with {@link #addIteration(int, long[], int)}, rather than through the
+ * constructor, so that the retention applies.
  */
 @SuppressWarnings("WeakerAccess")
 public class InvalidListPruneTestState implements TestState {
+  private static final long[] NO_IDS = new long[0];
+
   private final int iteration;
-  // Map of iteration to invalid ids generated during that iteration
+  // Map of iteration to the encoded invalid ids generated during that iteration
+  private final SortedMap<Integer, String> encodedInvalidTxIds;
+  // Map of iteration to invalid ids, only set in a state read from a state file of a former version
+  @Nullable
   private final Map<Integer, List<Long>> invalidTxIds;
 
   public InvalidListPruneTestState(int iteration, Map<Integer, List<Long>> invalidTxIds) {
+    this(iteration, encode(invalidTxIds));
+  }
+
+  private InvalidListPruneTestState(int iteration, SortedMap<Integer, String> encodedInvalidTxIds) {
     this.iteration = iteration;
-    // TODO: make this immutable
-    this.invalidTxIds = invalidTxIds;
+    this.encodedInvalidTxIds = Collections.unmodifiableSortedMap(encodedInvalidTxIds);
+    this.invalidTxIds = null;
+  }
+
+  /**
+   * Returns a new state with the invalid ids of the given iteration added, which only keeps the ids of the latest
+   * {@code retainedIterations} iterations.
+   */
+  public InvalidListPruneTestState addIteration(int iteration, long[] invalidIds, int retainedIterations) {
+    SortedMap<Integer, String> encoded = new TreeMap<>(getEncodedInvalidTxIds());
+    encoded.put(iteration, encode(invalidIds));
+    encoded.headMap(iteration - Math.max(1, retainedIterations) + 1).clear();
+    return new InvalidListPruneTestState(iteration, encoded);
   }
 
   public int getIteration() {
     return iteration;
   }
 
+  /**
+   * Returns the invalid ids generated during the given iteration, in ascending order, or an empty array if the
+   * iteration is not part of the state.
+   */
+  public long[] getInvalidTxIds(int iteration) {
+    String encoded = getEncodedInvalidTxIds().get(iteration);
+    return encoded == null ? NO_IDS : decode(encoded);
+  }
+
   public Map<Integer, List<Long>> getInvalidTxIds() {
-    return invalidTxIds;
+    Map<Integer, List<Long>> decoded = new LinkedHashMap<>();
+    for (Integer iteration : getEncodedInvalidTxIds().keySet()) {
+      long[] ids = getInvalidTxIds(iteration);
+      List<Long> list = new ArrayList<>(ids.length);
+      for (long id : ids) {
+        list.add(id);
+      }
+      decoded.put(iteration, Collections.unmodifiableList(list));
+    }
+    return Collections.unmodifiableMap(decoded);
+  }
+
+  private SortedMap<Integer, String> getEncodedInvalidTxIds() {
+    if (invalidTxIds != null) {
+      SortedMap<Integer, String> encoded = encode(invalidTxIds);
+      if (encodedInvalidTxIds != null) {
+        encoded.putAll(encodedInvalidTxIds);
+      }
+      return encoded;
+    }
+    return encodedInvalidTxIds == null ? new TreeMap<>() : encodedInvalidTxIds;
+  }
+
+  private static SortedMap<Integer, String> encode(Map<Integer, List<Long>> invalidTxIds) {
+    SortedMap<Integer, String> encoded = new TreeMap<>();
+    for (Map.Entry<Integer, List<Long>> entry : invalidTxIds.entrySet()) {
+      long[] ids = new long[entry.getValue().size()];
+      for (int i = 0; i < ids.length; i++) {
+        ids[i] = entry.getValue().get(i);
+      }
+      encoded.put(entry.getKey(), encode(ids));
+    }
+    return encoded;
+  }
+
+  /**
+   * Encodes the given ids as the smallest id followed by the differences between consecutive ids, every one of them
+   * as an unsigned varint, in Base64.
+   */
+  private static String encode(long[] ids) {
+    long[] sorted = Arrays.copyOf(ids, ids.length);
+    Arrays.sort(sorted);
+    byte[] bytes = new byte[sorted.length * 10];
+    int length = 0;
+    long previous = 0;
+    for (long id : sorted) {
+      long value = id - previous;
+      previous = id;
+      while ((value & ~0x7FL) != 0) {
+        bytes[length++] = (byte) ((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      bytes[length++] = (byte) value;
+    }
+    return Base64.getEncoder().encodeToString(Arrays.copyOf(bytes, length));
+  }
+
+  private static long[] decode(String encoded) {
+    byte[] bytes = Base64.getDecoder().decode(encoded);
+    long[] ids = new long[bytes.length];
+    int count = 0;
+    long previous = 0;
+    int i = 0;
+    while (i < bytes.length) {
+      long value = 0;
+      int shift = 0;
+      byte b;
+      do {
+        b = bytes[i++];
+        value |= (long) (b & 0x7F) << shift;
+        shift += 7;
+      } while (b < 0);
+      previous += value;
+      ids[count++] = previous;
+    }
+    return Arrays.copyOf(ids, count);
   }
 
   @Override
   public String toString() {
+    int count = 0;
+    for (Integer iteration : getEncodedInvalidTxIds().keySet()) {
+      count += getInvalidTxIds(iteration).length;
+    }
     return "InvalidListPruneTestState{" +
       "iteration=" + iteration +
-      ", invalidTxIds=" + invalidTxIds +
+      ", invalidTxIdIterations=" + getEncodedInvalidTxIds().keySet() +
+      ", invalidTxIdCount=" + count +
       '}';
   }
 }
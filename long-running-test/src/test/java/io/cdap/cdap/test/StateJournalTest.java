@@ -0,0 +1,163 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.cdap.test;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+/**
+ * Tests that {@link StateJournal} keeps the latest states across saves, recovers from a truncated or corrupt tail,
+ * reads the former JSON state files and compacts itself.
+ */
+public class StateJournalTest {
+  // the size of the length and checksum fields of a record
+  private static final int RECORD_HEADER_SIZE = 16;
+
+  @Rule
+  public final TemporaryFolder tmpFolder = new TemporaryFolder();
+
+  @Test
+  public void testReopen() throws IOException {
+    Path file = tmpFolder.getRoot().toPath().resolve("state");
+    StateJournal journal = StateJournal.open(file);
+    Assert.assertTrue(journal.getStates().isEmpty());
+    journal.putAll(ImmutableMap.of("a", "1", "b", "2"));
+    journal.save(file);
+    journal.put("a", "3");
+    journal.save(file);
+    Assert.assertEquals(ImmutableMap.of("a", "3", "b", "2"), StateJournal.open(file).getStates());
+
+    // a state that didn't change is not appended again
+    long size = Files.size(file);
+    journal.put("b", "2");
+    journal.save(file);
+    Assert.assertEquals(size, Files.size(file));
+  }
+
+  @Test
+  public void testTruncatedTail() throws IOException {
+    Path file = tmpFolder.getRoot().toPath().resolve("state");
+    StateJournal journal = StateJournal.open(file);
+    journal.put("a", "1");
+    journal.save(file);
+    long validSize = Files.size(file);
+    journal.put("b", "2");
+    journal.save(file);
+
+    // a save that crashed in the middle of the last record
+    truncate(file, Files.size(file) - 1);
+    journal = StateJournal.open(file);
+    Assert.assertEquals(ImmutableMap.of("a", "1"), journal.getStates());
+
+    // the next save overwrites the truncated record
+    journal.put("c", "3");
+    journal.save(file);
+    Assert.assertEquals(ImmutableMap.of("a", "1", "c", "3"), StateJournal.open(file).getStates());
+    Assert.assertEquals(validSize + RECORD_HEADER_SIZE + 2, Files.size(file));
+  }
+
+  @Test
+  public void testCorruptTail() throws IOException {
+    Path file = tmpFolder.getRoot().toPath().resolve("state");
+    StateJournal journal = StateJournal.open(file);
+    journal.putAll(ImmutableMap.of("a", "1", "b", "2"));
+    journal.save(file);
+    journal.put("b", "3");
+    journal.save(file);
+
+    // flip the last byte of the value of the last record, so that its checksum doesn't match
+    long size = Files.size(file);
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      ByteBuffer last = ByteBuffer.allocate(1);
+      channel.read(last, size - 1);
+      last.put(0, (byte) (last.get(0) ^ 1));
+      last.rewind();
+      channel.write(last, size - 1);
+    }
+    journal = StateJournal.open(file);
+    Assert.assertEquals(ImmutableMap.of("a", "1", "b", "2"), journal.getStates());
+
+    // the next save overwrites the corrupt record, which had the same size
+    journal.put("c", "4");
+    journal.save(file);
+    Assert.assertEquals(ImmutableMap.of("a", "1", "b", "2", "c", "4"), StateJournal.open(file).getStates());
+    Assert.assertEquals(size, Files.size(file));
+  }
+
+  @Test
+  public void testJsonMigration() throws IOException {
+    Path file = tmpFolder.getRoot().toPath().resolve("state.json");
+    Files.write(file, "{\"a\":\"{\\\"x\\\":1}\",\"b\":\"2\"}".getBytes(StandardCharsets.UTF_8));
+    StateJournal journal = StateJournal.open(file);
+    Assert.assertEquals(ImmutableMap.of("a", "{\"x\":1}", "b", "2"), journal.getStates());
+
+    // the JSON file is replaced by a journal with all states on the next save, also the ones that didn't change
+    journal.put("b", "3");
+    journal.save(file);
+    Assert.assertEquals("LRTJRNL1", new String(Files.readAllBytes(file), 0, 8, StandardCharsets.US_ASCII));
+    Assert.assertEquals(ImmutableMap.of("a", "{\"x\":1}", "b", "3"), StateJournal.open(file).getStates());
+
+    // a save to another file writes the states there, and the next saves append to it
+    Path copy = tmpFolder.getRoot().toPath().resolve("copy");
+    journal.put("c", "4");
+    journal.save(copy);
+    journal.put("d", "5");
+    journal.save(copy);
+    Assert.assertEquals(ImmutableMap.of("a", "{\"x\":1}", "b", "3"), StateJournal.open(file).getStates());
+    Assert.assertEquals(ImmutableMap.of("a", "{\"x\":1}", "b", "3", "c", "4", "d", "5"),
+                        StateJournal.open(copy).getStates());
+  }
+
+  @Test
+  public void testCompaction() throws IOException {
+    Path file = tmpFolder.getRoot().toPath().resolve("state");
+    StateJournal journal = StateJournal.open(file);
+    journal.put("small", "1");
+    String large = Strings.repeat("x", 100 * 1024);
+    // without compaction, the journal would grow to 5 MB
+    long maxSize = 0;
+    for (int i = 0; i < 50; i++) {
+      journal.put("large", i + large);
+      journal.save(file);
+      maxSize = Math.max(maxSize, Files.size(file));
+    }
+    Assert.assertTrue("Journal grew to " + maxSize + " bytes", maxSize < 2 * 1024 * 1024);
+    Map<String, String> states = StateJournal.open(file).getStates();
+    Assert.assertEquals("1", states.get("small"));
+    Assert.assertEquals(49 + large, states.get("large"));
+  }
+
+  private static void truncate(Path file, long size) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      channel.truncate(size);
+    }
+  }
+}
@@ -17,9 +17,8 @@
 package io.cdap.cdap.test.suite;
 
 import com.google.common.base.Preconditions;
-import com.google.common.reflect.TypeToken;
-import com.google.gson.Gson;
 import io.cdap.cdap.test.LongRunningTestBase;
+import io.cdap.cdap.test.StateJournal;
 import io.cdap.cdap.test.runner.AutoSuiteRunner;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -27,23 +26,22 @@ import org.junit.runner.RunWith;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.io.FileWriter;
-import java.lang.reflect.Type;
-import java.util.HashMap;
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.Map;
 
 /**
- * Suite to run all long running tests for CDAP
+ * Suite to run all long running tests for CDAP. With -Dlongrunning.concurrent=true, the iterations of all tests run
+ * concurrently.
  */
 @RunWith(AutoSuiteRunner.class)
 @AutoSuiteRunner.Matches(packages = "io.cdap.cdap.longrunning")
+@AutoSuiteRunner.Concurrent(property = "longrunning.concurrent")
 public class LongRunningTestRunner {
   private static final Logger LOG = LoggerFactory.getLogger(LongRunningTestRunner.class);
   private static final String INPUT_STATE_PROP = "input.state";
   private static final String OUTPUT_STATE_PROP = "output.state";
-  private static final Gson GSON = new Gson();
+  private static StateJournal stateJournal;
 
   @BeforeClass
   public static void deserialize() throws Exception {
@@ -55,17 +53,15 @@ public class LongRunningTestRunner {
     Preconditions.checkNotNull(outputStateFile, "Output state file name cannot be null.");
     LOG.info("Output state file = {}", outputStateFile);
 
-    Type type = new TypeToken<Map<String, String>>() { }.getType();
-    Map<String, String> inMemoryMap;
-    try (FileReader fileReader = new FileReader(inputStateFile)) {
-      LOG.info("Deserializing test state from input file = {}", inputStateFile);
-      inMemoryMap = GSON.fromJson(fileReader, type);
-    } catch (FileNotFoundException e) {
-      LOG.warn("Input state file not found, creating new instance of in memory map");
-      inMemoryMap = new HashMap<>();
-    }
+    LOG.info("Deserializing test state from input file = {}", inputStateFile);
+    stateJournal = StateJournal.open(Paths.get(inputStateFile));
+    Map<String, String> inMemoryMap = stateJournal.getStates();
     LOG.info("Deserialized test input state = {}", inMemoryMap);
     LongRunningTestBase.initializeInMemoryMap(inMemoryMap);
+    LongRunningTestBase.setStateCheckpoint(() -> {
+      saveState(outputStateFile);
+      return null;
+    });
   }
 
   @AfterClass
@@ -73,9 +69,13 @@ public class LongRunningTestRunner {
     Map<String, String> inMemoryMap = LongRunningTestBase.getInMemoryMap();
     LOG.info("Test output state to serialize = {}", inMemoryMap);
     String outputStateFile = System.getProperty(OUTPUT_STATE_PROP);
-    try (FileWriter writer = new FileWriter(outputStateFile)) {
-      LOG.info("Serializing test state to output file = {}", outputStateFile);
-      GSON.toJson(inMemoryMap, writer);
-    }
+    LOG.info("Serializing test state to output file = {}", outputStateFile);
+    saveState(outputStateFile);
+  }
+
+  private static synchronized void saveState(String outputStateFile) throws IOException {
+    // only the states that changed are appended to the journal
+    stateJournal.putAll(LongRunningTestBase.getInMemoryMap());
+    stateJournal.save(Paths.get(outputStateFile));
   }
 }
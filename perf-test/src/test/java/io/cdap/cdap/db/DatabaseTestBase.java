@@ -68,7 +68,7 @@ public abstract class DatabaseTestBase extends ETLTestBase {
 
     WorkflowManager workflowManager = appManager.getWorkflowManager(SmartWorkflow.NAME);
     workflowManager.start();
-    workflowManager.waitForRun(ProgramRunStatus.COMPLETED, 6, TimeUnit.MINUTES);
+    waitForRun(workflowManager, ProgramRunStatus.COMPLETED, 6, TimeUnit.MINUTES);
 
     Map<String, String> tags =
       ImmutableMap.of(io.cdap.cdap.common.conf.Constants.Metrics.Tag.NAMESPACE, appId.getNamespace(),